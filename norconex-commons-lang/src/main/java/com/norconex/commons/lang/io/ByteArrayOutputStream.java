@@ -44,6 +44,10 @@ import org.apache.commons.lang3.ArrayUtils;
  * <p>The higher the initial capacity, the faster it should be to write
  * large streams, but the more initial memory it will take.</p>
  *
+ * <p>Byte arrays can be obtained from a {@link ByteChunkPool} instead.
+ * They are then returned to the pool when this stream is reset or closed.
+ * </p>
+ *
  * @author Pascal Essiembre
  * @since 2.1.0
  */
@@ -66,6 +70,9 @@ public class ByteArrayOutputStream extends OutputStream {
     /** Each new buffer initialization length. */
     private final int bufferCapacity;
 
+    /** Where to get buffers from, if not created. */
+    private final ByteChunkPool pool;
+
     /**
      * Creates a new byte array output stream. The buffer capacity is
      * initially 1024 bytes.
@@ -88,17 +95,48 @@ public class ByteArrayOutputStream extends OutputStream {
         }
         synchronized (this) {
             this.bufferCapacity = size;
+            this.pool = null;
             addNewBuffer();
         }
 
     }
 
+    /**
+     * Creates a new byte array output stream, obtaining buffers from
+     * the given pool. The buffer capacity is the pool chunk size.
+     * Buffers are returned to the pool on {@link #reset()} and
+     * {@link #close()}.
+     *
+     * @param pool the buffer pool
+     * @since 2.0.0
+     */
+    public ByteArrayOutputStream(ByteChunkPool pool) {
+        synchronized (this) {
+            this.bufferCapacity = pool.getChunkSize();
+            this.pool = pool;
+            addNewBuffer();
+        }
+    }
+
     private void addNewBuffer() {
-        currentBuffer = new byte[bufferCapacity];
+        if (pool == null) {
+            currentBuffer = new byte[bufferCapacity];
+        } else {
+            currentBuffer = pool.acquire();
+        }
         buffers.add(currentBuffer);
         currentBufferIndex = 0;
     }
 
+    private void releaseBuffers() {
+        if (pool != null) {
+            for (byte[] buffer : buffers) {
+                pool.release(buffer);
+            }
+        }
+        buffers.clear();
+    }
+
     /**
      * Gets the single byte value found at specified offset.  If the offset is
      * larger than the byte array length, <code>-1</code> is
@@ -113,7 +151,7 @@ public class ByteArrayOutputStream extends OutputStream {
         }
         int buffersIndex = pos / bufferCapacity;
         int bufPos = pos % bufferCapacity;
-        return buffers.get(buffersIndex)[bufPos];
+        return buffers.get(buffersIndex)[bufPos] & 0xFF;
     }
 
     /**
@@ -181,6 +219,9 @@ public class ByteArrayOutputStream extends OutputStream {
             return;
         }
         synchronized (this) {
+            if (currentBuffer == null) {
+                addNewBuffer();
+            }
             int bytesLeftToWrite = len;
             int lastOff = off;
             while (bytesLeftToWrite > 0) {
@@ -205,6 +246,9 @@ public class ByteArrayOutputStream extends OutputStream {
      */
     @Override
     public synchronized void write(int b) {
+        if (currentBuffer == null) {
+            addNewBuffer();
+        }
         currentBuffer[currentBufferIndex] = (byte) b;
         totalCount++;
         currentBufferIndex++;
@@ -243,7 +287,10 @@ public class ByteArrayOutputStream extends OutputStream {
     }
 
     /**
-     * Closing a <tt>ByteArrayOutputStream</tt> has no effect. The methods in
+     * Closing a <tt>ByteArrayOutputStream</tt> has no effect, unless
+     * it was created with a {@link ByteChunkPool}. In such case,
+     * buffers are returned to the pool and the content is discarded.
+     * Either way, the methods in
      * this class can be called after the stream has been closed without
      * generating an <tt>IOException</tt>.
      *
@@ -252,7 +299,14 @@ public class ByteArrayOutputStream extends OutputStream {
      */
     @Override
     public void close() throws IOException {
-        //nop
+        if (pool != null) {
+            synchronized (this) {
+                totalCount = 0;
+                releaseBuffers();
+                // a new buffer is obtained on next write, if any
+                currentBuffer = null;
+            }
+        }
     }
 
     /**
@@ -260,7 +314,7 @@ public class ByteArrayOutputStream extends OutputStream {
      */
     public synchronized void reset() {
         totalCount = 0;
-        buffers.clear();
+        releaseBuffers();
         addNewBuffer();
     }
 
@@ -0,0 +1,155 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Pool of byte arrays of the same size, used as chunks by
+ * {@link ByteArrayOutputStream} so short-lived instances do not allocate
+ * new ones each time. Released chunks are first kept for the
+ * releasing thread, then shared with other threads, up to maximums. Chunks
+ * released beyond those are left to the garbage collector.
+ * Chunks are not cleared when reused.
+ * </p>
+ * <p>
+ * Pooled chunks remain allocated as long as the pool is referenced
+ * and are not part of {@link CachedStreamFactory} memory limits.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class ByteChunkPool {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    public static final int DEFAULT_MAX_THREAD_CHUNKS = 16;
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final int maxThreadChunks;
+
+    private final Queue<byte[]> sharedChunks = new ConcurrentLinkedQueue<>();
+    // the queue size method is not constant-time
+    private final AtomicInteger sharedCount = new AtomicInteger();
+    private final ThreadLocal<Deque<byte[]>> threadChunks =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a pool of 8 KB chunks, keeping up to 16 chunks per thread.
+     * @param maxChunks maximum number of chunks shared between threads
+     */
+    public ByteChunkPool(int maxChunks) {
+        this(DEFAULT_CHUNK_SIZE, maxChunks, DEFAULT_MAX_THREAD_CHUNKS);
+    }
+    /**
+     * Creates a pool.
+     * @param chunkSize size of each chunk, in bytes
+     * @param maxChunks maximum number of chunks shared between threads
+     * @param maxThreadChunks maximum number of chunks kept for each thread
+     */
+    public ByteChunkPool(int chunkSize, int maxChunks, int maxThreadChunks) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be greater than zero.");
+        }
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.maxThreadChunks = maxThreadChunks;
+    }
+
+    /**
+     * Gets a chunk from the pool, or a new one if the pool is empty.
+     * @return a chunk
+     */
+    public byte[] acquire() {
+        byte[] chunk = threadChunks.get().pollFirst();
+        if (chunk == null) {
+            chunk = sharedChunks.poll();
+            if (chunk != null) {
+                sharedCount.decrementAndGet();
+            }
+        }
+        if (chunk == null) {
+            misses.increment();
+            return new byte[chunkSize];
+        }
+        hits.increment();
+        return chunk;
+    }
+
+    /**
+     * Returns a chunk to the pool. The chunk must no longer be used
+     * once released. Chunks of a different size are ignored.
+     * @param chunk the chunk to release
+     */
+    public void release(byte[] chunk) {
+        if (chunk == null || chunk.length != chunkSize) {
+            return;
+        }
+        Deque<byte[]> chunks = threadChunks.get();
+        if (chunks.size() < maxThreadChunks) {
+            chunks.offerFirst(chunk);
+        } else if (sharedCount.incrementAndGet() <= maxChunks) {
+            sharedChunks.offer(chunk);
+        } else {
+            sharedCount.decrementAndGet();
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+    public int getMaxThreadChunks() {
+        return maxThreadChunks;
+    }
+
+    /**
+     * Gets the number of chunks currently shared between threads,
+     * excluding the ones kept for each thread.
+     * @return shared chunk count
+     */
+    public int getSharedChunks() {
+        return sharedCount.get();
+    }
+    /**
+     * Gets how many times a chunk was obtained from the pool.
+     * @return hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    /**
+     * Gets how many times a new chunk had to be created.
+     * @return miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -14,23 +14,20 @@
  */
 package com.norconex.commons.lang.io;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.util.Objects;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.NullOutputStream;
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,7 +65,8 @@ import com.norconex.commons.lang.io.CachedStreamFactory.MemoryTracker;
  * The internal cache stores read bytes into memory, up to to the
  * configured maximum cache size. If content exceeds
  * the cache limit, the cache transforms itself into a fast file-based cache
- * of unlimited size.  Default memory cache size is 128 KB.
+ * of unlimited size, using the factory {@link ICachedStreamStorage}.
+ * Default memory cache size is 128 KB.
  * </p><p>
  * <b>Starting with 1.6.0</b>, <code>mark(int)</code> is supported. The mark
  * limit is always unlimited so the method argument is ignored.
@@ -83,17 +81,28 @@ public class CachedInputStream extends InputStream implements ICachedStream {
             LoggerFactory.getLogger(CachedInputStream.class);
 
     private static final int UNDEFINED_LENGTH = -42;
+    private static final int FILE_BUFFER_SIZE = 8192;
+    // first reads of at least this size go straight to the caller array
+    private static final int DIRECT_READ_SIZE = 8192;
 
     private final CachedStreamFactory factory;
     private final MemoryTracker tracker;
+    private final long creationTime;
 
     private InputStream inputStream;
 
     private byte[] memCache;
-    private ByteArrayOutputStream memOutputStream;
+    private ChunkedByteArrayOutputStream memOutputStream;
 
+    // set when created from a file, opened on first read
     private Path fileCache;
-    private RandomAccessFile randomAccessFile;
+    private ICachedStreamFile cacheFile;
+    // Window over the file cache so reading cached bytes does not
+    // access the file for every byte. On a first read, it also holds
+    // the bytes last read from the wrapped stream.
+    private byte[] fileBuffer;
+    private int fileBufferStart;
+    private int fileBufferLength;
 
     private boolean firstRead = true;
     private boolean needNewStream = false;
@@ -102,7 +111,7 @@ public class CachedInputStream extends InputStream implements ICachedStream {
 
     private final Path cacheDirectory;
 
-    private int count;        // total number of bytes read so far
+    private int count;        // number of bytes readable from the cache
     private int pos = 0;      // byte position we are in
     private int markpos = -1; // position we want to go back to
 
@@ -121,33 +130,37 @@ public class CachedInputStream extends InputStream implements ICachedStream {
 
         this.factory = factory;
         this.tracker = factory.new MemoryTracker();
+        this.creationTime = factory.getMetrics().streamCreated();
 
-        memOutputStream = new ByteArrayOutputStream();
+        memOutputStream = factory.newMemoryCache();
 
-        if (is instanceof BufferedInputStream) {
-            this.inputStream = is;
-        } else {
-            this.inputStream = new BufferedInputStream(is);
-        }
+        // No need for buffering: the stream is read in blocks
+        // when caching.
+        this.inputStream = is;
         this.cacheDirectory = nullSafeCacheDirectory(cacheDirectory);
     }
 
     /**
-     * Creates an input stream with an existing memory cache.
+     * Creates an input stream with an existing memory cache, taking
+     * ownership of it.
      * @param factory stream factory
      * @param cacheDirectory directory where to store large content
-     * @param byteBuffer the InputStream cache.
+     * @param memCache the InputStream cache.
+     * @param creationTime creation time of the stream handing over
+     *        the cache, as returned by the factory metrics
      */
-    /*default*/ CachedInputStream(
-            CachedStreamFactory factory, Path cacheDirectory, byte[] memCache) {
+    /*default*/ CachedInputStream(CachedStreamFactory factory,
+            Path cacheDirectory, byte[] memCache, long creationTime) {
         this.factory = factory;
         this.tracker = factory.new MemoryTracker();
-        this.memCache = ArrayUtils.clone(memCache);
+        this.creationTime = creationTime;
+        this.memCache = memCache;
         this.cacheDirectory = nullSafeCacheDirectory(cacheDirectory);
         this.firstRead = false;
         this.needNewStream = true;
         if (memCache != null) {
             this.length = memCache.length;
+            tracker.reserveUnchecked(memCache.length);
         }
     }
     /**
@@ -160,6 +173,7 @@ public class CachedInputStream extends InputStream implements ICachedStream {
             CachedStreamFactory factory, Path cacheDirectory, Path cacheFile) {
         this.factory = factory;
         this.tracker = factory.new MemoryTracker();
+        this.creationTime = factory.getMetrics().streamCreated();
         this.fileCache = cacheFile;
         this.cacheDirectory = nullSafeCacheDirectory(cacheDirectory);
         this.firstRead = false;
@@ -169,6 +183,27 @@ public class CachedInputStream extends InputStream implements ICachedStream {
             this.length = (int) file.length();
         }
     }
+    /**
+     * Creates an input stream with an existing cache file, taking
+     * ownership of it.
+     * @param factory stream factory
+     * @param cacheDirectory directory where to store large content
+     * @param cacheFile the cache file
+     * @param creationTime creation time of the stream handing over
+     *        the cache, as returned by the factory metrics
+     */
+    /*default*/ CachedInputStream(CachedStreamFactory factory,
+            Path cacheDirectory, ICachedStreamFile cacheFile,
+            long creationTime) {
+        this.factory = factory;
+        this.tracker = factory.new MemoryTracker();
+        this.creationTime = creationTime;
+        this.cacheFile = cacheFile;
+        this.cacheDirectory = nullSafeCacheDirectory(cacheDirectory);
+        this.firstRead = false;
+        this.needNewStream = true;
+        this.length = (int) cacheFile.size();
+    }
 
     // Now called by all constructors to prevent NPE in case this instance
     // is used to obtain the cache temp dir for other usage.
@@ -203,7 +238,7 @@ public class CachedInputStream extends InputStream implements ICachedStream {
      */
     @Override
     public synchronized void reset() throws IOException {
-        pos = markpos;
+        pos = Math.max(0, markpos);
         markpos = -1;
     }
 
@@ -213,7 +248,7 @@ public class CachedInputStream extends InputStream implements ICachedStream {
      * @return <code>true</code> if caching is in memory.
      */
     public boolean isInMemory() {
-        return fileCache == null;
+        return fileCache == null && cacheFile == null;
     }
 
     /**
@@ -237,135 +272,214 @@ public class CachedInputStream extends InputStream implements ICachedStream {
         if (disposed) {
             throw new IOException("CachedInputStream has been disposed.");
         }
-        int cursor = pos;
-        if (cursor < count) {
-            int val = -1;
-            if (isInMemory()) {
-                if (memOutputStream != null) {
-                    val = memOutputStream.getByte(cursor);
-                } else {
-                    if (cursor >= memCache.length) {
-                        val = -1;
-                    } else {
-                        // Adding 0xFF is necessary to make it signed and avoid
-                        // false -1.
-                        val = memCache[cursor] & 0xFF;
-                    }
-                }
-            } else {
-                randomAccessFile.seek(cursor);
-                val = randomAccessFile.read();
+        if (pos >= count && !fillCache()) {
+            return -1;
+        }
+        cacheEmpty = false;
+        int cursor = pos++;
+        if (memOutputStream != null) {
+            return memOutputStream.getByte(cursor);
+        }
+        if (memCache != null) {
+            // Adding 0xFF is necessary to make it signed and avoid
+            // false -1.
+            return memCache[cursor] & 0xFF;
+        }
+        return readFileCache(cursor);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (disposed) {
+            throw new IOException("CachedInputStream has been disposed.");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= count) {
+            if (firstRead && len >= DIRECT_READ_SIZE) {
+                return readDirect(b, off, len);
             }
-            if (val != -1) {
-                pos++;
+            if (!fillCache()) {
+                return -1;
             }
-            return val;
         }
-
-        int b = realRead();
-        if (b != -1) {
-            pos++;
-            count++;
+        cacheEmpty = false;
+        int cursor = pos;
+        int toRead = Math.min(len, count - cursor);
+        if (memOutputStream != null) {
+            memOutputStream.getBytes(cursor, b, off, toRead);
+        } else if (memCache != null) {
+            System.arraycopy(memCache, cursor, b, off, toRead);
+        } else {
+            toRead = readFileCache(b, off, toRead, cursor);
         }
-        return b;
+        pos += toRead;
+        return toRead;
     }
 
-    private int realRead() throws IOException {
+    // Makes more bytes readable from the cache, reading the next block
+    // of the wrapped stream into it on a first read. Returns false if
+    // there are no more bytes.
+    private boolean fillCache() throws IOException {
         if (needNewStream) {
-            createInputStreamFromCache();
+            openCache();
+            return pos < count;
         }
-        if (firstRead) {
-            int read = inputStream.read();
-            if (read == -1) {
-                return read;
-            }
-            if (randomAccessFile != null) {
-                // Write to file cache
-                randomAccessFile.write(read);
-            } else if (!tracker.hasEnoughAvailableMemory(memOutputStream, 1)) {
-                // Too big: create file cache and write to it.
+        if (!firstRead) {
+            return false;
+        }
+        int num;
+        if (memOutputStream != null) {
+            // read straight into the memory cache
+            num = memOutputStream.readFrom(inputStream);
+            if (num > 0 && !tracker.hasEnoughAvailableMemory(
+                    memOutputStream.size() - num, num)) {
+                // Too big: move it all to a file cache, new bytes included.
                 cacheToFile();
-                randomAccessFile.write(read);
+            }
+        } else {
+            // read into the file window, so it serves the next reads
+            if (fileBuffer == null) {
+                fileBuffer = new byte[FILE_BUFFER_SIZE];
+            }
+            num = inputStream.read(fileBuffer, 0, FILE_BUFFER_SIZE);
+            if (num > 0) {
+                cacheFile.write(fileBuffer, 0, num);
+                fileBufferStart = count;
+                fileBufferLength = num;
+            }
+        }
+        if (num == -1) {
+            endFirstRead();
+            return false;
+        }
+        count += num;
+        return num > 0;
+    }
+
+    // Reads from the wrapped stream into the caller array and caches
+    // the bytes read, on a first read with everything read so far
+    // consumed.
+    private int readDirect(byte[] b, int off, int len) throws IOException {
+        int num = inputStream.read(b, off, len);
+        if (num == -1) {
+            endFirstRead();
+            return -1;
+        }
+        if (memOutputStream != null) {
+            if (tracker.hasEnoughAvailableMemory(
+                    memOutputStream.size(), num)) {
+                memOutputStream.write(b, off, num);
             } else {
-                // Write to memory cache
-                memOutputStream.write(read);
+                cacheToFile();
+                cacheFile.write(b, off, num);
             }
-            cacheEmpty = false;
-            return read;
+        } else {
+            cacheFile.write(b, off, num);
         }
-        int read = inputStream.read();
+        count += num;
+        pos += num;
         cacheEmpty = false;
-        return read;
+        return num;
     }
 
-    @Override
-    public int read(byte[] b, int off, int len) throws IOException {
+    private void endFirstRead() {
+        length = count;
+        firstRead = false;
+    }
+
+    /**
+     * Reads all remaining bytes and writes them to the given output
+     * stream. Cached bytes are written directly from the cache (e.g.,
+     * whole memory chunks), without going through a read buffer.
+     * On a first read, bytes not yet read are read and cached as usual.
+     * @param out output stream to write to
+     * @return number of bytes transferred
+     * @throws IOException could not read or write
+     * @since 2.0.0
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "'out' must not be null");
+        return transfer(out, null);
+    }
+    /**
+     * Reads all remaining bytes and writes them to the given channel.
+     * Cached bytes are written directly from the cache. For a file cache,
+     * the operating system may copy bytes straight from the file
+     * (see {@link FileChannel#transferTo(long, long, WritableByteChannel)}).
+     * On a first read, bytes not yet read are read and cached as usual.
+     * @param channel channel to write to
+     * @return number of bytes transferred
+     * @throws IOException could not read or write
+     * @since 2.0.0
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "'channel' must not be null");
+        return transfer(null, channel);
+    }
+    private long transfer(OutputStream out, WritableByteChannel channel)
+            throws IOException {
         if (disposed) {
             throw new IOException("CachedInputStream has been disposed.");
         }
-
-        int cursor = pos;
-        int read = 0;
-        if (cursor < count) {
-            int toRead = Math.min(len, count - cursor);
-            if (isInMemory()) {
-                if (memOutputStream != null) {
-                    byte[] bytes = new byte[toRead];
-                    read = memOutputStream.getBytes(bytes, cursor);
-                    System.arraycopy(bytes, 0, b, off, toRead);
+        if (needNewStream) {
+            openCache();
+        }
+        long transferred = transferCache(out, channel);
+        if (firstRead) {
+            // bytes read directly as they are cached
+            byte[] buffer = new byte[DIRECT_READ_SIZE];
+            int num;
+            while ((num = read(buffer, 0, buffer.length)) != -1) {
+                if (channel != null) {
+                    IOUtil.writeFully(channel, ByteBuffer.wrap(buffer, 0, num));
                 } else {
-                    if (cursor >= memCache.length) {
-                        read = -1;
-                    } else {
-                        System.arraycopy(memCache, cursor, b, off, toRead);
-                        read = toRead;
-                    }
+                    out.write(buffer, 0, num);
                 }
-            } else {
-                randomAccessFile.seek(cursor);
-                read = randomAccessFile.read(b, off, toRead);
-            }
-            if (read != -1) {
-                pos += read;
-            }
-        }
-
-        if (read != -1 && read < len) {
-            int maxToRead = len - read;
-            int remainingRead = realRead(b, off + read, maxToRead);
-            if (remainingRead != -1) {
-                pos += remainingRead;
-                count += remainingRead;
-            } else if (read > 0) {
-                return read;
+                transferred += num;
             }
-            read += remainingRead;
         }
-        return read;
+        return transferred;
     }
-
-    private int realRead(byte[] b, int off, int len) throws IOException {
-        if (needNewStream) {
-            createInputStreamFromCache();
-        }
-        int num = inputStream.read(b, off, len);
-        cacheEmpty = false;
-        if (num == -1) {
-            return num;
+    // Writes the bytes cached from the current position.
+    private long transferCache(OutputStream out, WritableByteChannel channel)
+            throws IOException {
+        int len = count - pos;
+        if (len <= 0) {
+            return 0;
         }
-
-        if (firstRead) {
-            if (randomAccessFile != null) {
-                randomAccessFile.write(b, off, num);
-            } else if (!tracker.hasEnoughAvailableMemory(
-                    memOutputStream, num)) {
-                cacheToFile();
-                randomAccessFile.write(b, off, num);
+        if (memOutputStream != null) {
+            if (channel != null) {
+                memOutputStream.writeTo(pos, channel);
             } else {
-                memOutputStream.write(b, off, num);
+                memOutputStream.writeTo(pos, out);
+            }
+        } else if (memCache != null) {
+            if (channel != null) {
+                IOUtil.writeFully(channel, ByteBuffer.wrap(memCache, pos, len));
+            } else {
+                out.write(memCache, pos, len);
+            }
+        } else {
+            WritableByteChannel target =
+                    channel != null ? channel : Channels.newChannel(out);
+            // may transfer fewer bytes than asked at once
+            long transferred = 0;
+            while (transferred < len) {
+                long num = cacheFile.transferTo(
+                        pos + transferred, len - transferred, target);
+                if (num <= 0) {
+                    throw new EOFException("Cache file ended after "
+                            + (pos + transferred) + " of " + count
+                            + " cached bytes.");
+                }
+                transferred += num;
             }
         }
-        return num;
+        pos += len;
+        cacheEmpty = false;
+        return len;
     }
 
     /**
@@ -374,10 +488,11 @@ public class CachedInputStream extends InputStream implements ICachedStream {
      * @throws IOException could not enforce full caching
      */
     public void enforceFullCaching() throws IOException {
-        if (firstRead) {
-            IOUtils.copy(this, new NullOutputStream());
-            length = count;
-            firstRead = false;
+        if (disposed) {
+            throw new IOException("CachedInputStream has been disposed.");
+        }
+        while (firstRead) {
+            fillCache();
         }
     }
 
@@ -405,20 +520,11 @@ public class CachedInputStream extends InputStream implements ICachedStream {
     private void resetStream() {
         // Rewind
         quietClose(inputStream);
-        quietClose(memOutputStream);
-        quietClose(randomAccessFile);
-        randomAccessFile = null;
+        inputStream = null;
         firstRead = false;
-        needNewStream = true;
-        if (memOutputStream != null) {
-            LOG.trace("Creating memory cache from cached stream.");
-            memCache = memOutputStream.toByteArray();
-            memOutputStream = null;
-        }
         // Reset marking
         pos = 0;
         markpos = -1;
-        count = 0;
     }
 
     public void dispose() throws IOException {
@@ -434,14 +540,20 @@ public class CachedInputStream extends InputStream implements ICachedStream {
             memOutputStream.close();
             memOutputStream = null;
         }
-        if (randomAccessFile != null) {
-            randomAccessFile.close();
-            randomAccessFile = null;
-        }
-        if (fileCache != null) {
+        tracker.release();
+        fileBuffer = null;
+        fileBufferLength = 0;
+        if (cacheFile != null) {
+            cacheFile.delete();
+            LOG.trace("Deleted cache file: {}", cacheFile.getPath());
+            cacheFile = null;
+        } else if (fileCache != null) {
             FileUtil.delete(fileCache.toFile());
             LOG.trace("Deleted cache file: {}", fileCache);
         }
+        if (!disposed) {
+            factory.getMetrics().streamEnded(creationTime);
+        }
         disposed = true;
         cacheEmpty = true;
     }
@@ -449,12 +561,13 @@ public class CachedInputStream extends InputStream implements ICachedStream {
     @Override
     public int available() throws IOException {
         if (needNewStream) {
-            createInputStreamFromCache();
+            openCache();
         }
-        if (inputStream == null) {
-            return 0;
+        long available = Math.max(0, count - pos);
+        if (firstRead && inputStream != null) {
+            available += inputStream.available();
         }
-        return inputStream.available();
+        return (int) Math.min(Integer.MAX_VALUE, available);
     }
 
     /**
@@ -490,6 +603,21 @@ public class CachedInputStream extends InputStream implements ICachedStream {
         return 0;
     }
 
+    @Override
+    public long getOffHeapCacheSize() {
+        if (cacheFile != null) {
+            return cacheFile.getOffHeapSize();
+        }
+        return 0;
+    }
+    @Override
+    public long getFileCacheSize() {
+        if (cacheFile != null) {
+            return cacheFile.size() - cacheFile.getOffHeapSize();
+        }
+        return 0;
+    }
+
     /**
      * <p>Gets the length of the cached input stream. The length represents the
      * number of bytes that were read from this input stream,
@@ -513,20 +641,13 @@ public class CachedInputStream extends InputStream implements ICachedStream {
                     + "the length() method after the stream has been "
                     + "fully read at least once through regular usage.");
 
-            // Reset marking
-            int savedPos = pos;
-            int savedMarkpos = markpos;
+            // the current position is not affected
             try {
                 enforceFullCaching();
-                resetStream();
-                //TODO investigate having a seek(int) method instead
-                IOUtils.skip(this, savedPos);
             } catch (IOException e) {
                 throw new StreamException("Could not read entire stream "
                         + "to obtain its byte length.", e);
             }
-            pos = savedPos;
-            markpos = savedMarkpos;
         }
         return length;
     }
@@ -555,28 +676,79 @@ public class CachedInputStream extends InputStream implements ICachedStream {
     }
 
     private void cacheToFile() throws IOException {
-        fileCache = Files.createTempFile(
-                cacheDirectory, "CachedInputStream-", "-temp");
-        fileCache.toFile().deleteOnExit();
-        LOG.trace("Reached max cache size. Swapping to file: {}", fileCache);
-        randomAccessFile = new RandomAccessFile(fileCache.toFile(), "rw");
-        randomAccessFile.write(memOutputStream.toByteArray());
+        cacheFile = factory.getMetrics().metered(factory.getStorage().newFile(
+                cacheDirectory, "CachedInputStream-"));
+        LOG.trace("Reached max cache size. Swapping to file: {}",
+                cacheFile.getPath());
+        factory.getMetrics().spilled();
+        memOutputStream.writeTo(cacheFile);
+        memOutputStream.close();
         memOutputStream = null;
+        tracker.release();
     }
 
-    private void createInputStreamFromCache() throws FileNotFoundException {
-        if (fileCache != null) {
-            LOG.trace("Creating new input stream from file cache.");
-            randomAccessFile = new RandomAccessFile(fileCache.toFile(), "r");
-            FileChannel channel = randomAccessFile.getChannel();
-            inputStream = Channels.newInputStream(channel);
-        } else {
-            LOG.trace("Creating new input stream from memory cache.");
-            inputStream = new ByteArrayInputStream(memCache);
+    // Makes the existing cache given on creation readable.
+    private void openCache() throws IOException {
+        if (cacheFile != null || fileCache != null) {
+            LOG.trace("Reading from file cache.");
+            if (cacheFile == null) {
+                cacheFile = factory.getStorage().openFile(fileCache);
+            }
+            count = (int) cacheFile.size();
+        } else if (memCache != null) {
+            LOG.trace("Reading from memory cache.");
+            count = memCache.length;
         }
+        length = count;
         needNewStream = false;
     }
 
+    // Reads from the file cache at the given position, which can be
+    // before the end of the cache being written on a first read.
+    private int readFileCache(int cursor) throws IOException {
+        if (cursor < fileBufferStart
+                || cursor >= fileBufferStart + fileBufferLength) {
+            fillFileBuffer(cursor);
+            if (fileBufferLength == 0) {
+                return -1;
+            }
+        }
+        return fileBuffer[cursor - fileBufferStart] & 0xFF;
+    }
+    // Reads up to "len" bytes, stopping short only at the end of the file.
+    private int readFileCache(byte[] b, int off, int len, int cursor)
+            throws IOException {
+        if (len >= FILE_BUFFER_SIZE) {
+            // large enough to read directly
+            return cacheFile.read(cursor, b, off, len);
+        }
+        int read = 0;
+        while (read < len) {
+            int at = cursor + read;
+            if (at < fileBufferStart
+                    || at >= fileBufferStart + fileBufferLength) {
+                fillFileBuffer(at);
+                if (fileBufferLength == 0) {
+                    break;
+                }
+            }
+            int num = Math.min(
+                    len - read, fileBufferStart + fileBufferLength - at);
+            System.arraycopy(
+                    fileBuffer, at - fileBufferStart, b, off + read, num);
+            read += num;
+        }
+        return read == 0 ? -1 : read;
+    }
+    private void fillFileBuffer(int cursor) throws IOException {
+        if (fileBuffer == null) {
+            fileBuffer = new byte[FILE_BUFFER_SIZE];
+        }
+        fileBufferStart = cursor;
+        fileBufferLength = Math.max(0,
+                cacheFile.read(cursor, fileBuffer, 0, FILE_BUFFER_SIZE));
+    }
+
     private void quietClose(Closeable closable) {
         if (closable != null) {
             try { closable.close(); } catch (IOException e) { /*NOOP*/ }
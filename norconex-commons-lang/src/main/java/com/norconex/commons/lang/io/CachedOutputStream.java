@@ -17,18 +17,16 @@ package com.norconex.commons.lang.io;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.file.Files;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.util.Objects;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.norconex.commons.lang.file.FileUtil;
 import com.norconex.commons.lang.io.CachedStreamFactory.MemoryTracker;
 
 /**
@@ -48,7 +46,12 @@ import com.norconex.commons.lang.io.CachedStreamFactory.MemoryTracker;
  * The internal cache stores written bytes into memory, up to to the
  * specified maximum cache size. If content exceeds
  * the cache limit, the cache transforms itself into a file-based cache
- * of unlimited size. Default memory cache size is 128 KB.
+ * of unlimited size, using the factory {@link ICachedStreamStorage}.
+ * Default memory cache size is 128 KB.
+ * <br><br>
+ * When file-based, the cache file is handed over as is to the
+ * {@link CachedInputStream} obtained from {@link #getInputStream()},
+ * without being reopened or copied.
  * <br><br>
  * @author Pascal Essiembre
  * @since 1.5
@@ -62,14 +65,14 @@ public class CachedOutputStream extends OutputStream
 
     private final CachedStreamFactory factory;
     private final MemoryTracker tracker;
+    private final long creationTime;
 
     private OutputStream outputStream;
 
     private byte[] memCache;
-    private ByteArrayOutputStream memOutputStream;
+    private ChunkedByteArrayOutputStream memOutputStream;
 
-    private Path fileCache;
-    private OutputStream fileOutputStream;
+    private ICachedStreamFile cacheFile;
     private final boolean doneWriting = false;
     private boolean closed = false;
     private boolean cacheEmpty = true;
@@ -90,8 +93,9 @@ public class CachedOutputStream extends OutputStream
 
         this.factory = factory;
         this.tracker = factory.new MemoryTracker();
+        this.creationTime = factory.getMetrics().streamCreated();
 
-        memOutputStream = new ByteArrayOutputStream();
+        memOutputStream = factory.newMemoryCache();
 
         if (out != null) {
             if (out instanceof BufferedOutputStream) {
@@ -118,13 +122,13 @@ public class CachedOutputStream extends OutputStream
         if (outputStream != null) {
             outputStream.write(b);
         }
-        if (fileOutputStream != null) {
+        if (cacheFile != null) {
             // Write to file cache
-            fileOutputStream.write(b);
-        } else if (!tracker.hasEnoughAvailableMemory(memOutputStream, 1)) {
+            cacheFile.write(b);
+        } else if (!tracker.hasEnoughAvailableMemory(memOutputStream.size(), 1)) {
             // Too big: create file cache and write to it.
             cacheToFile();
-            fileOutputStream.write(b);
+            cacheFile.write(b);
         } else {
             // Write to memory cache
             memOutputStream.write(b);
@@ -141,33 +145,79 @@ public class CachedOutputStream extends OutputStream
         if (outputStream != null) {
             outputStream.write(b, off, len);
         }
-        if (fileOutputStream != null) {
-            fileOutputStream.write(b, off, len);
+        if (cacheFile != null) {
+            cacheFile.write(b, off, len);
         } else if (!tracker.hasEnoughAvailableMemory(
-                memOutputStream, len - off)) {
+                memOutputStream.size(), len)) {
             cacheToFile();
-            fileOutputStream.write(b, off, len);
+            cacheFile.write(b, off, len);
         } else {
-            memOutputStream.write(b, 0, len);
+            memOutputStream.write(b, off, len);
         }
         cacheEmpty = false;
     }
 
+    /**
+     * Writes all bytes cached so far to the given output stream, directly
+     * from the cache (e.g., whole memory chunks). This stream remains
+     * open and can still be written to.
+     * @param out output stream to write to
+     * @return number of bytes transferred
+     * @throws IOException could not read the cache or write
+     * @since 2.0.0
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "'out' must not be null");
+        if (cacheFile != null) {
+            return cacheFile.transferTo(
+                    0, cacheFile.size(), Channels.newChannel(out));
+        }
+        if (memOutputStream != null) {
+            return memOutputStream.writeTo(0, out);
+        }
+        return 0;
+    }
+    /**
+     * Writes all bytes cached so far to the given channel, directly from
+     * the cache. For a file cache, the operating system may copy bytes
+     * straight from the file
+     * (see {@link FileChannel#transferTo(long, long, WritableByteChannel)}).
+     * This stream remains open and can still be written to.
+     * @param channel channel to write to
+     * @return number of bytes transferred
+     * @throws IOException could not read the cache or write
+     * @since 2.0.0
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "'channel' must not be null");
+        if (cacheFile != null) {
+            return cacheFile.transferTo(0, cacheFile.size(), channel);
+        }
+        if (memOutputStream != null) {
+            return memOutputStream.writeTo(0, channel);
+        }
+        return 0;
+    }
+
     public CachedInputStream getInputStream() throws IOException {
         if (closed) {
             throw new IllegalStateException("Cannot get CachedInputStream on a "
                     + "closed CachedOutputStream.");
         }
         CachedInputStream is;
-        if (fileCache != null) {
-            is = factory.newInputStream(fileCache);
-        } else if (memCache != null) {
-            is = factory.newInputStream(memCache);
+        if (cacheFile != null) {
+            // ownership of the file is passed to the input stream
+            is = factory.newInputStream(cacheFile, creationTime);
+            cacheFile = null;
         } else {
-            memCache = memOutputStream.toByteArray();
-            memOutputStream.close();
-            memOutputStream = null;
-            is = factory.newInputStream(memCache);
+            if (memCache == null) {
+                memCache = memOutputStream.toByteArray();
+                memOutputStream.close();
+                memOutputStream = null;
+            }
+            // ownership of the bytes is passed to the input stream
+            is = factory.newInputStream(memCache, creationTime);
+            memCache = null;
         }
         close(false);
         return is;
@@ -176,6 +226,10 @@ public class CachedOutputStream extends OutputStream
     private void close(boolean clearCache) throws IOException {
         if (!closed) {
             closed = true;
+            if (clearCache) {
+                // else handed over to an input stream, which ends it
+                factory.getMetrics().streamEnded(creationTime);
+            }
             if (memCache != null && clearCache) {
                 memCache = null;
             }
@@ -184,21 +238,17 @@ public class CachedOutputStream extends OutputStream
                 try { outputStream.close(); } catch (IOException e) { /*NOOP*/ }
                 outputStream = null;
             }
-            if (fileOutputStream != null) {
-                fileOutputStream.flush();
-                try {fileOutputStream.close();} catch (IOException e) {/*NOOP*/}
-                fileOutputStream = null;
-            }
-            if (fileCache != null && clearCache) {
-                FileUtil.delete(fileCache.toFile());
-                LOG.debug("Deleted cache file: {}", fileCache);
-                fileCache = null;
+            if (cacheFile != null && clearCache) {
+                cacheFile.delete();
+                LOG.debug("Deleted cache file: {}", cacheFile.getPath());
+                cacheFile = null;
             }
             if (memOutputStream != null && clearCache) {
                 memOutputStream.flush();
                 memOutputStream.close();
                 memOutputStream = null;
             }
+            tracker.release();
             cacheEmpty = true;
         }
     }
@@ -249,18 +299,31 @@ public class CachedOutputStream extends OutputStream
         return 0;
     }
 
-    @SuppressWarnings("resource")
-    private void cacheToFile() throws IOException {
-        fileCache = Files.createTempFile(
-                cacheDirectory, "CachedOutputStream-", "-temp");
-        fileCache.toFile().deleteOnExit();
-        LOG.debug("Reached max cache size. Swapping to file: {}", fileCache);
-        RandomAccessFile f = new RandomAccessFile(fileCache.toFile(), "rw");
-        FileChannel channel = f.getChannel();
-        fileOutputStream = Channels.newOutputStream(channel);
+    @Override
+    public long getOffHeapCacheSize() {
+        if (cacheFile != null) {
+            return cacheFile.getOffHeapSize();
+        }
+        return 0;
+    }
+    @Override
+    public long getFileCacheSize() {
+        if (cacheFile != null) {
+            return cacheFile.size() - cacheFile.getOffHeapSize();
+        }
+        return 0;
+    }
 
-        IOUtils.write(memOutputStream.toByteArray(), fileOutputStream);
+    private void cacheToFile() throws IOException {
+        cacheFile = factory.getMetrics().metered(factory.getStorage().newFile(
+                cacheDirectory, "CachedOutputStream-"));
+        LOG.debug("Reached max cache size. Swapping to file: {}",
+                cacheFile.getPath());
+        factory.getMetrics().spilled();
+        memOutputStream.writeTo(cacheFile);
+        memOutputStream.close();
         memOutputStream = null;
+        tracker.release();
     }
 
     @Override
@@ -20,10 +20,9 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -44,6 +43,14 @@ import com.norconex.commons.lang.unit.DataUnit;
  *   <li><code>cachedstream.mem.pool</code>: Pool max memory.</li>
  *   <li><code>cachedstream.mem.instance</code>: Instances max memory.</li>
  *   <li><code>cachedstream.dir</code>: Cache directory.</li>
+ *   <li><code>cachedstream.storage</code>: <code>mapped</code> to use
+ *       a {@link MappedCachedStreamStorage}.</li>
+ *   <li><code>cachedstream.mem.chunks</code>: Maximum number of memory
+ *       cache chunks pooled for reuse. When greater than zero,
+ *       a {@link ByteChunkPool} is used.</li>
+ *   <li><code>cachedstream.offheap.pool</code>: Off-heap pool max memory.
+ *       When greater than zero, an {@link OffHeapCachedStreamStorage}
+ *       is used before files.</li>
  * </ul>
  * <p>
  * The following are default initialization values when not supplied via
@@ -53,6 +60,9 @@ import com.norconex.commons.lang.unit.DataUnit;
  *   <li>Pool max memory: <i>1 GB</i></li>
  *   <li>Instances max memory: : <i>100 MB</i></li>
  *   <li>Cache directory: <i>Uses the system temporary directory.</i></li>
+ *   <li>Storage: <i>{@link ChannelCachedStreamStorage}</i></li>
+ *   <li>Pooled memory cache chunks: <i>0 (disabled)</i></li>
+ *   <li>Off-heap pool max memory: <i>0 (disabled)</i></li>
  * </ul>
  * <p>
  * Initialization values passed in constructor always take precedence.
@@ -71,13 +81,23 @@ public class CachedStreamFactory {
     private static final String PROP_MAX_MEM_INSTANCE =
             "cachedstream.mem.instance";
     private static final String PROP_DIR = "cachedstream.dir";
+    private static final String PROP_STORAGE = "cachedstream.storage";
+    private static final String PROP_MAX_MEM_CHUNKS = "cachedstream.mem.chunks";
+    private static final String PROP_MAX_OFFHEAP_POOL =
+            "cachedstream.offheap.pool";
+    // memory reserved at once by a stream, when possible
+    private static final int RESERVATION_SIZE =
+            (int) DataUnit.KB.toBytes(64);
 
     private final int maxMemoryPool;
     private final int maxMemoryInstance;
     private final Path cacheDirectory;
+    private final ICachedStreamStorage storage;
+    private final ByteChunkPool chunkPool;
 
-    private final Map<ICachedStream, Void> streams =
-            Collections.synchronizedMap(new WeakHashMap<ICachedStream, Void>());
+    // heap memory reserved by all streams
+    private final AtomicLong poolMemory = new AtomicLong();
+    private final CachedStreamMetrics metrics = new CachedStreamMetrics(this);
 
     /**
      * Constructor.
@@ -104,11 +124,58 @@ public class CachedStreamFactory {
             int maxMemoryPool,
             int maxMemoryInstance,
             Path cacheDirectory) {
+        this(maxMemoryPool, maxMemoryInstance, cacheDirectory,
+                getDefaultStorage(), getDefaultChunkPool());
+    }
+    /**
+     * Constructor.
+     * @param maxMemoryPool maximum number of bytes used for memory caching by
+     *     all instances created by this factory combined
+     * @param maxMemoryInstance maximum number of bytes used for
+     *     memory by each cached stream instance created
+     * @param cacheDirectory location where file-based caching takes place
+     * @param storage storage used for file-based caching
+     * @since 2.0.0
+     */
+    public CachedStreamFactory(
+            int maxMemoryPool,
+            int maxMemoryInstance,
+            Path cacheDirectory,
+            ICachedStreamStorage storage) {
+        this(maxMemoryPool, maxMemoryInstance, cacheDirectory, storage,
+                getDefaultChunkPool());
+    }
+    /**
+     * Constructor.
+     * @param maxMemoryPool maximum number of bytes used for memory caching by
+     *     all instances created by this factory combined
+     * @param maxMemoryInstance maximum number of bytes used for
+     *     memory by each cached stream instance created
+     * @param cacheDirectory location where file-based caching takes place
+     * @param storage storage used for file-based caching
+     * @param chunkPool pool of memory cache chunks, or <code>null</code>
+     *     to not pool them. Its chunk size must be a power of two.
+     * @since 2.0.0
+     */
+    public CachedStreamFactory(
+            int maxMemoryPool,
+            int maxMemoryInstance,
+            Path cacheDirectory,
+            ICachedStreamStorage storage,
+            ByteChunkPool chunkPool) {
         Objects.requireNonNull(
                 cacheDirectory, "'cacheDirectory' must not be null");
+        Objects.requireNonNull(storage, "'storage' must not be null");
+        if (chunkPool != null && !ChunkedByteArrayOutputStream
+                .isValidChunkSize(chunkPool.getChunkSize())) {
+            throw new IllegalArgumentException(
+                    "Chunk pool size must be a power of two.");
+        }
         this.maxMemoryPool = maxMemoryPool;
         this.maxMemoryInstance = maxMemoryInstance;
         this.cacheDirectory = cacheDirectory;
+        this.storage = storage;
+        this.chunkPool = chunkPool;
     }
     /**
      * Creates a new instance with default memory values
@@ -122,6 +189,8 @@ public class CachedStreamFactory {
         this.maxMemoryPool = getDefaultMaxMemoryPool();
         this.maxMemoryInstance = getDefaultMaxMemoryInstance();
         this.cacheDirectory = cacheDirectory;
+        this.storage = getDefaultStorage();
+        this.chunkPool = getDefaultChunkPool();
     }
     /**
      * Creates a new instance with default values (see class documentation)
@@ -146,6 +215,29 @@ public class CachedStreamFactory {
         }
         return FileUtils.getTempDirectory().toPath();
     }
+    private static ICachedStreamStorage getDefaultStorage() {
+        ICachedStreamStorage storage;
+        if ("mapped".equalsIgnoreCase(System.getProperty(PROP_STORAGE))) {
+            storage = new MappedCachedStreamStorage();
+        } else {
+            storage = new ChannelCachedStreamStorage();
+        }
+        long maxOffHeapPool = NumberUtils.toLong(
+                System.getProperty(PROP_MAX_OFFHEAP_POOL), 0);
+        if (maxOffHeapPool > 0) {
+            storage = new OffHeapCachedStreamStorage(maxOffHeapPool,
+                    OffHeapCachedStreamStorage.DEFAULT_CHUNK_SIZE, storage);
+        }
+        return storage;
+    }
+    private static ByteChunkPool getDefaultChunkPool() {
+        int maxChunks = NumberUtils.toInt(
+                System.getProperty(PROP_MAX_MEM_CHUNKS), 0);
+        if (maxChunks > 0) {
+            return new ByteChunkPool(maxChunks);
+        }
+        return null;
+    }
 
     public int getMaxMemoryPool() {
         return maxMemoryPool;
@@ -155,24 +247,59 @@ public class CachedStreamFactory {
         return maxMemoryInstance;
     }
 
-    /*default*/ int getPoolCurrentMemory() {
-        int byteSize = 0;
-        synchronized (streams) {
-            for (ICachedStream stream : streams.keySet()) {
-                if (stream != null) {
-                    byteSize += stream.getMemCacheSize();
-                }
-            }
-        }
-        return byteSize;
+    /**
+     * Gets the storage used for file-based caching.
+     * @return cached stream storage
+     * @since 2.0.0
+     */
+    public ICachedStreamStorage getStorage() {
+        return storage;
     }
-    /*default*/ int getPoolRemainingMemory() {
+
+    /**
+     * Gets the pool of memory cache chunks, which holds the pool
+     * sizes and usage counts.
+     * @return chunk pool, or <code>null</code> if chunks are not pooled
+     * @since 2.0.0
+     */
+    public ByteChunkPool getChunkPool() {
+        return chunkPool;
+    }
+
+    /**
+     * Gets usage metrics of the streams created by this factory,
+     * which can also be read through JMX.
+     * @return metrics
+     * @since 2.0.0
+     */
+    public CachedStreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    /*default*/ long getPoolCurrentMemory() {
+        return poolMemory.get();
+    }
+    /*default*/ long getPoolRemainingMemory() {
         return Math.max(0, maxMemoryPool - getPoolCurrentMemory());
     }
 
-    /*default*/ CachedInputStream newInputStream(byte[] bytes) {
-        return registerStream(
-                new CachedInputStream(this, cacheDirectory, bytes));
+    /*default*/ ChunkedByteArrayOutputStream newMemoryCache() {
+        if (chunkPool != null) {
+            return new ChunkedByteArrayOutputStream(chunkPool);
+        }
+        return new ChunkedByteArrayOutputStream();
+    }
+
+    // Hand-over from a CachedOutputStream, counted as the same stream.
+    /*default*/ CachedInputStream newInputStream(
+            byte[] bytes, long creationTime) {
+        return new CachedInputStream(
+                this, cacheDirectory, bytes, creationTime);
+    }
+    /*default*/ CachedInputStream newInputStream(
+            ICachedStreamFile file, long creationTime) {
+        return new CachedInputStream(
+                this, cacheDirectory, file, creationTime);
     }
 
     /**
@@ -189,8 +316,8 @@ public class CachedStreamFactory {
      * @return cached input stream
      */
     public CachedInputStream newInputStream(String content) {
-        return registerStream(new CachedInputStream(this, cacheDirectory,
-                IOUtils.toInputStream(content, StandardCharsets.UTF_8)));
+        return new CachedInputStream(this, cacheDirectory,
+                IOUtils.toInputStream(content, StandardCharsets.UTF_8));
     }
     public CachedInputStream newInputStream(File file) {
         Objects.requireNonNull(file, "'file' must not be null");
@@ -203,45 +330,143 @@ public class CachedStreamFactory {
      * @since 2.0.0
      */
     public CachedInputStream newInputStream(Path path) {
-        return registerStream(
-                new CachedInputStream(this, cacheDirectory, path));
+        return new CachedInputStream(this, cacheDirectory, path);
     }
     public CachedInputStream newInputStream(InputStream is) {
-        return registerStream(new CachedInputStream(this, cacheDirectory, is));
+        return new CachedInputStream(this, cacheDirectory, is);
+    }
+    /**
+     * Creates a new cached input stream reading the given input stream
+     * ahead in a background task, up to the given number of bytes.
+     * Bytes read ahead count against the memory pool until consumed.
+     * Useful for slow sources, which are then read while already
+     * read bytes are being consumed.
+     * @param is input stream
+     * @param executor executor running the read-ahead task
+     * @param prefetchSize maximum number of bytes read ahead
+     * @return cached input stream
+     * @since 2.0.0
+     * @see PrefetchInputStream
+     */
+    public CachedInputStream newInputStream(
+            InputStream is, Executor executor, int prefetchSize) {
+        return new CachedInputStream(this, cacheDirectory,
+                new PrefetchInputStream(
+                        is, executor, prefetchSize, new MemoryTracker()));
     }
 
     public CachedOutputStream newOuputStream(OutputStream os) {
-        return registerStream(new CachedOutputStream(this, cacheDirectory, os));
+        return new CachedOutputStream(this, cacheDirectory, os);
     }
     public CachedOutputStream newOuputStream() {
-        return registerStream(
-                new CachedOutputStream(this, cacheDirectory, null));
-    }
-
-    private <T extends ICachedStream> T registerStream(T s) {
-        synchronized (streams) {
-            streams.put(s, null);
-        }
-        return s;
+        return new CachedOutputStream(this, cacheDirectory, null);
     }
 
+    /**
+     * Tracks the heap memory used by a cached stream, reserving it from
+     * the factory memory pool. Memory is reserved in increments, so the
+     * shared pool is seldom accessed, and is released when the
+     * stream no longer holds it. Not thread-safe.
+     */
     public class MemoryTracker {
-        private static final int CHECK_CHUNK_SIZE = (int) FileUtils.ONE_KB;
-        private int poolRemaining = -1;
-        private int kbReadSoFar = -1;
-        // Checks every KB read the new max CacheSize
+        private long reserved;
+
+        /**
+         * Checks whether bytes can be added to the given memory cache,
+         * reserving the memory if needed.
+         * @param memOutputStream the stream memory cache
+         * @param bytesToAdd number of bytes to add
+         * @return <code>true</code> if there is enough memory
+         */
         public boolean hasEnoughAvailableMemory(
                 ByteArrayOutputStream memOutputStream,
                 int bytesToAdd) {
-            int kbRead = memOutputStream.size() / CHECK_CHUNK_SIZE;
-            if (kbRead != kbReadSoFar) {
-                kbReadSoFar = kbRead;
-                poolRemaining = getPoolRemainingMemory();
+            return hasEnoughAvailableMemory(
+                    memOutputStream.size(), bytesToAdd);
+        }
+        /**
+         * Checks whether bytes can be added to a memory cache of the
+         * given size, reserving the memory if needed.
+         * @param cacheSize the stream memory cache size
+         * @param bytesToAdd number of bytes to add
+         * @return <code>true</code> if there is enough memory
+         * @since 2.0.0
+         */
+        public boolean hasEnoughAvailableMemory(
+                long cacheSize, int bytesToAdd) {
+            long needed = cacheSize + bytesToAdd;
+            if (needed <= reserved) {
+                return true;
+            }
+            if (needed > getMaxMemoryInstance()) {
+                return false;
+            }
+            long min = needed - reserved;
+            long preferred = Math.max(min, Math.min(
+                    RESERVATION_SIZE, getMaxMemoryInstance() - reserved));
+            while (true) {
+                long used = poolMemory.get();
+                long available = maxMemoryPool - used;
+                if (available < min) {
+                    return false;
+                }
+                long amount = Math.min(preferred, available);
+                if (poolMemory.compareAndSet(used, used + amount)) {
+                    metrics.poolMemoryReserved(used + amount);
+                    reserved += amount;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Reserves memory already held by the stream, regardless of
+         * the memory available.
+         * @param bytes number of bytes
+         */
+        /*default*/ void reserveUnchecked(long bytes) {
+            metrics.poolMemoryReserved(poolMemory.addAndGet(bytes));
+            reserved += bytes;
+        }
+
+        /**
+         * Reserves exactly the given number of bytes, if available.
+         * @param bytes number of bytes
+         * @return <code>true</code> if the bytes were reserved
+         */
+        /*default*/ boolean reserve(int bytes) {
+            if (reserved + bytes > getMaxMemoryInstance()) {
+                return false;
+            }
+            while (true) {
+                long used = poolMemory.get();
+                if (maxMemoryPool - used < bytes) {
+                    return false;
+                }
+                if (poolMemory.compareAndSet(used, used + bytes)) {
+                    metrics.poolMemoryReserved(used + bytes);
+                    reserved += bytes;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Releases all memory reserved by the stream.
+         */
+        /*default*/ void release() {
+            release(reserved);
+        }
+        /**
+         * Releases up to the given number of reserved bytes.
+         * @param bytes number of bytes
+         */
+        /*default*/ void release(long bytes) {
+            long amount = Math.min(bytes, reserved);
+            if (amount > 0) {
+                poolMemory.addAndGet(-amount);
+                reserved -= amount;
             }
-            int remainingMemory = Math.min(
-                    poolRemaining,
-                    getMaxMemoryInstance() - memOutputStream.size());
-            return bytesToAdd <= remainingMemory;
         }
     }
 
@@ -0,0 +1,189 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Usage metrics of the cached streams created by a
+ * {@link CachedStreamFactory}, obtained with
+ * {@link CachedStreamFactory#getMetrics()}. Values are updated as
+ * streams are created, spill to files, write to files, and are disposed
+ * or closed, never when bytes are read.
+ * </p>
+ * <p>
+ * A {@link CachedInputStream} obtained from
+ * {@link CachedOutputStream#getInputStream()} is counted as the same
+ * stream as the output stream it was obtained from.
+ * </p>
+ * <p>
+ * Metrics can be read through JMX by registering an instance
+ * with an MBean server. For example:
+ * </p>
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *         factory.getMetrics(),
+ *         new ObjectName("com.norconex.commons.lang.io:type=CachedStreams"));
+ * </pre>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class CachedStreamMetrics implements ICachedStreamMetricsMXBean {
+
+    private final CachedStreamFactory factory;
+
+    private final LongAdder createdStreams = new LongAdder();
+    private final LongAdder endedStreams = new LongAdder();
+    private final LongAdder lifetimeNanos = new LongAdder();
+    private final LongAdder spillCount = new LongAdder();
+    private final LongAdder fileBytesWritten = new LongAdder();
+    private final AtomicLong poolMemoryHighWaterMark = new AtomicLong();
+
+    /*default*/ CachedStreamMetrics(CachedStreamFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public long getCreatedStreams() {
+        return createdStreams.sum();
+    }
+    @Override
+    public long getLiveStreams() {
+        // ended first so a stream ending meanwhile is not counted twice
+        long ended = endedStreams.sum();
+        return Math.max(0, createdStreams.sum() - ended);
+    }
+    @Override
+    public long getPoolMemory() {
+        return factory.getPoolCurrentMemory();
+    }
+    @Override
+    public long getMaxPoolMemory() {
+        return factory.getMaxMemoryPool();
+    }
+    @Override
+    public long getPoolMemoryHighWaterMark() {
+        return poolMemoryHighWaterMark.get();
+    }
+    @Override
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+    @Override
+    public long getFileBytesWritten() {
+        return fileBytesWritten.sum();
+    }
+    @Override
+    public double getAverageLifetime() {
+        long ended = endedStreams.sum();
+        if (ended == 0) {
+            return 0;
+        }
+        return (double) lifetimeNanos.sum()
+                / ended / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // Returns the creation time to pass to streamEnded.
+    /*default*/ long streamCreated() {
+        createdStreams.increment();
+        return System.nanoTime();
+    }
+    /*default*/ void streamEnded(long creationTime) {
+        lifetimeNanos.add(System.nanoTime() - creationTime);
+        endedStreams.increment();
+    }
+    /*default*/ void spilled() {
+        spillCount.increment();
+    }
+    // Wraps a new cache file so bytes written to it are counted.
+    /*default*/ ICachedStreamFile metered(ICachedStreamFile file) {
+        return new MeteredFile(file);
+    }
+    /*default*/ void poolMemoryReserved(long poolMemory) {
+        long highest = poolMemoryHighWaterMark.get();
+        while (poolMemory > highest && !poolMemoryHighWaterMark
+                .compareAndSet(highest, poolMemory)) {
+            highest = poolMemoryHighWaterMark.get();
+        }
+    }
+
+    // Counts bytes as they are written, not counting those kept
+    // in memory by the storage.
+    private final class MeteredFile implements ICachedStreamFile {
+        private final ICachedStreamFile file;
+        private long fileBytes;
+        private MeteredFile(ICachedStreamFile file) {
+            this.file = file;
+            this.fileBytes = fileBytes();
+        }
+        @Override
+        public Path getPath() {
+            return file.getPath();
+        }
+        @Override
+        public long size() {
+            return file.size();
+        }
+        @Override
+        public long getOffHeapSize() {
+            return file.getOffHeapSize();
+        }
+        @Override
+        public void write(int b) throws IOException {
+            file.write(b);
+            countWritten();
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+            countWritten();
+        }
+        @Override
+        public int read(long position, byte[] b, int off, int len)
+                throws IOException {
+            return file.read(position, b, off, len);
+        }
+        @Override
+        public long transferTo(long position, long len,
+                WritableByteChannel target) throws IOException {
+            return file.transferTo(position, len, target);
+        }
+        @Override
+        public void delete() throws IOException {
+            file.delete();
+        }
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+        private long fileBytes() {
+            return file.size() - file.getOffHeapSize();
+        }
+        private void countWritten() {
+            long bytes = fileBytes();
+            fileBytesWritten.add(bytes - fileBytes);
+            fileBytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.norconex.commons.lang.file.FileUtil;
+
+/**
+ * <p>
+ * Default cached stream storage, writing and reading temporary files
+ * with a {@link FileChannel}. Small writes are buffered and
+ * reads are positional.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class ChannelCachedStreamStorage implements ICachedStreamStorage {
+
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
+    @Override
+    public ICachedStreamFile newFile(Path cacheDirectory, String prefix)
+            throws IOException {
+        Path file = Files.createTempFile(cacheDirectory, prefix, "-temp");
+        file.toFile().deleteOnExit();
+        return new ChannelFile(file, FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    @Override
+    public ICachedStreamFile openFile(Path file) throws IOException {
+        return new ChannelFile(
+                file, FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    private static final class ChannelFile implements ICachedStreamFile {
+        private final Path path;
+        private final FileChannel channel;
+        private byte[] buffer;
+        private int bufferLength;
+        private long channelSize;
+
+        private ChannelFile(Path path, FileChannel channel)
+                throws IOException {
+            this.path = path;
+            this.channel = channel;
+            this.channelSize = channel.size();
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+        @Override
+        public long size() {
+            return channelSize + bufferLength;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (buffer == null) {
+                buffer = new byte[WRITE_BUFFER_SIZE];
+            } else if (bufferLength == buffer.length) {
+                flushBuffer();
+            }
+            buffer[bufferLength++] = (byte) b;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= WRITE_BUFFER_SIZE) {
+                flushBuffer();
+                writeFully(ByteBuffer.wrap(b, off, len));
+                return;
+            }
+            if (buffer == null) {
+                buffer = new byte[WRITE_BUFFER_SIZE];
+            } else if (len > buffer.length - bufferLength) {
+                flushBuffer();
+            }
+            System.arraycopy(b, off, buffer, bufferLength, len);
+            bufferLength += len;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len)
+                throws IOException {
+            if (position >= size()) {
+                return -1;
+            }
+            if (position + len > channelSize) {
+                flushBuffer();
+            }
+            ByteBuffer target = ByteBuffer.wrap(
+                    b, off, (int) Math.min(len, channelSize - position));
+            while (target.hasRemaining()) {
+                int num = channel.read(
+                        target, position + target.position() - off);
+                if (num <= 0) {
+                    break;
+                }
+            }
+            return target.position() - off;
+        }
+
+        // Lets the operating system copy the bytes when it can
+        // (e.g., from file to socket).
+        @Override
+        public long transferTo(long position, long len,
+                WritableByteChannel target) throws IOException {
+            flushBuffer();
+            long toTransfer = Math.min(len, channelSize - position);
+            long transferred = 0;
+            while (transferred < toTransfer) {
+                long num = channel.transferTo(position + transferred,
+                        toTransfer - transferred, target);
+                if (num <= 0) {
+                    break;
+                }
+                transferred += num;
+            }
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                try {
+                    flushBuffer();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+        @Override
+        public void delete() throws IOException {
+            try {
+                close();
+            } finally {
+                FileUtil.delete(path.toFile());
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (bufferLength > 0) {
+                writeFully(ByteBuffer.wrap(buffer, 0, bufferLength));
+                bufferLength = 0;
+            }
+        }
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                channelSize += channel.write(source, channelSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * <p>
+ * Unsynchronized alternative to {@link ByteArrayOutputStream}, meant to
+ * be used by a single thread at a time. Bytes are stored in chunks
+ * (byte arrays) of a size that is a power of two, so any byte
+ * is located without iterating over chunks. Chunks are only created
+ * as bytes are written. They can be obtained from a {@link ByteChunkPool},
+ * in which case they are returned to the pool when this stream is
+ * reset or closed.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class ChunkedByteArrayOutputStream extends OutputStream {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final int chunkSize;
+    private final int shift;
+    private final int mask;
+    private final ByteChunkPool pool;
+
+    private byte[][] chunks = new byte[8][];
+    private int chunkCount;
+    private byte[] currentChunk;
+    // position in current chunk, equal to chunk size when full or absent
+    private int chunkPos;
+    private int count;
+
+    /**
+     * Creates a stream with chunks of 8 KB.
+     */
+    public ChunkedByteArrayOutputStream() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+    /**
+     * Creates a stream with chunks of the given size.
+     * @param chunkSize chunk size, a power of two
+     */
+    public ChunkedByteArrayOutputStream(int chunkSize) {
+        this(chunkSize, null);
+    }
+    /**
+     * Creates a stream obtaining its chunks from a pool.
+     * @param pool chunk pool, with a chunk size that is a power of two
+     */
+    public ChunkedByteArrayOutputStream(ByteChunkPool pool) {
+        this(pool.getChunkSize(), pool);
+    }
+    private ChunkedByteArrayOutputStream(int chunkSize, ByteChunkPool pool) {
+        if (!isValidChunkSize(chunkSize)) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be a power of two: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+        this.pool = pool;
+        this.chunkPos = chunkSize;
+    }
+
+    /**
+     * Whether the given size can be used as a chunk size (i.e., is
+     * a positive power of two).
+     * @param chunkSize chunk size
+     * @return <code>true</code> if valid
+     */
+    public static boolean isValidChunkSize(int chunkSize) {
+        return chunkSize > 0 && (chunkSize & (chunkSize - 1)) == 0;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public void write(int b) {
+        if (chunkPos == chunkSize) {
+            addChunk();
+        }
+        currentChunk[chunkPos++] = (byte) b;
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int written = 0;
+        while (written < len) {
+            if (chunkPos == chunkSize) {
+                addChunk();
+            }
+            int num = Math.min(len - written, chunkSize - chunkPos);
+            System.arraycopy(b, off + written, currentChunk, chunkPos, num);
+            chunkPos += num;
+            written += num;
+        }
+        count += len;
+    }
+
+    /**
+     * Reads bytes from an input stream directly into the current chunk,
+     * up to the end of that chunk, with a single read call.
+     * @param in input stream to read from
+     * @return number of bytes read, or -1 if the end of the input stream
+     *         is reached
+     * @throws IOException could not read
+     */
+    public int readFrom(InputStream in) throws IOException {
+        if (chunkPos == chunkSize) {
+            addChunk();
+        }
+        int num = in.read(currentChunk, chunkPos, chunkSize - chunkPos);
+        if (num > 0) {
+            chunkPos += num;
+            count += num;
+        }
+        return num;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        currentChunk = pool == null ? new byte[chunkSize] : pool.acquire();
+        chunks[chunkCount++] = currentChunk;
+        chunkPos = 0;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     * @return byte count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the byte at the given offset.
+     * @param offset byte offset
+     * @return the byte value (0 to 255), or -1 if the offset is
+     *         negative or not lower than the number of bytes written
+     */
+    public int getByte(int offset) {
+        if (offset < 0 || offset >= count) {
+            return -1;
+        }
+        return chunks[offset >>> shift][offset & mask] & 0xFF;
+    }
+
+    /**
+     * Copies bytes starting at the given offset to a target array.
+     * @param offset offset of the first byte to copy
+     * @param target target array
+     * @param targetOffset offset in target array
+     * @param len maximum number of bytes to copy
+     * @return number of bytes copied, or -1 if the offset is negative or
+     *         not lower than the number of bytes written
+     */
+    public int getBytes(int offset, byte[] target, int targetOffset, int len) {
+        if (offset < 0 || offset >= count) {
+            return -1;
+        }
+        int toCopy = Math.min(len, count - offset);
+        int copied = 0;
+        while (copied < toCopy) {
+            int at = offset + copied;
+            int chunkOffset = at & mask;
+            int num = Math.min(toCopy - copied, chunkSize - chunkOffset);
+            System.arraycopy(chunks[at >>> shift], chunkOffset,
+                    target, targetOffset + copied, num);
+            copied += num;
+        }
+        return toCopy;
+    }
+
+    /**
+     * Writes all bytes to the given output stream.
+     * @param out output stream
+     * @throws IOException could not write
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int remaining = count;
+        for (int i = 0; i < chunkCount && remaining > 0; i++) {
+            int num = Math.min(chunkSize, remaining);
+            out.write(chunks[i], 0, num);
+            remaining -= num;
+        }
+    }
+    /**
+     * Writes all bytes to the given cache file.
+     * @param file cache file
+     * @throws IOException could not write
+     */
+    public void writeTo(ICachedStreamFile file) throws IOException {
+        int remaining = count;
+        for (int i = 0; i < chunkCount && remaining > 0; i++) {
+            int num = Math.min(chunkSize, remaining);
+            file.write(chunks[i], 0, num);
+            remaining -= num;
+        }
+    }
+
+    /**
+     * Writes bytes starting at the given offset to the given output
+     * stream, one chunk at a time.
+     * @param offset offset of the first byte to write
+     * @param out output stream
+     * @return number of bytes written
+     * @throws IOException could not write
+     */
+    public int writeTo(int offset, OutputStream out) throws IOException {
+        int at = offset;
+        while (at < count) {
+            int num = chunkRemaining(at);
+            out.write(chunks[at >>> shift], at & mask, num);
+            at += num;
+        }
+        return Math.max(0, at - offset);
+    }
+    /**
+     * Writes bytes starting at the given offset to the given channel,
+     * one chunk at a time.
+     * @param offset offset of the first byte to write
+     * @param channel channel to write to
+     * @return number of bytes written
+     * @throws IOException could not write
+     */
+    public int writeTo(int offset, WritableByteChannel channel)
+            throws IOException {
+        int at = offset;
+        while (at < count) {
+            int num = chunkRemaining(at);
+            IOUtil.writeFully(channel,
+                    ByteBuffer.wrap(chunks[at >>> shift], at & mask, num));
+            at += num;
+        }
+        return Math.max(0, at - offset);
+    }
+    // number of bytes from the given offset to the end of its chunk
+    // or of the bytes written
+    private int chunkRemaining(int offset) {
+        return Math.min(chunkSize - (offset & mask), count - offset);
+    }
+
+    /**
+     * Gets a copy of all bytes written.
+     * @return byte array
+     */
+    public byte[] toByteArray() {
+        if (count == 0) {
+            return ArrayUtils.EMPTY_BYTE_ARRAY;
+        }
+        byte[] bytes = new byte[count];
+        getBytes(0, bytes, 0, count);
+        return bytes;
+    }
+
+    /**
+     * Discards all bytes written, returning chunks to the pool, if any.
+     */
+    public void reset() {
+        if (pool != null) {
+            for (int i = 0; i < chunkCount; i++) {
+                pool.release(chunks[i]);
+            }
+        }
+        Arrays.fill(chunks, 0, chunkCount, null);
+        chunkCount = 0;
+        currentChunk = null;
+        chunkPos = chunkSize;
+        count = 0;
+    }
+
+    /**
+     * Same as {@link #reset()}. This stream can still be written to
+     * after being closed.
+     */
+    @Override
+    public void close() {
+        reset();
+    }
+}
@@ -21,8 +21,26 @@ import java.nio.file.Path;
  */
 public interface ICachedStream {
 
+    /**
+     * Gets the number of bytes cached in heap memory.
+     * @return heap memory cache size
+     */
     long getMemCacheSize();
 
+    /**
+     * Gets the number of bytes cached in memory outside of the Java heap.
+     * @return off-heap memory cache size
+     * @since 2.0.0
+     */
+    long getOffHeapCacheSize();
+
+    /**
+     * Gets the number of bytes cached in a file.
+     * @return file cache size
+     * @since 2.0.0
+     */
+    long getFileCacheSize();
+
     /**
      * Gets the cache directory where temporary cache files are created.
      * @return the cache directory
@@ -0,0 +1,116 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * A file holding cached stream content, created by an
+ * {@link ICachedStreamStorage}. Bytes are always appended, while
+ * they can be read from any position, including bytes just written.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public interface ICachedStreamFile extends Closeable {
+
+    /**
+     * Gets the path of this file.
+     * @return file path
+     */
+    Path getPath();
+
+    /**
+     * Gets the number of bytes written to or present in this file.
+     * @return byte size
+     */
+    long size();
+
+    /**
+     * Gets the number of bytes held in memory outside of the Java heap,
+     * if any, out of this file {@link #size()}.
+     * @return off-heap byte size
+     */
+    default long getOffHeapSize() {
+        return 0;
+    }
+
+    /**
+     * Appends a byte.
+     * @param b the byte to write
+     * @throws IOException could not write
+     */
+    void write(int b) throws IOException;
+
+    /**
+     * Appends bytes.
+     * @param b the bytes to write
+     * @param off start offset in the byte array
+     * @param len number of bytes to write
+     * @throws IOException could not write
+     */
+    void write(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Reads bytes from the given position. Exactly <code>len</code> bytes
+     * are read unless the end of the file is reached first.
+     * @param position file position where to start reading
+     * @param b array where to store the bytes read
+     * @param off start offset in the byte array
+     * @param len maximum number of bytes to read
+     * @return number of bytes read or -1 if the position is at or beyond
+     *         the end of the file
+     * @throws IOException could not read
+     */
+    int read(long position, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Writes bytes starting at the given position to a channel, up to
+     * the given length or the end of the file. Implementations
+     * should avoid copying bytes in the Java heap when possible.
+     * The default implementation reads and writes 8 KB at a time.
+     * @param position file position where to start reading
+     * @param len maximum number of bytes to write
+     * @param target channel to write to
+     * @return number of bytes written
+     * @throws IOException could not read or write
+     */
+    default long transferTo(long position, long len,
+            WritableByteChannel target) throws IOException {
+        byte[] buffer = new byte[8192];
+        long transferred = 0;
+        while (transferred < len) {
+            int num = read(position + transferred, buffer, 0,
+                    (int) Math.min(buffer.length, len - transferred));
+            if (num <= 0) {
+                break;
+            }
+            IOUtil.writeFully(target, ByteBuffer.wrap(buffer, 0, num));
+            transferred += num;
+        }
+        return transferred;
+    }
+
+    /**
+     * Closes and deletes this file.
+     * @throws IOException could not delete the file
+     */
+    void delete() throws IOException;
+}
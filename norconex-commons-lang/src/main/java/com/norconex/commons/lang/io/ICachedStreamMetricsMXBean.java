@@ -0,0 +1,85 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+/**
+ * <p>
+ * Management interface exposing {@link CachedStreamFactory} usage
+ * through JMX.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see CachedStreamMetrics
+ */
+public interface ICachedStreamMetricsMXBean {
+
+    /**
+     * Gets the number of cached streams created. An input stream obtained
+     * from a {@link CachedOutputStream} is not counted separately.
+     * @return created stream count
+     */
+    long getCreatedStreams();
+
+    /**
+     * Gets the number of cached streams created and not yet disposed
+     * or closed.
+     * @return live stream count
+     */
+    long getLiveStreams();
+
+    /**
+     * Gets the number of bytes of heap memory currently reserved by
+     * cached streams.
+     * @return pool memory in bytes
+     */
+    long getPoolMemory();
+
+    /**
+     * Gets the maximum number of bytes of heap memory the memory pool
+     * may hold.
+     * @return maximum pool memory in bytes
+     */
+    long getMaxPoolMemory();
+
+    /**
+     * Gets the highest number of bytes of heap memory reserved by
+     * cached streams at once.
+     * @return pool memory high-water mark in bytes
+     */
+    long getPoolMemoryHighWaterMark();
+
+    /**
+     * Gets the number of times a cached stream moved its memory cache
+     * to a file cache.
+     * @return spill count
+     */
+    long getSpillCount();
+
+    /**
+     * Gets the number of bytes written to cache files, not counting
+     * bytes kept in memory by the storage (e.g., off-heap). Bytes are
+     * counted as they are written.
+     * @return file bytes written
+     */
+    long getFileBytesWritten();
+
+    /**
+     * Gets the average time between the creation of cached
+     * streams and their disposal or closing, for streams
+     * no longer live.
+     * @return average lifetime in milliseconds
+     */
+    double getAverageLifetime();
+}
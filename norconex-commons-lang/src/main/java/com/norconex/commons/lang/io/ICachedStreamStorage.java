@@ -0,0 +1,51 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * Storage used by cached streams for content exceeding their memory
+ * limits. Set one on {@link CachedStreamFactory} to change how such
+ * content is written and read back. Implementations must be thread-safe,
+ * but the files they create are only accessed by one stream at a time.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see ChannelCachedStreamStorage
+ * @see MappedCachedStreamStorage
+ */
+public interface ICachedStreamStorage {
+
+    /**
+     * Creates a new empty file for caching stream content.
+     * @param cacheDirectory directory where to create the file
+     * @param prefix file name prefix
+     * @return the new cache file
+     * @throws IOException could not create the file
+     */
+    ICachedStreamFile newFile(Path cacheDirectory, String prefix)
+            throws IOException;
+
+    /**
+     * Opens an existing file for reading cached content.
+     * @param file the file to open
+     * @return the cache file
+     * @throws IOException could not open the file
+     */
+    ICachedStreamFile openFile(Path file) throws IOException;
+}
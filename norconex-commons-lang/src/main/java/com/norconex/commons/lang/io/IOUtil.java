@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -361,4 +363,31 @@ public final class IOUtil {
     public static InputStream toNonNullInputStream(InputStream is) {
         return is != null ? is : new NullInputStream(0);
     }
+
+    /**
+     * Writes all remaining bytes of a buffer to a blocking channel,
+     * invoking its write method as many times as needed (for channels
+     * writing only part of the bytes at once). A channel not accepting
+     * any bytes (e.g., a non-blocking channel not ready for writing)
+     * makes this method fail instead of waiting for it.
+     * @param channel channel to write to
+     * @param buffer bytes to write
+     * @return number of bytes written
+     * @throws IOException could not write to the channel, or the channel
+     *         did not accept any bytes
+     * @since 2.0.0
+     */
+    public static int writeFully(WritableByteChannel channel,
+            ByteBuffer buffer) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            int num = channel.write(buffer);
+            if (num == 0) {
+                throw new IOException("Channel did not accept any bytes ("
+                        + buffer.remaining() + " bytes remaining).");
+            }
+            written += num;
+        }
+        return written;
+    }
 }
@@ -0,0 +1,215 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.norconex.commons.lang.file.FileUtil;
+import com.norconex.commons.lang.unit.DataUnit;
+
+/**
+ * <p>
+ * Cached stream storage mapping temporary files in memory, in segments
+ * of a fixed size. Bytes are copied straight between stream buffers and
+ * the operating system page cache, without going through
+ * file read/write calls.
+ * </p>
+ * <p>
+ * Segment sizes are rounded up to a multiple of 64 KB, so segments
+ * always start on a page boundary. The space of a new segment is
+ * allocated in the file as soon as it is needed, so files are
+ * larger than their content until deleted.
+ * </p>
+ * <p>
+ * <b>Note:</b> Java does not offer a way to release mapped memory
+ * explicitly. It is released once no longer referenced and garbage
+ * collected. On some operating systems (e.g., Windows), a file cannot be
+ * deleted until then, which can delay the deletion of disposed caches.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class MappedCachedStreamStorage implements ICachedStreamStorage {
+
+    public static final int DEFAULT_SEGMENT_SIZE =
+            (int) DataUnit.MB.toBytes(4);
+
+    // Windows allocation granularity, a multiple of common page sizes
+    private static final int ALIGNMENT = (int) DataUnit.KB.toBytes(64);
+
+    private final int segmentSize;
+
+    /**
+     * Creates a storage with the default segment size (4 MB).
+     */
+    public MappedCachedStreamStorage() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+    /**
+     * Creates a storage with the given segment size, rounded up to
+     * a multiple of 64 KB.
+     * @param segmentSize segment size in bytes
+     */
+    public MappedCachedStreamStorage(int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Segment size must be greater than zero.");
+        }
+        long aligned = ((long) segmentSize + ALIGNMENT - 1)
+                / ALIGNMENT * ALIGNMENT;
+        this.segmentSize = (int) Math.min(
+                aligned, Integer.MAX_VALUE / ALIGNMENT * ALIGNMENT);
+    }
+
+    /**
+     * Gets the size of mapped file segments.
+     * @return segment size in bytes
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    @Override
+    public ICachedStreamFile newFile(Path cacheDirectory, String prefix)
+            throws IOException {
+        Path file = Files.createTempFile(cacheDirectory, prefix, "-temp");
+        file.toFile().deleteOnExit();
+        return new MappedFile(file, FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE),
+                MapMode.READ_WRITE, segmentSize);
+    }
+
+    @Override
+    public ICachedStreamFile openFile(Path file) throws IOException {
+        return new MappedFile(file,
+                FileChannel.open(file, StandardOpenOption.READ),
+                MapMode.READ_ONLY, segmentSize);
+    }
+
+    private static final class MappedFile implements ICachedStreamFile {
+        private final Path path;
+        private final FileChannel channel;
+        private final MapMode mode;
+        private final int segmentSize;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private long size;
+
+        private MappedFile(Path path, FileChannel channel, MapMode mode,
+                int segmentSize) throws IOException {
+            this.path = path;
+            this.channel = channel;
+            this.mode = mode;
+            this.segmentSize = segmentSize;
+            this.size = channel.size();
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            segment(size).put((byte) b);
+            size++;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int written = 0;
+            while (written < len) {
+                MappedByteBuffer segment = segment(size);
+                int num = Math.min(len - written, segment.remaining());
+                segment.put(b, off + written, num);
+                written += num;
+                size += num;
+            }
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len)
+                throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, size - position);
+            int read = 0;
+            while (read < toRead) {
+                MappedByteBuffer segment = segment(position + read);
+                int num = Math.min(toRead - read, segment.remaining());
+                segment.get(b, off + read, num);
+                read += num;
+            }
+            return read;
+        }
+
+        @Override
+        public long transferTo(long position, long len,
+                WritableByteChannel target) throws IOException {
+            long toTransfer = Math.max(0, Math.min(len, size - position));
+            long transferred = 0;
+            while (transferred < toTransfer) {
+                ByteBuffer bytes = segment(position + transferred).duplicate();
+                bytes.limit((int) Math.min(bytes.limit(), bytes.position()
+                        + toTransfer - transferred));
+                transferred += IOUtil.writeFully(target, bytes);
+            }
+            return transferred;
+        }
+
+        // Returns the segment holding the given position, positioned on it.
+        private MappedByteBuffer segment(long position) throws IOException {
+            int index = (int) (position / segmentSize);
+            while (segments.size() <= index) {
+                long start = (long) segments.size() * segmentSize;
+                long length = segmentSize;
+                if (mode == MapMode.READ_ONLY) {
+                    length = Math.min(length, size - start);
+                }
+                segments.add(channel.map(mode, start, length));
+            }
+            MappedByteBuffer segment = segments.get(index);
+            segment.position((int) (position - (long) index * segmentSize));
+            return segment;
+        }
+
+        @Override
+        public void close() throws IOException {
+            segments.clear();
+            channel.close();
+        }
+        @Override
+        public void delete() throws IOException {
+            try {
+                close();
+            } finally {
+                FileUtil.delete(path.toFile());
+            }
+        }
+    }
+}
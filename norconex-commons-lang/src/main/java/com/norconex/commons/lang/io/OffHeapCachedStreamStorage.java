@@ -0,0 +1,339 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.norconex.commons.lang.unit.DataUnit;
+
+/**
+ * <p>
+ * Cached stream storage keeping content outside of the Java heap, in
+ * direct {@link ByteBuffer} chunks, before falling back to another
+ * storage once a maximum is reached. Used by a
+ * {@link CachedStreamFactory}, it adds a memory tier between heap memory
+ * and files, so large content can remain in memory without adding to
+ * garbage collection work.
+ * </p>
+ * <p>
+ * The maximum applies to all files created by an instance combined and
+ * is independent from the factory heap memory limits. Chunks
+ * are pooled: they are allocated as needed, up to the maximum, and
+ * are reused once released by disposed streams. Direct memory is also
+ * limited by the JVM (see <code>-XX:MaxDirectMemorySize</code>). When
+ * that limit is reached first, content goes to the fallback storage.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class OffHeapCachedStreamStorage implements ICachedStreamStorage {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(OffHeapCachedStreamStorage.class);
+
+    public static final int DEFAULT_CHUNK_SIZE =
+            (int) DataUnit.KB.toBytes(256);
+
+    private final long maxMemoryPool;
+    private final int chunkSize;
+    private final ICachedStreamStorage fallbackStorage;
+
+    private final Queue<ByteBuffer> freeChunks =
+            new ConcurrentLinkedQueue<>();
+    private final AtomicLong allocatedMemory = new AtomicLong();
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    /**
+     * Creates a storage using the default chunk size (256 KB) and
+     * falling back to a {@link ChannelCachedStreamStorage}.
+     * @param maxMemoryPool maximum number of bytes of direct memory used
+     */
+    public OffHeapCachedStreamStorage(long maxMemoryPool) {
+        this(maxMemoryPool, DEFAULT_CHUNK_SIZE,
+                new ChannelCachedStreamStorage());
+    }
+    /**
+     * Creates a storage.
+     * @param maxMemoryPool maximum number of bytes of direct memory used
+     * @param chunkSize size of direct memory chunks
+     * @param fallbackStorage storage used once the maximum is reached
+     */
+    public OffHeapCachedStreamStorage(long maxMemoryPool, int chunkSize,
+            ICachedStreamStorage fallbackStorage) {
+        Objects.requireNonNull(
+                fallbackStorage, "'fallbackStorage' must not be null");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be greater than zero.");
+        }
+        this.maxMemoryPool = maxMemoryPool;
+        this.chunkSize = chunkSize;
+        this.fallbackStorage = fallbackStorage;
+    }
+
+    public long getMaxMemoryPool() {
+        return maxMemoryPool;
+    }
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    public ICachedStreamStorage getFallbackStorage() {
+        return fallbackStorage;
+    }
+
+    /**
+     * Gets the number of bytes of direct memory currently held by
+     * cached streams.
+     * @return used memory
+     */
+    public long getPoolCurrentMemory() {
+        return usedMemory.get();
+    }
+    /**
+     * Gets the number of bytes of direct memory allocated so far, used
+     * or pooled for reuse.
+     * @return allocated memory
+     */
+    public long getPoolAllocatedMemory() {
+        return allocatedMemory.get();
+    }
+
+    @Override
+    public ICachedStreamFile newFile(Path cacheDirectory, String prefix)
+            throws IOException {
+        return new OffHeapFile(cacheDirectory, prefix);
+    }
+
+    /**
+     * Opens an existing file using the fallback storage.
+     * @param file the file to open
+     * @return the cache file
+     * @throws IOException could not open the file
+     */
+    @Override
+    public ICachedStreamFile openFile(Path file) throws IOException {
+        return fallbackStorage.openFile(file);
+    }
+
+    // null if the maximum is reached
+    private ByteBuffer acquireChunk() {
+        ByteBuffer chunk = freeChunks.poll();
+        if (chunk == null) {
+            if (allocatedMemory.addAndGet(chunkSize) > maxMemoryPool) {
+                allocatedMemory.addAndGet(-chunkSize);
+                return null;
+            }
+            try {
+                chunk = ByteBuffer.allocateDirect(chunkSize);
+            } catch (OutOfMemoryError e) {
+                // JVM direct memory limit reached
+                allocatedMemory.addAndGet(-chunkSize);
+                LOG.debug("Could not allocate direct memory: {}",
+                        e.getMessage());
+                return null;
+            }
+        }
+        chunk.clear();
+        usedMemory.addAndGet(chunkSize);
+        return chunk;
+    }
+    private void releaseChunk(ByteBuffer chunk) {
+        usedMemory.addAndGet(-chunkSize);
+        freeChunks.offer(chunk);
+    }
+
+    // Bytes go to direct memory chunks until none can be acquired,
+    // and the rest goes to a fallback file.
+    private final class OffHeapFile implements ICachedStreamFile {
+        private final Path cacheDirectory;
+        private final String prefix;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private long memorySize;
+        private ICachedStreamFile fallbackFile;
+        private boolean closed;
+
+        private OffHeapFile(Path cacheDirectory, String prefix) {
+            this.cacheDirectory = cacheDirectory;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Gets the fallback file path, or <code>null</code> if all
+         * bytes are in memory.
+         * @return file path or <code>null</code>
+         */
+        @Override
+        public Path getPath() {
+            return fallbackFile == null ? null : fallbackFile.getPath();
+        }
+        @Override
+        public long size() {
+            if (fallbackFile == null) {
+                return memorySize;
+            }
+            return memorySize + fallbackFile.size();
+        }
+        @Override
+        public long getOffHeapSize() {
+            return memorySize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (fallbackFile == null) {
+                ByteBuffer chunk = writableChunk();
+                if (chunk != null) {
+                    chunk.put((byte) b);
+                    memorySize++;
+                    return;
+                }
+            }
+            fallbackFile.write(b);
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int written = 0;
+            while (fallbackFile == null && written < len) {
+                ByteBuffer chunk = writableChunk();
+                if (chunk == null) {
+                    break;
+                }
+                int num = Math.min(len - written, chunk.remaining());
+                chunk.put(b, off + written, num);
+                written += num;
+                memorySize += num;
+            }
+            if (written < len) {
+                fallbackFile.write(b, off + written, len - written);
+            }
+        }
+        // Returns the chunk to write to, positioned at the end, or null
+        // after creating the fallback file if no chunk can be acquired.
+        private ByteBuffer writableChunk() throws IOException {
+            if (closed) {
+                throw new IOException("Cache file is closed.");
+            }
+            int index = (int) (memorySize / chunkSize);
+            if (index == chunks.size()) {
+                ByteBuffer chunk = acquireChunk();
+                if (chunk == null) {
+                    LOG.debug("Reached max off-heap memory. "
+                            + "Using fallback storage.");
+                    fallbackFile =
+                            fallbackStorage.newFile(cacheDirectory, prefix);
+                    return null;
+                }
+                chunks.add(chunk);
+            }
+            ByteBuffer chunk = chunks.get(index);
+            chunk.position((int) (memorySize - (long) index * chunkSize));
+            return chunk;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len)
+                throws IOException {
+            if (closed) {
+                throw new IOException("Cache file is closed.");
+            }
+            if (position >= size()) {
+                return -1;
+            }
+            int read = 0;
+            while (read < len && position + read < memorySize) {
+                long at = position + read;
+                int index = (int) (at / chunkSize);
+                ByteBuffer chunk = chunks.get(index);
+                chunk.position((int) (at - (long) index * chunkSize));
+                int num = (int) Math.min(len - read, Math.min(
+                        chunk.remaining(), memorySize - at));
+                chunk.get(b, off + read, num);
+                read += num;
+            }
+            if (read < len && fallbackFile != null) {
+                int num = fallbackFile.read(position + read - memorySize,
+                        b, off + read, len - read);
+                if (num > 0) {
+                    read += num;
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long transferTo(long position, long len,
+                WritableByteChannel target) throws IOException {
+            if (closed) {
+                throw new IOException("Cache file is closed.");
+            }
+            long toTransfer = Math.max(0, Math.min(len, size() - position));
+            long transferred = 0;
+            while (transferred < toTransfer && position + transferred
+                    < memorySize) {
+                long at = position + transferred;
+                int index = (int) (at / chunkSize);
+                ByteBuffer bytes = chunks.get(index).duplicate();
+                bytes.position((int) (at - (long) index * chunkSize));
+                bytes.limit((int) Math.min(bytes.capacity(), bytes.position()
+                        + Math.min(toTransfer - transferred,
+                                memorySize - at)));
+                transferred += IOUtil.writeFully(target, bytes);
+            }
+            if (transferred < toTransfer && fallbackFile != null) {
+                transferred += fallbackFile.transferTo(
+                        position + transferred - memorySize,
+                        toTransfer - transferred, target);
+            }
+            return transferred;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (ByteBuffer chunk : chunks) {
+                releaseChunk(chunk);
+            }
+            chunks.clear();
+            if (fallbackFile != null) {
+                fallbackFile.close();
+            }
+        }
+        @Override
+        public void delete() throws IOException {
+            try {
+                close();
+            } finally {
+                if (fallbackFile != null) {
+                    fallbackFile.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import com.norconex.commons.lang.io.CachedStreamFactory.MemoryTracker;
+
+/**
+ * <p>
+ * {@link InputStream} wrapper reading its source ahead in a background
+ * task, so a slow source (e.g., a network connection) is read while
+ * the bytes already read are being consumed. Bytes read ahead are
+ * buffered in blocks, up to a window size. Once the window is full,
+ * reading the source pauses until bytes are consumed.
+ * </p>
+ * <p>
+ * When obtained from a {@link CachedStreamFactory}, buffered bytes
+ * also count against the factory memory pool until consumed (the
+ * consuming {@link CachedInputStream} then counts them). When the pool
+ * is exhausted, only one block is read ahead at a time.
+ * </p>
+ * <p>
+ * The background task is submitted on creation to the given executor and
+ * ends when the source is fully read, fails, or this stream is closed.
+ * A source failure is reported by read methods once bytes read before it
+ * are consumed. Consuming methods are meant to be invoked by one thread
+ * at a time.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see CachedStreamFactory#newInputStream(InputStream, Executor, int)
+ */
+public class PrefetchInputStream extends InputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private final InputStream source;
+    private final int windowSize;
+    private final int blockSize;
+    private final MemoryTracker tracker;
+
+    // guarded by "this"
+    private final Deque<Block> blocks = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean eof;
+    private IOException error;
+    private boolean closed;
+    private boolean running = true;
+
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Creates a stream and starts reading ahead from the given source.
+     * @param source the input stream to read ahead from
+     * @param executor executor running the read-ahead task
+     * @param windowSize maximum number of bytes read ahead
+     */
+    public PrefetchInputStream(
+            InputStream source, Executor executor, int windowSize) {
+        this(source, executor, windowSize, null);
+    }
+    /*default*/ PrefetchInputStream(InputStream source,
+            Executor executor, int windowSize, MemoryTracker tracker) {
+        Objects.requireNonNull(source, "'source' must not be null");
+        Objects.requireNonNull(executor, "'executor' must not be null");
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Window size must be greater than zero.");
+        }
+        this.source = source;
+        this.windowSize = windowSize;
+        this.blockSize = Math.min(DEFAULT_BLOCK_SIZE, windowSize);
+        this.tracker = tracker;
+        executor.execute(this::prefetch);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Gets the number of bytes read ahead, not yet consumed.
+     * @return buffered byte count
+     */
+    public synchronized int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    private void prefetch() {
+        // whether memory is reserved for a block being read
+        boolean reading = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (!closed && !canReadAhead()) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    reading = true;
+                }
+                byte[] data = new byte[blockSize];
+                int num = source.read(data);
+                synchronized (this) {
+                    reading = false;
+                    if (tracker != null) {
+                        // only keep what was actually buffered
+                        tracker.release(blockSize - Math.max(num, 0));
+                    }
+                    if (num == -1) {
+                        eof = true;
+                    } else if (num > 0) {
+                        blocks.addLast(new Block(data, num));
+                        bufferedBytes += num;
+                    }
+                    notifyAll();
+                }
+                if (num == -1) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new InterruptedIOException("Read-ahead interrupted."));
+        } catch (RuntimeException e) {
+            fail(new IOException("Could not read ahead.", e));
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (closed) {
+                    if (tracker != null) {
+                        tracker.release();
+                    }
+                    quietCloseSource();
+                } else if (reading && tracker != null) {
+                    tracker.release(blockSize);
+                }
+                notifyAll();
+            }
+        }
+    }
+    // A block is always read when nothing is buffered so the consumer
+    // is never left waiting on memory held elsewhere.
+    // When true, memory for one block is reserved.
+    private boolean canReadAhead() {
+        if (bufferedBytes == 0) {
+            if (tracker != null) {
+                tracker.reserveUnchecked(blockSize);
+            }
+            return true;
+        }
+        return bufferedBytes + blockSize <= windowSize
+                && (tracker == null || tracker.reserve(blockSize));
+    }
+    private synchronized void fail(IOException e) {
+        error = e;
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int num = read(singleByte, 0, 1);
+        return num == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len)
+            throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        while (blocks.isEmpty() && !eof && error == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "Interrupted while waiting for bytes.");
+            }
+            ensureOpen();
+        }
+        if (blocks.isEmpty()) {
+            if (error != null) {
+                throw error;
+            }
+            return -1;
+        }
+        int read = 0;
+        while (read < len && !blocks.isEmpty()) {
+            Block block = blocks.peekFirst();
+            int num = Math.min(len - read, block.length - block.pos);
+            System.arraycopy(block.data, block.pos, b, off + read, num);
+            block.pos += num;
+            read += num;
+            if (block.pos == block.length) {
+                blocks.removeFirst();
+            }
+        }
+        bufferedBytes -= read;
+        if (tracker != null) {
+            tracker.release(read);
+        }
+        notifyAll();
+        return read;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        ensureOpen();
+        return bufferedBytes;
+    }
+
+    /**
+     * Stops reading ahead and closes the source. If the source is being
+     * read, it is closed once that read returns.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        blocks.clear();
+        bufferedBytes = 0;
+        if (tracker != null) {
+            tracker.release();
+        }
+        notifyAll();
+        if (!running) {
+            source.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+    private void quietCloseSource() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            //NOOP
+        }
+    }
+
+    private static final class Block {
+        private final byte[] data;
+        private final int length;
+        private int pos;
+        private Block(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,595 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+/**
+ * <p>
+ * A memory-compact map of string keys to string lists, meant to be
+ * decorated by {@link Properties} when holding many small entries
+ * (e.g., document metadata):
+ * </p>
+ * <pre>
+ * Properties props = new Properties(new CompactPropertiesMap());
+ * </pre>
+ * <p>
+ * Compared to the default {@link java.util.HashMap} of
+ * {@link java.util.ArrayList}:
+ * </p>
+ * <ul>
+ *   <li>Entries are stored in a single open-addressing table
+ *       (linear probing).</li>
+ *   <li>Single values are stored inline, without a list. Multiple
+ *       values are stored in a plain array.</li>
+ *   <li>Values obtained by {@link Properties} typed getters
+ *       (e.g., {@link Properties#getInteger(String)}) are cached
+ *       per entry until the entry values change, so repeated reads do not
+ *       parse the same string again. Only immutable types are cached.</li>
+ * </ul>
+ * <p>
+ * Lists returned by {@link #get(Object)} are lightweight views
+ * writing through to the entry, like lists stored in a regular map would.
+ * Keys and values can be <code>null</code>.
+ * This class is not thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class CompactPropertiesMap extends AbstractMap<String, List<String>>
+        implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Kept low since linear probing degrades quickly when filling up.
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private static final Set<Class<?>> CACHEABLE_TYPES =
+            new HashSet<>(Arrays.asList(
+                    String.class, Boolean.class, boolean.class,
+                    Character.class, char.class, Byte.class, byte.class,
+                    Short.class, short.class, Integer.class, int.class,
+                    Long.class, long.class, Float.class, float.class,
+                    Double.class, double.class, BigInteger.class,
+                    BigDecimal.class, Locale.class, File.class, Path.class,
+                    Class.class, Charset.class));
+
+    private transient Node[] table;
+    private transient int size;
+    private transient int threshold;
+    private transient int modCount;
+    // sum of entry hash codes, maintained as entries change
+    private transient int hash;
+    private transient EntrySet entrySet;
+
+    /**
+     * Creates a new empty map.
+     */
+    public CompactPropertiesMap() {
+        this(DEFAULT_CAPACITY);
+    }
+    /**
+     * Creates a new empty map with the expected number of entries.
+     * @param expectedSize expected number of entries
+     */
+    public CompactPropertiesMap(int expectedSize) {
+        super();
+        init(capacityFor(expectedSize));
+    }
+    /**
+     * Creates a new map holding the same entries as the given map.
+     * @param map the map to copy
+     */
+    public CompactPropertiesMap(Map<String, List<String>> map) {
+        this(map == null ? 0 : map.size());
+        if (map != null) {
+            putAll(map);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+    @Override
+    public List<String> get(Object key) {
+        int i = indexOf(key);
+        return i == -1 ? null : table[i].getValue();
+    }
+    @Override
+    public List<String> put(String key, List<String> values) {
+        int i = indexOf(key);
+        if (i != -1) {
+            return table[i].setValue(values);
+        }
+        if (size + 1 > threshold) {
+            resize(table.length * 2);
+        }
+        Node node = new Node(key, hash(key));
+        node.setValues(toInternal(values));
+        attach(node);
+        insert(node);
+        size++;
+        modCount++;
+        return null;
+    }
+    @Override
+    public List<String> remove(Object key) {
+        int i = indexOf(key);
+        if (i == -1) {
+            return null;
+        }
+        Node node = table[i];
+        delete(i);
+        return node.getValue();
+    }
+    @Override
+    public void clear() {
+        if (size > 0) {
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != null) {
+                    table[i].owner = null;
+                    table[i] = null;
+                }
+            }
+            size = 0;
+            hash = 0;
+            modCount++;
+        }
+    }
+    /**
+     * Gets the hash code of this map, as defined by {@link Map#hashCode()}.
+     * It is kept up to date as entries change, so it is not
+     * computed on every call.
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    //--- Typed value cache ----------------------------------------------------
+
+    /**
+     * Gets a previously cached typed value for the given key.
+     * @param key the entry key
+     * @param type the value type
+     * @param <T> value type
+     * @return cached value or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getCachedValue(String key, Class<T> type) {
+        int i = indexOf(key);
+        if (i == -1 || table[i].typedType != type) {
+            return null;
+        }
+        return (T) table[i].typedValue;
+    }
+    /**
+     * Caches a typed value for the given key, if the entry exists
+     * and the type is immutable.
+     * @param key the entry key
+     * @param type the value type
+     * @param value the value
+     */
+    void cacheValue(String key, Class<?> type, Object value) {
+        if (value == null
+                || (!CACHEABLE_TYPES.contains(type) && !type.isEnum()
+                        && !type.getName().startsWith("java.time."))) {
+            return;
+        }
+        int i = indexOf(key);
+        if (i != -1) {
+            table[i].typedType = type;
+            table[i].typedValue = value;
+        }
+    }
+
+    //--- Table ----------------------------------------------------------------
+
+    private void init(int capacity) {
+        table = new Node[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(Object key) {
+        int h = hash(key);
+        int mask = table.length - 1;
+        int i = h & mask;
+        Node node;
+        while ((node = table[i]) != null) {
+            if (node.hash == h && Objects.equals(node.key, key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(Node node) {
+        int mask = table.length - 1;
+        int i = node.hash & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = node;
+    }
+
+    private void resize(int capacity) {
+        Node[] old = table;
+        init(capacity);
+        for (Node node : old) {
+            if (node != null) {
+                insert(node);
+            }
+        }
+    }
+
+    // Shifts back following entries of the same probe sequence so
+    // lookups do not stop early at the freed slot (no tombstones).
+    private void delete(int index) {
+        hash -= table[index].entryHash;
+        table[index].owner = null;
+        int mask = table.length - 1;
+        int free = index;
+        table[free] = null;
+        int i = free;
+        Node node;
+        while ((node = table[i = (i + 1) & mask]) != null) {
+            int home = node.hash & mask;
+            boolean stays = free <= i
+                    ? free < home && home <= i
+                    : free < home || home <= i;
+            if (!stays) {
+                table[free] = node;
+                table[i] = null;
+                free = i;
+            }
+        }
+        size--;
+        modCount++;
+    }
+
+    private void attach(Node node) {
+        node.owner = this;
+        hash += node.entryHash;
+    }
+
+    // null, single String, or String array
+    private static Object toInternal(Collection<String> values) {
+        if (values == null) {
+            return null;
+        }
+        if (values.size() == 1) {
+            String value = values.iterator().next();
+            if (value != null) {
+                return value;
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (Node node : table) {
+            if (node != null) {
+                out.writeObject(node.key);
+                out.writeObject(node.values);
+            }
+        }
+    }
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        init(capacityFor(count));
+        for (int i = 0; i < count; i++) {
+            String key = (String) in.readObject();
+            Node node = new Node(key, hash(key));
+            node.setValues(in.readObject());
+            attach(node);
+            insert(node);
+        }
+        size = count;
+    }
+
+    //--- Inner classes --------------------------------------------------------
+
+    private static final class Node implements Entry<String, List<String>> {
+        private final String key;
+        private final int hash;
+        private Object values;
+        private Class<?> typedType;
+        private Object typedValue;
+        private int entryHash;
+        // map holding this node, null once removed
+        private CompactPropertiesMap owner;
+        private Node(String key, int hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+        @Override
+        public String getKey() {
+            return key;
+        }
+        @Override
+        public List<String> getValue() {
+            return values == null ? null : new ValueList(this);
+        }
+        @Override
+        public List<String> setValue(List<String> value) {
+            List<String> old = detachedValue();
+            setValues(toInternal(value));
+            return old;
+        }
+        private void setValues(Object values) {
+            this.values = values;
+            this.typedType = null;
+            this.typedValue = null;
+            int newHash = Objects.hashCode(key) ^ valuesHash(values);
+            if (owner != null) {
+                owner.hash += newHash - entryHash;
+            }
+            entryHash = newHash;
+        }
+        // same as List#hashCode()
+        private static int valuesHash(Object values) {
+            if (values == null) {
+                return 0;
+            }
+            if (values instanceof String) {
+                return 31 + values.hashCode();
+            }
+            return Arrays.hashCode((String[]) values);
+        }
+        private List<String> detachedValue() {
+            if (values == null) {
+                return null;
+            }
+            Node old = new Node(key, hash);
+            old.values = values;
+            return new ValueList(old);
+        }
+        private int count() {
+            if (values instanceof String) {
+                return 1;
+            }
+            return ((String[]) values).length;
+        }
+        private String valueAt(int index) {
+            if (values instanceof String) {
+                if (index != 0) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return (String) values;
+            }
+            return ((String[]) values)[index];
+        }
+        private String[] toArray() {
+            if (values instanceof String) {
+                return new String[] { (String) values };
+            }
+            return ((String[]) values).clone();
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey())
+                    && Objects.equals(getValue(), e.getValue());
+        }
+        @Override
+        public int hashCode() {
+            return entryHash;
+        }
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    // Write-through view of a node values.
+    private static final class ValueList
+            extends AbstractList<String> implements RandomAccess {
+        private final Node node;
+        private ValueList(Node node) {
+            this.node = node;
+        }
+        @Override
+        public String get(int index) {
+            return node.valueAt(index);
+        }
+        @Override
+        public int size() {
+            return node.values == null ? 0 : node.count();
+        }
+        @Override
+        public String set(int index, String element) {
+            String[] array = node.toArray();
+            String old = array[index];
+            array[index] = element;
+            node.setValues(toInternal(Arrays.asList(array)));
+            return old;
+        }
+        @Override
+        public void add(int index, String element) {
+            String[] array = node.values == null
+                    ? ArrayUtils.EMPTY_STRING_ARRAY : node.toArray();
+            node.setValues(toInternal(
+                    Arrays.asList(ArrayUtils.insert(index, array, element))));
+            modCount++;
+        }
+        @Override
+        public boolean addAll(Collection<? extends String> c) {
+            if (c.isEmpty()) {
+                return false;
+            }
+            String[] array = node.values == null
+                    ? ArrayUtils.EMPTY_STRING_ARRAY : node.toArray();
+            node.setValues(toInternal(Arrays.asList(ArrayUtils.addAll(
+                    array, c.toArray(new String[c.size()])))));
+            modCount++;
+            return true;
+        }
+        @Override
+        public String remove(int index) {
+            String[] array = node.toArray();
+            String old = array[index];
+            node.setValues(toInternal(
+                    Arrays.asList(ArrayUtils.remove(array, index))));
+            modCount++;
+            return old;
+        }
+        @Override
+        public void clear() {
+            node.setValues(ArrayUtils.EMPTY_STRING_ARRAY);
+            modCount++;
+        }
+    }
+
+    private final class EntrySet
+            extends AbstractSet<Entry<String, List<String>>> {
+        @Override
+        public int size() {
+            return size;
+        }
+        @Override
+        public void clear() {
+            CompactPropertiesMap.this.clear();
+        }
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            int i = indexOf(e.getKey());
+            return i != -1 && table[i].equals(e);
+        }
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            delete(indexOf(((Entry<?, ?>) o).getKey()));
+            return true;
+        }
+        @Override
+        public Iterator<Entry<String, List<String>>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    private final class EntryIterator
+            implements Iterator<Entry<String, List<String>>> {
+        // Table being traversed. Replaced by a copy on first removal,
+        // since deleting may move entries across the traversal position.
+        private Node[] tab = table;
+        private int index;
+        private Node last;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            while (index < tab.length && tab[index] == null) {
+                index++;
+            }
+            return index < tab.length;
+        }
+        @Override
+        public Entry<String, List<String>> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = tab[index++];
+            return last;
+        }
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (tab == table) {
+                tab = table.clone();
+            }
+            delete(indexOf(last.key));
+            last = null;
+            expectedModCount = modCount;
+        }
+    }
+}
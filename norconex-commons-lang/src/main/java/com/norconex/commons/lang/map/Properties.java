@@ -14,6 +14,7 @@
  */
 package com.norconex.commons.lang.map;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,7 +37,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -45,15 +45,8 @@ import java.util.Set;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.set.ListOrderedSet;
-import org.apache.commons.io.input.ReaderInputStream;
-import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.commons.text.StringEscapeUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,6 +87,10 @@ import com.norconex.commons.lang.text.TextMatcher;
  *
  * <p>Upon encountering a problem in parsing a value to
  * its desired type, a {@link PropertiesException} is thrown.</p>
+ *
+ * <p>When holding many entries, consider decorating a
+ * {@link CompactPropertiesMap}, which uses less memory and caches
+ * values converted by typed getters (since 2.0.0).</p>
  * @author Pascal Essiembre
  */
 public class Properties extends ObservableMap<String, List<String>>
@@ -116,6 +113,18 @@ public class Properties extends ObservableMap<String, List<String>>
     //TODO still support this?
     private final boolean caseInsensitiveKeys;
 
+    // When case insensitive: case-folded keys mapped to their actual key.
+    // Built on first use (e.g., after deserialization) and kept in sync by
+    // put/remove. Rebuilt if it points to a key no longer present
+    // (e.g., removed through keySet() or the decorated map).
+    private transient Map<String, String> caseIndex;
+    // Whether the decorated map holds keys differing only by case
+    // when the index was built.
+    private transient boolean caseIndexVariants;
+
+    // Not null when decorating a map able to cache typed values.
+    private final CompactPropertiesMap compactMap;
+
     /**
      * Create a new instance with case-sensitive keys.
      * Internally wraps a {@link HashMap} to store keys and values.
@@ -161,6 +170,8 @@ public class Properties extends ObservableMap<String, List<String>>
             Map<String, List<String>> map, boolean caseInsensitiveKeys) {
         super(map);
         this.caseInsensitiveKeys = caseInsensitiveKeys;
+        this.compactMap = map instanceof CompactPropertiesMap
+                ? (CompactPropertiesMap) map : null;
     }
 
     /**
@@ -376,28 +387,28 @@ public class Properties extends ObservableMap<String, List<String>>
     }
 
 
+    // output is Writer or OutputStream
     private synchronized void storeToJavaUtilProperties(
             Object output, String delimiter, boolean isXML) throws IOException {
-        java.util.Properties p = new java.util.Properties();
         String sep = StringUtils.defaultIfEmpty(
                 delimiter, DEFAULT_JAVA_PROPERTIES_DELIMITER);
-        for (Entry<String, List<String>> entry : entrySet()) {
-            p.setProperty(
-                    entry.getKey(),
-                    StringUtils.join(entry.getValue(), sep));
-        }
         if (output instanceof Writer) {
             if (isXML) {
-                p.storeToXML(new WriterOutputStream((Writer) output,
-                        StandardCharsets.UTF_8), "");
+                new PropertiesXMLWriter((Writer) output).write(this, sep);
             } else {
-                p.store((Writer) output, "");
+                new PropertiesFileWriter(
+                        (Writer) output, false).write(this, sep);
             }
         } else {
             if (isXML) {
-                p.storeToXML((OutputStream) output, "");
+                new PropertiesXMLWriter(new BufferedWriter(
+                        new OutputStreamWriter((OutputStream) output,
+                                StandardCharsets.UTF_8))).write(this, sep);
             } else {
-                p.store((OutputStream) output, "");
+                // same encoding as java.util.Properties
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        (OutputStream) output, StandardCharsets.ISO_8859_1));
+                new PropertiesFileWriter(writer, true).write(this, sep);
             }
         }
     }
@@ -421,33 +432,34 @@ public class Properties extends ObservableMap<String, List<String>>
      * @since 1.14.0
      */
     public void storeToJSON(Writer writer) throws IOException {
-        writer.write('{');
-        boolean keyFirst = true;
-        for (Entry<String, List<String>> entry : entrySet()) {
-            if (!keyFirst) {
-                writer.write(',');
-            }
-            writer.write('"');
-            writer.write(StringEscapeUtils.escapeJson(entry.getKey()));
-            writer.write("\":[");
-            boolean valueFirst = true;
-            for (String value : entry.getValue()) {
-                if (value == null) {
-                    continue;
-                }
-                if (!valueFirst) {
-                    writer.write(',');
-                }
-                writer.write('"');
-                writer.write(StringEscapeUtils.escapeJson(value));
-                writer.write('"');
-                valueFirst = false;
-            }
-            writer.write("]");
-            keyFirst = false;
-        }
-        writer.write('}');
-        writer.flush();
+        new PropertiesJSONWriter(writer).write(this);
+    }
+
+    /**
+     * Writes this {@link Map} to the output stream in a compact binary
+     * format suitable for using the {@link #loadFromBinary(InputStream)}
+     * method. The stream is not closed, so more than one
+     * instance can be written to the same stream.
+     * @param os the output stream on which to store the properties.
+     * @throws IOException i/o problem
+     * @since 2.0.0
+     */
+    public void storeToBinary(OutputStream os) throws IOException {
+        storeToBinary(os, false);
+    }
+    /**
+     * Writes this {@link Map} to the output stream in a compact binary
+     * format suitable for using the {@link #loadFromBinary(InputStream)}
+     * method, optionally compressed. The stream is not closed, so more
+     * than one instance can be written to the same stream.
+     * @param os the output stream on which to store the properties.
+     * @param compress <code>true</code> to compress the written bytes
+     * @throws IOException i/o problem
+     * @since 2.0.0
+     */
+    public synchronized void storeToBinary(OutputStream os, boolean compress)
+            throws IOException {
+        new PropertiesBinaryWriter().write(this, os, compress);
     }
 
     /**
@@ -682,31 +694,22 @@ public class Properties extends ObservableMap<String, List<String>>
     // input is Reader or InputStream
     private synchronized void loadFromJavaUtilProperties(
             Object input, String delimiter, boolean isXML) throws IOException {
-
-        java.util.Properties p = new java.util.Properties();
         String sep = StringUtils.defaultIfEmpty(
                 delimiter, DEFAULT_JAVA_PROPERTIES_DELIMITER);
-
         if (input instanceof Reader) {
             if (isXML) {
-                p.loadFromXML(new ReaderInputStream(
-                        (Reader) input, StandardCharsets.UTF_8));
+                new PropertiesXMLReader().read((Reader) input, this, sep);
             } else {
-                p.load((Reader) input);
+                new PropertiesFileReader((Reader) input).read(this, sep);
             }
         } else {
             if (isXML) {
-                p.loadFromXML((InputStream) input);
+                new PropertiesXMLReader().read((InputStream) input, this, sep);
             } else {
-                p.load((InputStream) input);
-            }
-        }
-
-        for (Entry<Object, Object> entry : p.entrySet()) {
-            if (entry.getKey() != null) {
-                add(entry.getKey().toString(),
-                        StringUtils.splitByWholeSeparator(
-                                Objects.toString(entry.getValue(), null), sep));
+                // same encoding as java.util.Properties
+                Reader reader = new InputStreamReader(
+                        (InputStream) input, StandardCharsets.ISO_8859_1);
+                new PropertiesFileReader(reader).read(this, sep);
             }
         }
     }
@@ -735,16 +738,25 @@ public class Properties extends ObservableMap<String, List<String>>
         if (reader == null) {
             return;
         }
-        JSONObject json = new JSONObject(new JSONTokener(reader));
-        Iterator<String> it = json.keys();
-        while (it.hasNext()) {
-            String key = it.next();
-            JSONArray array = json.getJSONArray(key);
-            for (int i = 0; i < array.length(); i++) {
-                String val = array.getString(i);
-                add(key, val);
-            }
+        new PropertiesJSONReader(reader).read(this);
+    }
+
+    /**
+     * Loads the properties written by {@link #storeToBinary(OutputStream)}
+     * into this instance. Only the properties written by one
+     * store invocation are read, leaving the stream positioned after them.
+     * @param in the input stream from which to read the properties.
+     * @return <code>false</code> if the stream had no more properties
+     *         to read
+     * @throws IOException i/o problem
+     * @since 2.0.0
+     */
+    public synchronized boolean loadFromBinary(InputStream in)
+            throws IOException {
+        if (in == null) {
+            return false;
         }
+        return new PropertiesBinaryReader().read(in, this);
     }
 
     /**
@@ -789,10 +801,22 @@ public class Properties extends ObservableMap<String, List<String>>
      */
     public final <T> T get(String key, Class<T> type, T defaultValue) {
         try {
+            if (compactMap != null) {
+                T cached = compactMap.getCachedValue(
+                        caseResolvedKey(key), type);
+                if (cached != null) {
+                    return cached;
+                }
+            }
             String value = getString(key);
             if (StringUtils.isEmpty(value)) {
                 return defaultValue;
             }
+            if (compactMap != null) {
+                T converted = Converter.convert(value, type);
+                compactMap.cacheValue(caseResolvedKey(key), type, converted);
+                return converted != null ? converted : defaultValue;
+            }
             return Converter.convert(value, type, defaultValue);
         } catch (ConverterException e) {
             throw new PropertiesException("Could not convert '"
@@ -1529,7 +1553,17 @@ public class Properties extends ObservableMap<String, List<String>>
 
     @Override
     public final List<String> remove(Object key) {
-        return super.remove(caseResolvedKey(key));
+        String resolvedKey = caseResolvedKey(key);
+        List<String> values = super.remove(resolvedKey);
+        if (caseIndex != null && resolvedKey != null) {
+            if (caseIndexVariants) {
+                // another case variant may now be the first key
+                caseIndex = null;
+            } else {
+                caseIndex.remove(foldCase(resolvedKey), resolvedKey);
+            }
+        }
+        return values;
     }
 
     /*
@@ -1550,7 +1584,12 @@ public class Properties extends ObservableMap<String, List<String>>
                 nullSafeValues.add(value);
             }
         }
-        return super.put(caseResolvedKey(key), nullSafeValues);
+        String resolvedKey = caseResolvedKey(key);
+        List<String> oldValues = super.put(resolvedKey, nullSafeValues);
+        if (caseIndex != null && resolvedKey != null) {
+            caseIndex.putIfAbsent(foldCase(resolvedKey), resolvedKey);
+        }
+        return oldValues;
     }
 
     /*
@@ -1577,6 +1616,12 @@ public class Properties extends ObservableMap<String, List<String>>
         }
     }
 
+    @Override
+    public void clear() {
+        super.clear();
+        caseIndex = null;
+    }
+
     /**
      * Returns all property values merged into a single list. Duplicate values
      * are kept.
@@ -1596,16 +1641,50 @@ public class Properties extends ObservableMap<String, List<String>>
     // return the one passed as argument
     private String caseResolvedKey(Object key) {
         String resolvedKey = Objects.toString(key, null);
-        if (!isCaseInsensitiveKeys()) {
+        if (!isCaseInsensitiveKeys() || resolvedKey == null) {
             return resolvedKey;
         }
-        for (String existingKey : super.keySet()) {
-            if (StringUtils.equalsIgnoreCase(existingKey, resolvedKey)) {
-                resolvedKey = existingKey;
-                break;
+        String foldedKey = foldCase(resolvedKey);
+        String existingKey = caseIndex().get(foldedKey);
+        if (existingKey != null && !super.containsKey(existingKey)) {
+            // out of sync
+            caseIndex = null;
+            existingKey = caseIndex().get(foldedKey);
+        }
+        return existingKey != null ? existingKey : resolvedKey;
+    }
+
+    private Map<String, String> caseIndex() {
+        if (caseIndex == null) {
+            Map<String, String> index = new HashMap<>();
+            boolean variants = false;
+            for (String existingKey : super.keySet()) {
+                if (existingKey != null && index.putIfAbsent(
+                        foldCase(existingKey), existingKey) != null) {
+                    variants = true;
+                }
             }
+            caseIndex = index;
+            caseIndexVariants = variants;
         }
-        return resolvedKey;
+        return caseIndex;
+    }
+
+    // Two keys are equal ignoring case if they fold to the same string
+    // (same rule as String#equalsIgnoreCase).
+    private static String foldCase(String key) {
+        char[] chars = null;
+        for (int i = 0; i < key.length(); i++) {
+            char ch = key.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(ch));
+            if (folded != ch) {
+                if (chars == null) {
+                    chars = key.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return chars == null ? key : new String(chars);
     }
 
     // TODO consider calling this from toStringArray(array) and have
@@ -1781,8 +1860,23 @@ public class Properties extends ObservableMap<String, List<String>>
         }
         return EqualsUtil.equalsMap(this, (Map<?, ?>) other);
     }
+    /**
+     * Gets the hash code of this map, as defined by {@link Map#hashCode()}
+     * (the sum of its entry hash codes), consistent with
+     * {@link #equals(Object)}. When decorating a
+     * {@link CompactPropertiesMap}, the hash code is maintained as entries
+     * change instead of being computed on every call.
+     * @return hash code
+     */
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this);
+        if (compactMap != null) {
+            return compactMap.hashCode();
+        }
+        int hash = 0;
+        for (Entry<String, List<String>> entry : entrySet()) {
+            hash += entry.hashCode();
+        }
+        return hash;
     }
 }
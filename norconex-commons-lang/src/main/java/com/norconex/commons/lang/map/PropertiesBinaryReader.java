@@ -0,0 +1,236 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.FLAG_COMPRESSED;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.MAGIC;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.MAX_DICTIONARY_LENGTH;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.TAG_LITERAL_OFFSET;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.TAG_NULL;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.TAG_REFERENCE;
+import static com.norconex.commons.lang.map.PropertiesBinaryWriter.VERSION;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InvalidPropertiesFormatException;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>
+ * Reads properties written by {@link PropertiesBinaryWriter}.
+ * Exactly one record is read from the stream, leaving it positioned
+ * at the next record, if any.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesBinaryWriter
+ */
+final class PropertiesBinaryReader {
+
+    // Largest record length accepted (arrays cannot be much larger).
+    private static final int MAX_RECORD_LENGTH = Integer.MAX_VALUE - 16;
+    // Deflate cannot expand data more than about 1032 times.
+    private static final int MAX_INFLATE_RATIO = 1032;
+    // Bytes are read in growing chunks so a corrupted length does not
+    // allocate more memory than the stream holds.
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+    private byte[] buf;
+    private int pos;
+    private int limit;
+
+    /**
+     * Reads a record, adding its entries to the given properties.
+     * @param in source stream
+     * @param props the properties to add to
+     * @return <code>false</code> if the stream had no more records
+     * @throws IOException could not read record
+     */
+    boolean read(InputStream in, Properties props) throws IOException {
+        buf = new byte[5];
+        int read = IOUtils.read(in, buf, 0, 5);
+        if (read == 0) {
+            return false;
+        }
+        if (read < 5 || buf[0] != MAGIC[0] || buf[1] != MAGIC[1]
+                || buf[2] != MAGIC[2]) {
+            throw new InvalidPropertiesFormatException(
+                    "Not a binary properties record.");
+        }
+        if (buf[3] != VERSION) {
+            throw new InvalidPropertiesFormatException(
+                    "Unsupported binary properties version: " + buf[3]);
+        }
+        boolean compressed = (buf[4] & FLAG_COMPRESSED) != 0;
+        int length = readVarint(in);
+        if (length > MAX_RECORD_LENGTH) {
+            throw corrupted();
+        }
+        if (compressed) {
+            byte[] deflated = readFully(in, readVarint(in));
+            if (length > (long) deflated.length * MAX_INFLATE_RATIO) {
+                throw corrupted();
+            }
+            // one extra byte to detect content longer than expected
+            buf = new byte[length + 1];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(deflated);
+                int inflated = 0;
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(
+                            buf, inflated, buf.length - inflated);
+                    if (n == 0 && (inflater.needsInput()
+                            || inflater.needsDictionary())) {
+                        throw corrupted();
+                    }
+                    inflated += n;
+                    if (inflated > length) {
+                        throw corrupted();
+                    }
+                }
+                if (inflated != length) {
+                    throw corrupted();
+                }
+            } catch (DataFormatException e) {
+                throw new InvalidPropertiesFormatException(e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            buf = readFully(in, length);
+        }
+        pos = 0;
+        limit = length;
+        dictionary.clear();
+        int count = readVarint();
+        for (int i = 0; i < count; i++) {
+            String key = readString();
+            int valueCount = readVarint() - 1;
+            values.clear();
+            for (int j = 0; j < valueCount; j++) {
+                values.add(readString());
+            }
+            if (key == null) {
+                continue;
+            }
+            if (!values.isEmpty()) {
+                props.addList(key, values);
+            } else if (props.get(key) == null) {
+                // keys without values (or a null list) are kept
+                props.put(key, new ArrayList<>());
+            }
+        }
+        if (pos != limit) {
+            throw corrupted();
+        }
+        return true;
+    }
+
+    private String readString() throws IOException {
+        int tag = readVarint();
+        if (tag == TAG_NULL) {
+            return null;
+        }
+        if (tag == TAG_REFERENCE) {
+            int index = readVarint();
+            if (index < 0 || index >= dictionary.size()) {
+                throw corrupted();
+            }
+            return dictionary.get(index);
+        }
+        int length = tag - TAG_LITERAL_OFFSET;
+        if (length < 0 || length > limit - pos) {
+            throw corrupted();
+        }
+        String str = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        if (str.length() <= MAX_DICTIONARY_LENGTH) {
+            dictionary.add(str);
+        }
+        return str;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos == limit) {
+                throw corrupted();
+            }
+            byte b = buf[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw corrupted();
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException(
+                        "Unexpected end of binary properties record.");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw corrupted();
+    }
+
+    private static byte[] readFully(InputStream in, int length)
+            throws IOException {
+        if (length > MAX_RECORD_LENGTH) {
+            throw corrupted();
+        }
+        byte[] bytes = new byte[Math.min(length, READ_CHUNK_SIZE)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes,
+                        (int) Math.min(length, 2L * bytes.length));
+            }
+            int num = in.read(bytes, read, bytes.length - read);
+            if (num == -1) {
+                // shorter than the length read
+                throw corrupted();
+            }
+            read += num;
+        }
+        return bytes;
+    }
+
+    private static InvalidPropertiesFormatException corrupted() {
+        return new InvalidPropertiesFormatException(
+                "Corrupted binary properties record.");
+    }
+}
@@ -0,0 +1,221 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * Writes properties in a compact binary format, read back by
+ * {@link PropertiesBinaryReader}. Each call writes one self-contained
+ * record, so many records can be written to the same stream:
+ * </p>
+ * <pre>
+ * record  := magic("NXP") version(1) flags(1) block
+ * block   := varint(length) bytes                  (flags bit 0 unset)
+ *          | varint(length) varint(deflatedLength)
+ *            deflatedBytes                         (flags bit 0 set)
+ * payload := varint(entryCount) entry*
+ * entry   := string(key) varint(valueCount + 1 or 0 if null) string*
+ * string  := varint(0)                             (null)
+ *          | varint(1) varint(dictionaryIndex)     (repeated string)
+ *          | varint(utf8Length + 2) utf8Bytes
+ * </pre>
+ * <p>
+ * Short strings (keys or values) are added to a dictionary as they are
+ * written, so that repeated ones are written as a reference instead.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesBinaryReader
+ */
+final class PropertiesBinaryWriter {
+
+    static final byte[] MAGIC = { 'N', 'X', 'P' };
+    static final byte VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+    // strings longer than this are unlikely to repeat
+    static final int MAX_DICTIONARY_LENGTH = 64;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_REFERENCE = 1;
+    static final int TAG_LITERAL_OFFSET = 2;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private byte[] buf = new byte[256];
+    private int count;
+
+    /**
+     * Writes a record for the given map. The stream is flushed
+     * but not closed.
+     * @param map the map to write
+     * @param out target stream
+     * @param compress whether to compress the record
+     * @throws IOException could not write record
+     */
+    void write(Map<String, List<String>> map, OutputStream out,
+            boolean compress) throws IOException {
+        dictionary.clear();
+        count = 0;
+        writeVarint(map.size());
+        for (Entry<String, List<String>> entry : map.entrySet()) {
+            writeString(entry.getKey());
+            List<String> values = entry.getValue();
+            if (values == null) {
+                writeVarint(0);
+                continue;
+            }
+            writeVarint(values.size() + 1);
+            for (int i = 0; i < values.size(); i++) {
+                writeString(values.get(i));
+            }
+        }
+        byte[] payload = buf;
+        int payloadLength = count;
+
+        // header encoded last since it holds the payload length
+        count = 0;
+        buf = new byte[16];
+        buf[count++] = MAGIC[0];
+        buf[count++] = MAGIC[1];
+        buf[count++] = MAGIC[2];
+        buf[count++] = VERSION;
+        buf[count++] = (byte) (compress ? FLAG_COMPRESSED : 0);
+        writeVarint(payloadLength);
+        if (compress) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(payload, 0, payloadLength);
+                deflater.finish();
+                byte[] deflated = new byte[Math.max(64, payloadLength / 2)];
+                int deflatedLength = 0;
+                while (!deflater.finished()) {
+                    if (deflatedLength == deflated.length) {
+                        deflated = Arrays.copyOf(
+                                deflated, deflated.length * 2);
+                    }
+                    deflatedLength += deflater.deflate(deflated,
+                            deflatedLength, deflated.length - deflatedLength);
+                }
+                payload = deflated;
+                payloadLength = deflatedLength;
+            } finally {
+                deflater.end();
+            }
+            writeVarint(payloadLength);
+        }
+        out.write(buf, 0, count);
+        out.write(payload, 0, payloadLength);
+        out.flush();
+    }
+
+    private void writeString(String str) {
+        if (str == null) {
+            writeVarint(TAG_NULL);
+            return;
+        }
+        if (str.length() <= MAX_DICTIONARY_LENGTH) {
+            Integer index = dictionary.putIfAbsent(str, dictionary.size());
+            if (index != null) {
+                writeVarint(TAG_REFERENCE);
+                writeVarint(index);
+                return;
+            }
+        }
+        int utf8Length = utf8Length(str);
+        writeVarint(utf8Length + TAG_LITERAL_OFFSET);
+        ensureCapacity(utf8Length);
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                int cp = surrogatePair(str, i);
+                if (cp == -1) {
+                    buf[count++] = '?';
+                } else {
+                    buf[count++] = (byte) (0xF0 | (cp >> 18));
+                    buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                    i++;
+                }
+            } else {
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    // Same as String#getBytes(UTF_8), where unpaired surrogates become '?'.
+    private static int utf8Length(String str) {
+        int length = str.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= 0x800 && Character.isSurrogate(c)) {
+                if (surrogatePair(str, i) != -1) {
+                    utf8Length += 2;
+                    i++;
+                }
+            } else if (c >= 0x800) {
+                utf8Length += 2;
+            } else if (c >= 0x80) {
+                utf8Length++;
+            }
+        }
+        return utf8Length;
+    }
+
+    // code point of a valid surrogate pair at index, or -1
+    private static int surrogatePair(String str, int index) {
+        char high = str.charAt(index);
+        if (Character.isHighSurrogate(high) && index + 1 < str.length()) {
+            char low = str.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return -1;
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            buf[count++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[count++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+    }
+}
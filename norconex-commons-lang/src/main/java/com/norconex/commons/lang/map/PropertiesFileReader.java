@@ -0,0 +1,243 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Streaming reader of the format used by
+ * {@link java.util.Properties#load(Reader)}, adding entries directly to
+ * a {@link Properties} instance. Values holding multiple values
+ * joined by a delimiter are split back, ignoring empty ones.
+ * </p>
+ * <p>
+ * Unlike {@link java.util.Properties}, a key present more than once
+ * gets all its values rather than only the last one.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesFileWriter
+ */
+final class PropertiesFileReader {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int bufferPos;
+    private int bufferLength;
+    // logical line, with continuations applied but not escapes
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder token = new StringBuilder();
+    private final List<String> values = new ArrayList<>();
+
+    PropertiesFileReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads all entries, adding them to the given properties.
+     * @param props the properties to add to
+     * @param delimiter multi-value delimiter
+     * @throws IOException could not read entries
+     * @throws IllegalArgumentException malformed unicode escape
+     */
+    void read(Properties props, String delimiter) throws IOException {
+        while (readLine()) {
+            int limit = line.length();
+            int keyLength = 0;
+            int valueStart = limit;
+            boolean hasSeparator = false;
+            boolean precedingBackslash = false;
+            while (keyLength < limit) {
+                char c = line.charAt(keyLength);
+                if ((c == '=' || c == ':') && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    hasSeparator = true;
+                    break;
+                }
+                if (isBlank(c) && !precedingBackslash) {
+                    valueStart = keyLength + 1;
+                    break;
+                }
+                precedingBackslash = c == '\\' && !precedingBackslash;
+                keyLength++;
+            }
+            while (valueStart < limit) {
+                char c = line.charAt(valueStart);
+                if (!isBlank(c)) {
+                    if (hasSeparator || (c != '=' && c != ':')) {
+                        break;
+                    }
+                    hasSeparator = true;
+                }
+                valueStart++;
+            }
+            String key = unescape(0, keyLength);
+            split(unescape(valueStart, limit), delimiter, values);
+            props.addList(key, values);
+        }
+    }
+
+    /**
+     * Splits a string on the given delimiter, ignoring empty values.
+     * @param str the string to split
+     * @param delimiter the delimiter
+     * @param target list receiving the values, cleared first
+     */
+    static void split(String str, String delimiter, List<String> target) {
+        target.clear();
+        int start = 0;
+        int end;
+        while ((end = str.indexOf(delimiter, start)) != -1) {
+            if (end > start) {
+                target.add(str.substring(start, end));
+            }
+            start = end + delimiter.length();
+        }
+        if (start < str.length()) {
+            target.add(str.substring(start));
+        }
+    }
+
+    // Same rules as java.util.Properties: comments and blank lines are
+    // skipped, leading blanks are ignored, and lines ending with an odd
+    // number of backslashes continue on the next line.
+    private boolean readLine() throws IOException {
+        line.setLength(0);
+        boolean skipBlanks = true;
+        boolean isComment = false;
+        boolean isNewLine = true;
+        boolean appendedLineBegin = false;
+        boolean precedingBackslash = false;
+        boolean skipLF = false;
+        while (true) {
+            int c = next();
+            if (c == EOF) {
+                if (isComment || line.length() == 0) {
+                    return false;
+                }
+                if (precedingBackslash) {
+                    line.setLength(line.length() - 1);
+                }
+                return true;
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (skipBlanks) {
+                if (isBlank(c)
+                        || (!appendedLineBegin && (c == '\r' || c == '\n'))) {
+                    continue;
+                }
+                skipBlanks = false;
+                appendedLineBegin = false;
+            }
+            if (isNewLine) {
+                isNewLine = false;
+                if (c == '#' || c == '!') {
+                    isComment = true;
+                    continue;
+                }
+            }
+            if (c != '\n' && c != '\r') {
+                line.append((char) c);
+                precedingBackslash = c == '\\' && !precedingBackslash;
+            } else if (isComment || line.length() == 0) {
+                isComment = false;
+                isNewLine = true;
+                skipBlanks = true;
+                line.setLength(0);
+            } else if (precedingBackslash) {
+                line.setLength(line.length() - 1);
+                skipBlanks = true;
+                appendedLineBegin = true;
+                precedingBackslash = false;
+                skipLF = c == '\r';
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private String unescape(int start, int end) {
+        token.setLength(0);
+        int i = start;
+        while (i < end) {
+            char c = line.charAt(i++);
+            if (c != '\\') {
+                token.append(c);
+                continue;
+            }
+            if (i == end) {
+                break;
+            }
+            c = line.charAt(i++);
+            if (c == 'u') {
+                if (i + 4 > end) {
+                    throw new IllegalArgumentException(
+                            "Malformed \\uxxxx encoding.");
+                }
+                int value = 0;
+                for (int j = 0; j < 4; j++) {
+                    int digit = Character.digit(line.charAt(i++), 16);
+                    if (digit == -1) {
+                        throw new IllegalArgumentException(
+                                "Malformed \\uxxxx encoding.");
+                    }
+                    value = (value << 4) | digit;
+                }
+                token.append((char) value);
+            } else if (c == 't') {
+                token.append('\t');
+            } else if (c == 'r') {
+                token.append('\r');
+            } else if (c == 'n') {
+                token.append('\n');
+            } else if (c == 'f') {
+                token.append('\f');
+            } else {
+                token.append(c);
+            }
+        }
+        return token.toString();
+    }
+
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    private int next() throws IOException {
+        if (bufferPos == bufferLength) {
+            int read;
+            do {
+                read = reader.read(buffer);
+            } while (read == 0);
+            if (read == EOF) {
+                return EOF;
+            }
+            bufferPos = 0;
+            bufferLength = read;
+        }
+        return buffer[bufferPos++];
+    }
+}
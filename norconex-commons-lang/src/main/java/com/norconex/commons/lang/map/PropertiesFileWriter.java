@@ -0,0 +1,145 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>
+ * Streaming writer of the format used by
+ * {@link java.util.Properties#store(Writer, String)}, escaping keys and
+ * values directly to the target writer. Multiple values are written
+ * on the same line, separated by a delimiter.
+ * No comment or date header is written.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesFileReader
+ */
+final class PropertiesFileWriter {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Writer writer;
+    private final boolean escapeUnicode;
+    // whether nothing was written yet for the current value
+    private boolean valueStart;
+
+    /**
+     * Creates a writer.
+     * @param writer target writer
+     * @param escapeUnicode <code>true</code> to escape characters outside
+     *        of printable US-ASCII (for ISO-8859-1 output)
+     */
+    PropertiesFileWriter(Writer writer, boolean escapeUnicode) {
+        this.writer = writer;
+        this.escapeUnicode = escapeUnicode;
+    }
+
+    /**
+     * Writes the given map, one entry per line. The writer is flushed
+     * but not closed.
+     * @param map the map to write
+     * @param delimiter multi-value delimiter
+     * @throws IOException could not write entries
+     */
+    void write(Map<String, List<String>> map, String delimiter)
+            throws IOException {
+        String lineSeparator = System.lineSeparator();
+        for (Entry<String, List<String>> entry : map.entrySet()) {
+            writeEscaped(entry.getKey(), true);
+            writer.write('=');
+            valueStart = true;
+            List<String> values = entry.getValue();
+            if (values != null) {
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0) {
+                        writeEscaped(delimiter, false);
+                    }
+                    String value = values.get(i);
+                    if (value != null) {
+                        writeEscaped(value, false);
+                    }
+                }
+            }
+            writer.write(lineSeparator);
+        }
+        writer.flush();
+    }
+
+    private void writeEscaped(String str, boolean isKey) throws IOException {
+        // write runs of characters not needing escaping in one call
+        int start = 0;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            String escape = escape(c, isKey || (valueStart && i == 0));
+            if (escape == null && !(escapeUnicode && (c < 0x20 || c > 0x7e))) {
+                continue;
+            }
+            if (i > start) {
+                writer.write(str, start, i - start);
+            }
+            if (escape != null) {
+                writer.write(escape);
+            } else {
+                writer.write('\\');
+                writer.write('u');
+                writer.write(HEX[(c >> 12) & 0xF]);
+                writer.write(HEX[(c >> 8) & 0xF]);
+                writer.write(HEX[(c >> 4) & 0xF]);
+                writer.write(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (length > start) {
+            writer.write(str, start, length - start);
+        }
+        if (length > 0) {
+            valueStart = false;
+        }
+    }
+
+    private static String escape(char c, boolean escapeSpace) {
+        switch (c) {
+        case '\\':
+            return "\\\\";
+        case ' ':
+            return escapeSpace ? "\\ " : null;
+        case '\t':
+            return "\\t";
+        case '\n':
+            return "\\n";
+        case '\r':
+            return "\\r";
+        case '\f':
+            return "\\f";
+        case '=':
+            return "\\=";
+        case ':':
+            return "\\:";
+        case '#':
+            return "\\#";
+        case '!':
+            return "\\!";
+        default:
+            return null;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Streaming JSON reader adding properties as they are parsed, without
+ * building an intermediate document tree. Expects a JSON object
+ * such as the one written by {@link PropertiesJSONWriter}, where each
+ * value is an array of values:
+ * </p>
+ * <pre>
+ * {"key1":["value1","value2"],"key2":["value3"]}
+ * </pre>
+ * <p>
+ * For leniency, a value can also be a single value instead of an array.
+ * Numbers and booleans are read as strings and <code>null</code> values
+ * are ignored. Nested objects or arrays are not supported.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+final class PropertiesJSONReader {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int bufferPos;
+    private int bufferLength;
+    private long position;
+    // reused for every token
+    private final StringBuilder token = new StringBuilder();
+    private final List<String> values = new ArrayList<>();
+
+    PropertiesJSONReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads a JSON object, adding its entries to the given properties.
+     * Content after the closing brace is not read.
+     * @param props the properties to add to
+     * @throws IOException could not read JSON
+     * @throws PropertiesException malformed JSON
+     */
+    void read(Properties props) throws IOException {
+        expect('{');
+        int ch = nextNonBlank();
+        if (ch == '}') {
+            return;
+        }
+        while (true) {
+            if (ch != '"') {
+                throw error("Expected a quoted key");
+            }
+            String key = readString();
+            expect(':');
+            values.clear();
+            ch = nextNonBlank();
+            if (ch == '[') {
+                readArray();
+            } else {
+                readScalar(ch);
+            }
+            props.addList(key, values);
+            ch = nextNonBlank();
+            if (ch == '}') {
+                return;
+            }
+            if (ch != ',') {
+                throw error("Expected ',' or '}'");
+            }
+            ch = nextNonBlank();
+        }
+    }
+
+    private void readArray() throws IOException {
+        int ch = nextNonBlank();
+        if (ch == ']') {
+            return;
+        }
+        while (true) {
+            readScalar(ch);
+            ch = nextNonBlank();
+            if (ch == ']') {
+                return;
+            }
+            if (ch != ',') {
+                throw error("Expected ',' or ']'");
+            }
+            ch = nextNonBlank();
+        }
+    }
+
+    // Adds the value starting with the given character, unless null.
+    private void readScalar(int ch) throws IOException {
+        if (ch == '"') {
+            values.add(readString());
+            return;
+        }
+        if (ch == EOF || ch == '{' || ch == '[' || !isLiteralChar(ch)) {
+            throw error("Expected a string, number, boolean, or null value");
+        }
+        token.setLength(0);
+        token.append((char) ch);
+        while (isLiteralChar(peek())) {
+            token.append((char) next());
+        }
+        String literal = token.toString();
+        if (!"null".equals(literal)) {
+            values.add(literal);
+        }
+    }
+
+    // Opening quote already consumed.
+    private String readString() throws IOException {
+        token.setLength(0);
+        while (true) {
+            // copy runs of regular characters straight from the buffer
+            int start = bufferPos;
+            while (bufferPos < bufferLength) {
+                char c = buffer[bufferPos];
+                if (c == '"' || c == '\\' || c < 0x20) {
+                    break;
+                }
+                bufferPos++;
+            }
+            token.append(buffer, start, bufferPos - start);
+            position += bufferPos - start;
+
+            int ch = next();
+            if (ch == '"') {
+                return token.toString();
+            }
+            if (ch == '\\') {
+                token.append(readEscape());
+            } else if (ch == EOF) {
+                throw error("Unterminated string");
+            } else if (ch < 0x20) {
+                throw error("Unescaped control character in string");
+            } else {
+                // buffer was exhausted, refilled by next()
+                token.append((char) ch);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int ch = next();
+        switch (ch) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char) ch;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit == -1) {
+                    throw error("Invalid unicode escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        default:
+            throw error("Invalid escape character");
+        }
+    }
+
+    private static boolean isLiteralChar(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9')
+                || ch == '-' || ch == '+' || ch == '.' || ch == 'E';
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextNonBlank() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private int nextNonBlank() throws IOException {
+        int ch;
+        do {
+            ch = next();
+        } while (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t');
+        return ch;
+    }
+
+    private int peek() throws IOException {
+        if (bufferPos == bufferLength && !fill()) {
+            return EOF;
+        }
+        return buffer[bufferPos];
+    }
+
+    private int next() throws IOException {
+        if (bufferPos == bufferLength && !fill()) {
+            return EOF;
+        }
+        position++;
+        return buffer[bufferPos++];
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer);
+        } while (read == 0);
+        if (read == EOF) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferLength = read;
+        return true;
+    }
+
+    private PropertiesException error(String msg) {
+        return new PropertiesException(
+                msg + " at JSON character " + position + ".");
+    }
+}
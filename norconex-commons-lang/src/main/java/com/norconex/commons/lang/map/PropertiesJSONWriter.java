@@ -0,0 +1,136 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>
+ * Streaming JSON writer escaping keys and values directly to the
+ * target writer, without creating escaped copies of them.
+ * Each key is written with an array of its values, ignoring
+ * <code>null</code> values:
+ * </p>
+ * <pre>
+ * {"key1":["value1","value2"],"key2":["value3"]}
+ * </pre>
+ * <p>
+ * Non-ASCII characters are written as is, except for line and
+ * paragraph separators, which are escaped.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+final class PropertiesJSONWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    PropertiesJSONWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the given map as a JSON object. The writer is flushed
+     * but not closed.
+     * @param map the map to write
+     * @throws IOException could not write JSON
+     */
+    void write(Map<String, List<String>> map) throws IOException {
+        writer.write('{');
+        boolean keyFirst = true;
+        for (Entry<String, List<String>> entry : map.entrySet()) {
+            if (!keyFirst) {
+                writer.write(',');
+            }
+            writeString(entry.getKey());
+            writer.write(":[");
+            boolean valueFirst = true;
+            for (String value : entry.getValue()) {
+                if (value == null) {
+                    continue;
+                }
+                if (!valueFirst) {
+                    writer.write(',');
+                }
+                writeString(value);
+                valueFirst = false;
+            }
+            writer.write(']');
+            keyFirst = false;
+        }
+        writer.write('}');
+        writer.flush();
+    }
+
+    private void writeString(String str) throws IOException {
+        writer.write('"');
+        // write runs of characters not needing escaping in one call
+        int start = 0;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\'
+                    && ch != '\u2028' && ch != '\u2029') {
+                continue;
+            }
+            if (i > start) {
+                writer.write(str, start, i - start);
+            }
+            writeEscaped(ch);
+            start = i + 1;
+        }
+        if (length > start) {
+            writer.write(str, start, length - start);
+        }
+        writer.write('"');
+    }
+
+    private void writeEscaped(char ch) throws IOException {
+        writer.write('\\');
+        switch (ch) {
+        case '"':
+        case '\\':
+            writer.write(ch);
+            break;
+        case '\b':
+            writer.write('b');
+            break;
+        case '\f':
+            writer.write('f');
+            break;
+        case '\n':
+            writer.write('n');
+            break;
+        case '\r':
+            writer.write('r');
+            break;
+        case '\t':
+            writer.write('t');
+            break;
+        default:
+            writer.write('u');
+            writer.write(HEX[(ch >> 12) & 0xF]);
+            writer.write(HEX[(ch >> 8) & 0xF]);
+            writer.write(HEX[(ch >> 4) & 0xF]);
+            writer.write(HEX[ch & 0xF]);
+        }
+    }
+}
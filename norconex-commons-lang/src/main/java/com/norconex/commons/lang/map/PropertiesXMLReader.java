@@ -0,0 +1,101 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.InvalidPropertiesFormatException;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.norconex.commons.lang.xml.XMLUtil;
+
+/**
+ * <p>
+ * Streaming reader of the XML format used by
+ * {@link java.util.Properties#loadFromXML(InputStream)}, adding
+ * <code>entry</code> elements directly to a {@link Properties} instance.
+ * Values holding multiple values joined by a delimiter are split back,
+ * ignoring empty ones. The DTD is not resolved nor validated.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesXMLWriter
+ */
+final class PropertiesXMLReader {
+
+    private static final XMLInputFactory FACTORY =
+            XMLUtil.createXMLInputFactory();
+
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Reads all entries from an XML stream, detecting its encoding,
+     * and adds them to the given properties. The stream is not closed.
+     * @param in XML stream
+     * @param props the properties to add to
+     * @param delimiter multi-value delimiter
+     * @throws IOException could not read entries
+     */
+    void read(InputStream in, Properties props, String delimiter)
+            throws IOException {
+        try {
+            read(FACTORY.createXMLStreamReader(in), props, delimiter);
+        } catch (XMLStreamException e) {
+            throw new InvalidPropertiesFormatException(e);
+        }
+    }
+    /**
+     * Reads all entries from an XML reader and adds them to the given
+     * properties. The reader is not closed.
+     * @param reader XML reader
+     * @param props the properties to add to
+     * @param delimiter multi-value delimiter
+     * @throws IOException could not read entries
+     */
+    void read(Reader reader, Properties props, String delimiter)
+            throws IOException {
+        try {
+            read(FACTORY.createXMLStreamReader(reader), props, delimiter);
+        } catch (XMLStreamException e) {
+            throw new InvalidPropertiesFormatException(e);
+        }
+    }
+
+    private void read(XMLStreamReader xml, Properties props, String delimiter)
+            throws XMLStreamException {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT
+                        && "entry".equals(xml.getLocalName())) {
+                    String key = xml.getAttributeValue(null, "key");
+                    String value = xml.getElementText();
+                    if (key != null) {
+                        PropertiesFileReader.split(value, delimiter, values);
+                        props.addList(key, values);
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>
+ * Streaming writer of the XML format used by
+ * {@link java.util.Properties#storeToXML(OutputStream, String)},
+ * escaping keys and values directly to the target writer.
+ * Multiple values are written in the same <code>entry</code> element,
+ * separated by a delimiter. The document is always declared as UTF-8.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see PropertiesXMLReader
+ */
+final class PropertiesXMLWriter {
+
+    private final Writer writer;
+
+    PropertiesXMLWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the given map as an XML document. The writer is flushed
+     * but not closed.
+     * @param map the map to write
+     * @param delimiter multi-value delimiter
+     * @throws IOException could not write entries
+     */
+    void write(Map<String, List<String>> map, String delimiter)
+            throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" "
+                + "standalone=\"no\"?>\n"
+                + "<!DOCTYPE properties SYSTEM "
+                + "\"http://java.sun.com/dtd/properties.dtd\">\n"
+                + "<properties>\n");
+        for (Entry<String, List<String>> entry : map.entrySet()) {
+            writer.write("<entry key=\"");
+            writeEscaped(entry.getKey(), true);
+            writer.write("\">");
+            List<String> values = entry.getValue();
+            if (values != null) {
+                for (int i = 0; i < values.size(); i++) {
+                    if (i > 0) {
+                        writeEscaped(delimiter, false);
+                    }
+                    String value = values.get(i);
+                    if (value != null) {
+                        writeEscaped(value, false);
+                    }
+                }
+            }
+            writer.write("</entry>\n");
+        }
+        writer.write("</properties>\n");
+        writer.flush();
+    }
+
+    private void writeEscaped(String str, boolean isAttribute)
+            throws IOException {
+        // write runs of characters not needing escaping in one call
+        int start = 0;
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            String escape = escape(str.charAt(i), isAttribute);
+            if (escape == null) {
+                continue;
+            }
+            if (i > start) {
+                writer.write(str, start, i - start);
+            }
+            writer.write(escape);
+            start = i + 1;
+        }
+        if (length > start) {
+            writer.write(str, start, length - start);
+        }
+    }
+
+    // Carriage returns, and tabs/newlines in attributes, would otherwise
+    // be normalized by XML parsers.
+    private static String escape(char c, boolean isAttribute) {
+        switch (c) {
+        case '&':
+            return "&amp;";
+        case '<':
+            return "&lt;";
+        case '>':
+            return "&gt;";
+        case '"':
+            return isAttribute ? "&quot;" : null;
+        case '\r':
+            return "&#13;";
+        case '\n':
+            return isAttribute ? "&#10;" : null;
+        case '\t':
+            return isAttribute ? "&#9;" : null;
+        default:
+            return null;
+        }
+    }
+}
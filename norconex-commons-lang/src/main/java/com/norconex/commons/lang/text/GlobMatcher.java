@@ -0,0 +1,305 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.text;
+
+/**
+ * <p>
+ * Matches text against a literal or a wildcard expression without
+ * relying on regular expressions. Used by {@link TextMatcher} for its
+ * {@link TextMatcher.Method#BASIC} and {@link TextMatcher.Method#WILDCARD}
+ * methods.
+ * </p>
+ * <p>
+ * Case and diacritic folding of the expression is performed once, at
+ * construction time. Wildcard matching does not backtrack recursively
+ * and runs in at most <i>O(text length &times; pattern length)</i>.
+ * Matching text without diacritical-mark insensitivity does not create
+ * any objects.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+final class GlobMatcher {
+
+    private static final char ANY_CHARS = '*';
+    private static final char ANY_CHAR = '?';
+
+    // folded pattern
+    private final char[] pattern;
+    // same as pattern, enclosed in "*" for partial wildcard matching
+    private final char[] partialPattern;
+    private final String literal;
+    private final boolean ignoreCase;
+    private final boolean ignoreDiacritic;
+
+    private GlobMatcher(String pattern, boolean wildcard,
+            boolean ignoreCase, boolean ignoreDiacritic) {
+        this.ignoreCase = ignoreCase;
+        this.ignoreDiacritic = ignoreDiacritic;
+        String p = fold(pattern == null ? "" : pattern);
+        if (wildcard) {
+            this.literal = null;
+            this.pattern = compactStars(p);
+            this.partialPattern = compactStars(ANY_CHARS + p + ANY_CHARS);
+        } else {
+            this.literal = p;
+            this.pattern = p.toCharArray();
+            this.partialPattern = null;
+        }
+    }
+
+    /**
+     * Creates a matcher where the pattern is taken literally.
+     * @param pattern the literal text to match
+     * @param ignoreCase whether to ignore character case
+     * @param ignoreDiacritic whether to ignore diacritical marks
+     * @return glob matcher
+     */
+    static GlobMatcher literal(
+            String pattern, boolean ignoreCase, boolean ignoreDiacritic) {
+        return new GlobMatcher(pattern, false, ignoreCase, ignoreDiacritic);
+    }
+    /**
+     * Creates a matcher where an asterisk (*) matches any characters
+     * and a question mark (?) matches any single character.
+     * @param pattern the wildcard expression to match
+     * @param ignoreCase whether to ignore character case
+     * @param ignoreDiacritic whether to ignore diacritical marks
+     * @return glob matcher
+     */
+    static GlobMatcher wildcard(
+            String pattern, boolean ignoreCase, boolean ignoreDiacritic) {
+        return new GlobMatcher(pattern, true, ignoreCase, ignoreDiacritic);
+    }
+
+    /**
+     * Matches the given text.
+     * @param text text to match
+     * @param partial <code>true</code> if the pattern can match only
+     *        a portion of the text
+     * @return <code>true</code> if matching
+     */
+    boolean matches(CharSequence text, boolean partial) {
+        return matchesStripped(
+                ignoreDiacritic ? stripMarks(text) : text, partial);
+    }
+    /**
+     * Matches the given text, which has already been stripped of its
+     * diacritical marks if this matcher ignores them.
+     * @param t text to match
+     * @param partial <code>true</code> if the pattern can match only
+     *        a portion of the text
+     * @return <code>true</code> if matching
+     */
+    boolean matchesStripped(CharSequence t, boolean partial) {
+        if (literal == null) {
+            return matchesWildcard(
+                    t, partial ? partialPattern : pattern);
+        }
+        if (partial) {
+            return indexOf(t) != -1;
+        }
+        return equalsLiteral(t);
+    }
+
+    boolean isLiteral() {
+        return literal != null;
+    }
+    boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+    boolean isIgnoreDiacritic() {
+        return ignoreDiacritic;
+    }
+
+    /**
+     * Gets the longest portion of the folded pattern that must be
+     * found as is in matching text. For literal matchers, it is the
+     * whole folded pattern.
+     * @return longest literal (may be empty, never <code>null</code>)
+     */
+    String longestLiteral() {
+        if (literal != null) {
+            return literal;
+        }
+        int bestStart = 0;
+        int bestLen = 0;
+        int start = 0;
+        for (int i = 0; i <= pattern.length; i++) {
+            if (i == pattern.length
+                    || pattern[i] == ANY_CHARS || pattern[i] == ANY_CHAR) {
+                if (i - start > bestLen) {
+                    bestStart = start;
+                    bestLen = i - start;
+                }
+                start = i + 1;
+            }
+        }
+        return new String(pattern, bestStart, bestLen);
+    }
+
+    //--- Literal --------------------------------------------------------------
+
+    private boolean equalsLiteral(CharSequence text) {
+        if (!ignoreCase && text instanceof String) {
+            return literal.equals(text);
+        }
+        int len = pattern.length;
+        for (int i = 0; i < len; i++) {
+            if (!hasCharAt(text, i) || pattern[i] != foldChar(text.charAt(i))) {
+                return false;
+            }
+        }
+        return !hasCharAt(text, len);
+    }
+
+    private int indexOf(CharSequence text) {
+        if (!ignoreCase && text instanceof String) {
+            return ((String) text).indexOf(literal);
+        }
+        int len = pattern.length;
+        if (len == 0) {
+            return 0;
+        }
+        for (int i = 0; hasCharAt(text, i + len - 1); i++) {
+            int j = 0;
+            while (j < len && pattern[j] == foldChar(text.charAt(i + j))) {
+                j++;
+            }
+            if (j == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //--- Wildcard -------------------------------------------------------------
+
+    // Iterative matching, only remembering the last asterisk seen.
+    // A later asterisk can always absorb what an earlier one would have,
+    // so there is never a need to go back further.
+    private boolean matchesWildcard(CharSequence text, char[] pat) {
+        int plen = pat.length;
+        int t = 0;
+        int p = 0;
+        int starP = -1;
+        int starT = -1;
+        while (hasCharAt(text, t)) {
+            if (p < plen && pat[p] == ANY_CHARS) {
+                if (p == plen - 1) {
+                    // a trailing asterisk matches the rest of the text
+                    return true;
+                }
+                starP = p++;
+                starT = t;
+            } else if (p < plen && pat[p] == ANY_CHAR) {
+                // any code point, like regular expression "."
+                p++;
+                t += charCount(text, t);
+            } else if (p < plen && pat[p] == foldChar(text.charAt(t))) {
+                p++;
+                t++;
+            } else if (starP != -1) {
+                p = starP + 1;
+                starT += charCount(text, starT);
+                t = starT;
+            } else {
+                return false;
+            }
+        }
+        while (p < plen && pat[p] == ANY_CHARS) {
+            p++;
+        }
+        return p == plen;
+    }
+
+    // Number of chars of the code point at the given index.
+    private static int charCount(CharSequence text, int index) {
+        if (Character.isHighSurrogate(text.charAt(index))
+                && hasCharAt(text, index + 1)
+                && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return 2;
+        }
+        return 1;
+    }
+
+    // Consecutive asterisks are redundant.
+    private static char[] compactStars(String pattern) {
+        StringBuilder b = new StringBuilder(pattern.length());
+        char prev = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if (ch != ANY_CHARS || prev != ANY_CHARS) {
+                b.append(ch);
+            }
+            prev = ch;
+        }
+        return b.toString().toCharArray();
+    }
+
+    //--- Folding --------------------------------------------------------------
+
+    private String fold(String str) {
+        String s = ignoreDiacritic ? stripMarks(str).toString() : str;
+        if (!ignoreCase) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = foldCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    char foldChar(char ch) {
+        return ignoreCase ? foldCase(ch) : ch;
+    }
+
+    // Same as what String#equalsIgnoreCase relies on.
+    static char foldCase(char ch) {
+        if (ch < 128) {
+            return ch >= 'A' && ch <= 'Z' ? (char) (ch + 32) : ch;
+        }
+        return Character.toLowerCase(Character.toUpperCase(ch));
+    }
+
+    /**
+     * Gets whether the given text has a character at the given index.
+     * Unlike checking against the text length, a text view stripped of
+     * its marks is only folded up to that index.
+     * @param text the text to check
+     * @param index character index
+     * @return <code>true</code> if the index is lower than the text length
+     */
+    static boolean hasCharAt(CharSequence text, int index) {
+        if (text instanceof MarkStrippingCharSequence) {
+            return ((MarkStrippingCharSequence) text).hasCharAt(index);
+        }
+        return index < text.length();
+    }
+
+    /**
+     * Gets a view of the given text with its diacritical marks
+     * removed, folded as it is being read.
+     * @param text the text to strip of its marks
+     * @return text without marks
+     */
+    static CharSequence stripMarks(CharSequence text) {
+        return MarkStrippingCharSequence.of(text);
+    }
+}
@@ -0,0 +1,194 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.text;
+
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+
+/**
+ * <p>
+ * Read-only view of a character sequence with its characters
+ * canonically decomposed and diacritical marks removed (e.g. "Élève"
+ * is read as "Eleve").
+ * </p>
+ * <p>
+ * Folding is performed lazily, one character at a time, as characters
+ * are being read. As long as source characters are unaffected by folding
+ * (e.g., US-ASCII), they are read directly from the source without
+ * being copied. Since marks are removed, canonical reordering of marks
+ * is not needed, which makes it possible to decompose each character
+ * independently.
+ * </p>
+ * <p>
+ * Getting the {@link #length()} requires folding the entire text.
+ * Callers reading characters sequentially should rely on
+ * {@link #hasCharAt(int)} instead, so only characters read are folded.
+ * </p>
+ * <p>
+ * Like {@link StringBuilder}, this class is not thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+final class MarkStrippingCharSequence implements CharSequence {
+
+    // Folded values for the most common characters, computed on demand.
+    private static final int FOLD_CACHE_SIZE = 0x3000;
+    private static final String[] FOLD_CACHE = new String[FOLD_CACHE_SIZE];
+
+    private final CharSequence source;
+    // number of source characters consumed so far
+    private int sourcePos;
+    // null as long as folded characters are identical to source ones
+    private StringBuilder folded;
+
+    private MarkStrippingCharSequence(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * Gets a mark-stripping view of the given text.
+     * @param text text to fold
+     * @return folded text view, or <code>null</code> if text is
+     *         <code>null</code>
+     */
+    static CharSequence of(CharSequence text) {
+        if (text == null || text instanceof MarkStrippingCharSequence) {
+            return text;
+        }
+        return new MarkStrippingCharSequence(text);
+    }
+
+    /**
+     * Gets whether there is a character at the given index, only folding
+     * the text up to that index.
+     * @param index character index
+     * @return <code>true</code> if the index is lower than the length
+     */
+    boolean hasCharAt(int index) {
+        foldUpTo(index + 1);
+        return index < foldedLength();
+    }
+
+    @Override
+    public int length() {
+        foldUpTo(Integer.MAX_VALUE);
+        return foldedLength();
+    }
+
+    @Override
+    public char charAt(int index) {
+        foldUpTo(index + 1);
+        if (folded == null) {
+            if (index >= sourcePos) {
+                throw new IndexOutOfBoundsException("index: " + index);
+            }
+            return source.charAt(index);
+        }
+        return folded.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        foldUpTo(Integer.MAX_VALUE);
+        if (folded == null) {
+            return source.toString();
+        }
+        return folded.toString();
+    }
+
+    private void foldUpTo(int length) {
+        int srcLength = source.length();
+        while (sourcePos < srcLength && foldedLength() < length) {
+            char ch = source.charAt(sourcePos);
+            // US-ASCII and CJK unified ideographs are never affected
+            if (ch < 0x80 || (ch >= 0x3400 && ch <= 0x9FFF)) {
+                consume(ch);
+                continue;
+            }
+            int cp = Character.codePointAt(source, sourcePos);
+            int count = Character.charCount(cp);
+            String f = fold(cp);
+            if (count == 1 && f.length() == 1 && f.charAt(0) == ch) {
+                consume(ch);
+            } else {
+                if (folded == null) {
+                    folded = new StringBuilder(srcLength);
+                    folded.append(source, 0, sourcePos);
+                }
+                folded.append(f);
+                sourcePos += count;
+            }
+        }
+    }
+
+    private int foldedLength() {
+        return folded == null ? sourcePos : folded.length();
+    }
+
+    private void consume(char ch) {
+        if (folded != null) {
+            folded.append(ch);
+        }
+        sourcePos++;
+    }
+
+    private static String fold(int cp) {
+        if (cp < FOLD_CACHE_SIZE) {
+            String f = FOLD_CACHE[cp];
+            if (f == null) {
+                f = computeFold(cp);
+                FOLD_CACHE[cp] = f;
+            }
+            return f;
+        }
+        return computeFold(cp);
+    }
+
+    private static String computeFold(int cp) {
+        String nfd = Normalizer.normalize(
+                new String(Character.toChars(cp)), Form.NFD);
+        StringBuilder b = new StringBuilder(nfd.length());
+        int i = 0;
+        while (i < nfd.length()) {
+            int ncp = nfd.codePointAt(i);
+            if (!isMark(ncp)) {
+                b.appendCodePoint(ncp);
+            }
+            i += Character.charCount(ncp);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Gets whether a code point is a diacritical mark.
+     * @param cp code point
+     * @return <code>true</code> if a mark
+     */
+    static boolean isMark(int cp) {
+        if (cp < 0x0300) {
+            return false;
+        }
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+}
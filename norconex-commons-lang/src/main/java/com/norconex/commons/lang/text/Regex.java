@@ -19,10 +19,12 @@ import java.text.Normalizer.Form;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -90,9 +92,19 @@ public class Regex implements IXMLConfigurable {
     private static final Pattern ESCAPE_PATTERN = Pattern.compile(
             "[" + ("<([{\\^-=$!|]})?*+.>".replaceAll(".", "\\\\$0")) + "]");
 
+    // Patterns rewritten for diacritical mark insensitivity, up to
+    // this many distinct entries.
+    private static final int MARK_INSENSITIVE_CACHE_SIZE = 1000;
+    private static final Map<String, String> MARK_INSENSITIVE_CACHE =
+            Collections.synchronizedMap(
+                    new LRUMap<>(MARK_INSENSITIVE_CACHE_SIZE));
+
     private String pattern;
     private final Set<Integer> flags = new HashSet<>();
 
+    // Lazily compiled, cleared whenever the pattern or flags change.
+    private transient Pattern compiledPattern;
+
     public Regex() {
         super();
     }
@@ -212,6 +224,7 @@ public class Regex implements IXMLConfigurable {
     }
 
     public void setFlags(int... flags) {
+        this.compiledPattern = null;
         this.flags.clear();
         if (flags != null) {
             this.flags.addAll(Arrays.asList(ArrayUtils.toObject(flags)));
@@ -223,6 +236,7 @@ public class Regex implements IXMLConfigurable {
 
     public Regex setPattern(String pattern) {
         this.pattern = pattern;
+        this.compiledPattern = null;
         return this;
     }
     public String getPattern() {
@@ -240,7 +254,12 @@ public class Regex implements IXMLConfigurable {
      * @return compiled pattern
      */
     public Pattern compile() {
-        return compile(pattern);
+        Pattern p = compiledPattern;
+        if (p == null) {
+            p = compile(pattern);
+            compiledPattern = p;
+        }
+        return p;
     }
     /**
      * <p>
@@ -269,8 +288,9 @@ public class Regex implements IXMLConfigurable {
 
         String p = pattern;
         if (ignoreMarks) {
-            p = Normalizer.normalize(p, Form.NFD)
-                    .replaceAll("(\\w)(\\p{M}*)", "$1\\\\p{M}*");
+            p = MARK_INSENSITIVE_CACHE.computeIfAbsent(
+                    pattern, k -> Normalizer.normalize(k, Form.NFD)
+                            .replaceAll("(\\w)(\\p{M}*)", "$1\\\\p{M}*"));
         }
         return Pattern.compile(p, f);
     }
@@ -314,7 +334,7 @@ public class Regex implements IXMLConfigurable {
      * @return matcher
      */
     public Matcher matcher(CharSequence text) {
-        return matcher(pattern, text);
+        return compile().matcher(toMatchable(text));
     }
     /**
      * Matches the the given pattern against the given text without assigning
@@ -324,14 +344,26 @@ public class Regex implements IXMLConfigurable {
      * @return matcher
      */
     public Matcher matcher(String pattern, CharSequence text) {
+        return compile(pattern).matcher(toMatchable(text));
+    }
+
+    private CharSequence toMatchable(CharSequence text) {
         if (text == null) {
             throw new IllegalArgumentException("Text cannot be null.");
         }
-        CharSequence t = text;
         if (flags.contains(UNICODE_MARK_INSENSTIVE_FLAG)) {
-            t = Normalizer.normalize(t, Form.NFD);
+            return toNFD(text);
+        }
+        return text;
+    }
+
+    // Avoids copying text already in canonical decomposition form
+    // (e.g., US-ASCII text).
+    static CharSequence toNFD(CharSequence text) {
+        if (Normalizer.isNormalized(text, Form.NFD)) {
+            return text;
         }
-        return compile(pattern).matcher(t);
+        return Normalizer.normalize(text, Form.NFD);
     }
 
     public RegexFieldValueExtractor createKeyValueExtractor() {
@@ -350,6 +382,7 @@ public class Regex implements IXMLConfigurable {
     }
 
     private Regex setFlag(int flag, boolean bool) {
+        compiledPattern = null;
         if (bool) {
             flags.add(flag);
         } else {
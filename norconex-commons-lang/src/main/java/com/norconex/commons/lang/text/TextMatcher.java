@@ -14,10 +14,13 @@
  */
 package com.norconex.commons.lang.text;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -103,8 +106,7 @@ public class TextMatcher implements IXMLConfigurable {
                 if (tm.getPattern() == null) {
                     return true;
                 }
-                Matcher m = regexMatcher(tm, text);
-                return tm.partial ? m.find() : m.matches();
+                return tm.globMatcher().matches(nonNull(text), tm.partial);
             }
             @Override
             public String replace(
@@ -120,10 +122,6 @@ public class TextMatcher implements IXMLConfigurable {
             public Pattern regexPattern(TextMatcher tm) {
                 return doRegexPattern(tm, strPattern(tm));
             }
-            @Override
-            public Matcher regexMatcher(TextMatcher tm, CharSequence text) {
-                return doRegexMatcher(tm, strPattern(tm), text);
-            }
             private String strPattern(TextMatcher tm) {
                 return Regex.escape(Objects.toString(tm.pattern, ""));
             }
@@ -134,8 +132,7 @@ public class TextMatcher implements IXMLConfigurable {
                 if (tm.getPattern() == null) {
                     return true;
                 }
-                Matcher m = regexMatcher(tm, text);
-                return tm.partial ? m.find() : m.matches();
+                return tm.globMatcher().matches(nonNull(text), tm.partial);
             }
             @Override
             public String replace(
@@ -151,13 +148,9 @@ public class TextMatcher implements IXMLConfigurable {
             public Pattern regexPattern(TextMatcher tm) {
                 return doRegexPattern(tm, strPattern(tm));
             }
-            @Override
-            public Matcher regexMatcher(TextMatcher tm, CharSequence text) {
-                return doRegexMatcher(tm, strPattern(tm), text);
-            }
             private String strPattern(TextMatcher tm) {
-                Pattern p = Pattern.compile("[^*?]+|(\\*)|(\\?)");
-                Matcher m = p.matcher(Objects.toString(tm.pattern, ""));
+                Matcher m = WILDCARD_TOKENIZER.matcher(
+                        Objects.toString(tm.pattern, ""));
                 StringBuilder b = new StringBuilder();
                 while (m.find()) {
                     if(m.group(1) != null) {
@@ -193,12 +186,6 @@ public class TextMatcher implements IXMLConfigurable {
             public Pattern regexPattern(TextMatcher tm) {
                 return doRegexPattern(tm, strPattern(tm));
             }
-            @Override
-            public Matcher regexMatcher(
-                    TextMatcher tm, CharSequence text) {
-                return doRegexMatcher(tm, strPattern(tm), text);
-
-            }
             private String strPattern(TextMatcher tm) {
                 return Objects.toString(tm.pattern, "");
             }
@@ -217,13 +204,20 @@ public class TextMatcher implements IXMLConfigurable {
                     .setIgnoreDiacritic(tm.ignoreDiacritic)
                     .compile();
         }
-        private static Matcher doRegexMatcher(
-                TextMatcher tm, String pattern, CharSequence text) {
-            return new Regex(pattern)
-                    .dotAll()
-                    .setIgnoreCase(tm.ignoreCase)
-                    .setIgnoreDiacritic(tm.ignoreDiacritic)
-                    .matcher(text);
+        private static Matcher regexMatcher(
+                TextMatcher tm, CharSequence text) {
+            CharSequence t = nonNull(text);
+            if (tm.ignoreDiacritic) {
+                t = Regex.toNFD(t);
+            }
+            return tm.compiledPattern().matcher(t);
+        }
+
+        private static CharSequence nonNull(CharSequence text) {
+            if (text == null) {
+                throw new IllegalArgumentException("Text cannot be null.");
+            }
+            return text;
         }
 
         private static String doReplace(
@@ -246,9 +240,18 @@ public class TextMatcher implements IXMLConfigurable {
         boolean matches(TextMatcher tm, CharSequence text);
         String replace(TextMatcher tm, String text, String replacement);
         Pattern regexPattern(TextMatcher tm);
-        Matcher regexMatcher(TextMatcher tm, CharSequence text);
     }
 
+    // Regex equivalent of wildcard characters and literal segments.
+    private static final Pattern WILDCARD_TOKENIZER =
+            Pattern.compile("[^*?]+|(\\*)|(\\?)");
+
+    // Compiled patterns are shared among instances with the same
+    // method, pattern and flags, up to this many distinct entries.
+    private static final int PATTERN_CACHE_SIZE = 1000;
+    private static final Map<PatternKey, Pattern> PATTERN_CACHE =
+            Collections.synchronizedMap(new LRUMap<>(PATTERN_CACHE_SIZE));
+
     private Method method = Method.BASIC;
 
     private String pattern;
@@ -257,6 +260,10 @@ public class TextMatcher implements IXMLConfigurable {
     private boolean replaceAll;
     private boolean partial;
 
+    // Lazily compiled, cleared whenever a property affecting them changes.
+    private transient Pattern compiledPattern;
+    private transient GlobMatcher compiledGlob;
+
     /**
      * Creates a basic matcher.
      */
@@ -312,6 +319,7 @@ public class TextMatcher implements IXMLConfigurable {
     }
     public TextMatcher setMethod(Method method) {
         this.method = method;
+        resetCompiled();
         return this;
     }
     public TextMatcher withMethod(Method method) {
@@ -337,6 +345,7 @@ public class TextMatcher implements IXMLConfigurable {
     }
     public TextMatcher setPattern(String pattern) {
         this.pattern = pattern;
+        resetCompiled();
         return this;
     }
     public TextMatcher withPattern(String pattern) {
@@ -348,6 +357,7 @@ public class TextMatcher implements IXMLConfigurable {
     }
     public TextMatcher setIgnoreCase(boolean ignoreCase) {
         this.ignoreCase = ignoreCase;
+        resetCompiled();
         return this;
     }
     public TextMatcher ignoreCase() {
@@ -362,6 +372,7 @@ public class TextMatcher implements IXMLConfigurable {
     }
     public TextMatcher setIgnoreDiacritic(boolean ignoreDiacritic) {
         this.ignoreDiacritic = ignoreDiacritic;
+        resetCompiled();
         return this;
     }
     public TextMatcher ignoreDiacritic() {
@@ -452,7 +463,7 @@ public class TextMatcher implements IXMLConfigurable {
      * @return matcher
      */
     public Matcher toRegexMatcher(CharSequence text) {
-        return safeMethod().ms.regexMatcher(this, text);
+        return Method.regexMatcher(this, text);
     }
     /**
      * Compiles this text matcher to create a regular expression
@@ -460,13 +471,79 @@ public class TextMatcher implements IXMLConfigurable {
      * @return pattern
      */
     public Pattern toRegexPattern() {
-        return safeMethod().ms.regexPattern(this);
+        return compiledPattern();
     }
 
     private Method safeMethod() {
         return ObjectUtils.defaultIfNull(method, Method.BASIC);
     }
 
+    // Basic and wildcard matching do not need a regular expression.
+    GlobMatcher globMatcher() {
+        GlobMatcher g = compiledGlob;
+        if (g == null) {
+            if (safeMethod() == Method.WILDCARD) {
+                g = GlobMatcher.wildcard(pattern, ignoreCase, ignoreDiacritic);
+            } else {
+                g = GlobMatcher.literal(pattern, ignoreCase, ignoreDiacritic);
+            }
+            compiledGlob = g;
+        }
+        return g;
+    }
+
+    private void resetCompiled() {
+        compiledPattern = null;
+        compiledGlob = null;
+    }
+
+    // Compiling is only done once per instance (until modified), and
+    // once for all instances sharing the same settings.
+    private Pattern compiledPattern() {
+        Pattern p = compiledPattern;
+        if (p == null) {
+            p = PATTERN_CACHE.computeIfAbsent(new PatternKey(this),
+                    k -> safeMethod().ms.regexPattern(this));
+            compiledPattern = p;
+        }
+        return p;
+    }
+
+    // Identifies settings that have an impact on the compiled pattern.
+    private static final class PatternKey {
+        private final Method method;
+        private final String pattern;
+        private final boolean ignoreCase;
+        private final boolean ignoreDiacritic;
+        private final int hash;
+        private PatternKey(TextMatcher tm) {
+            this.method = tm.safeMethod();
+            this.pattern = tm.pattern;
+            this.ignoreCase = tm.ignoreCase;
+            this.ignoreDiacritic = tm.ignoreDiacritic;
+            this.hash = Objects.hash(
+                    method, pattern, ignoreCase, ignoreDiacritic);
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PatternKey)) {
+                return false;
+            }
+            PatternKey other = (PatternKey) obj;
+            return method == other.method
+                    && ignoreCase == other.ignoreCase
+                    && ignoreDiacritic == other.ignoreDiacritic
+                    && Objects.equals(pattern, other.pattern);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     @Override
     public void loadFromXML(XML xml) {
         setMethod(xml.getEnum("@method", Method.class, method));
@@ -0,0 +1,414 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.norconex.commons.lang.text.TextMatcher.Method;
+
+/**
+ * <p>
+ * Evaluates many {@link TextMatcher} instances against the same text at
+ * once. Instead of scanning the text once per matcher, all
+ * {@link Method#BASIC} and {@link Method#WILDCARD} matchers sharing the
+ * same case and diacritic sensitivity are compiled into a single
+ * Aho-Corasick automaton, which finds all of them in one pass over
+ * the text.
+ * </p>
+ * <p>
+ * Basic matchers are resolved by the automaton alone. Wildcard matchers
+ * are only verified when the longest literal portion of their
+ * pattern was found in the text (or when they have no literal portion).
+ * {@link Method#REGEX} matchers are evaluated individually.
+ * </p>
+ * <p>
+ * The matchers supplied at construction time are copied: modifying them
+ * afterwards has no effect on this set.
+ * This class is immutable and thread-safe.
+ * </p>
+ *
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class TextMatcherSet {
+
+    private final List<TextMatcher> matchers;
+    private final List<Group> groups = new ArrayList<>();
+    // matchers not handled by groups (regex or null pattern)
+    private final int[] others;
+
+    /**
+     * Creates a new text matcher set. <code>null</code> matchers are
+     * ignored.
+     * @param matchers the text matchers composing this set
+     */
+    public TextMatcherSet(Collection<TextMatcher> matchers) {
+        super();
+        List<TextMatcher> list = new ArrayList<>();
+        if (matchers != null) {
+            for (TextMatcher tm : matchers) {
+                if (tm != null) {
+                    list.add(new TextMatcher(tm));
+                }
+            }
+        }
+        this.matchers = Collections.unmodifiableList(list);
+
+        Map<Integer, GroupBuilder> builders = new TreeMap<>();
+        List<Integer> otherList = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            TextMatcher tm = list.get(i);
+            Method method = ObjectUtils.defaultIfNull(
+                    tm.getMethod(), Method.BASIC);
+            if (tm.getPattern() == null || method == Method.REGEX) {
+                otherList.add(i);
+                continue;
+            }
+            GlobMatcher glob = tm.globMatcher();
+            int key = (glob.isIgnoreCase() ? 1 : 0)
+                    | (glob.isIgnoreDiacritic() ? 2 : 0);
+            builders.computeIfAbsent(key, k -> new GroupBuilder(
+                    glob.isIgnoreCase(), glob.isIgnoreDiacritic()))
+                            .add(i, glob, tm.isPartial());
+        }
+        for (GroupBuilder b : builders.values()) {
+            groups.add(b.build());
+        }
+        this.others = ArrayUtils.toPrimitive(
+                otherList.toArray(new Integer[otherList.size()]));
+    }
+    /**
+     * Creates a new text matcher set. <code>null</code> matchers are
+     * ignored.
+     * @param matchers the text matchers composing this set
+     */
+    public TextMatcherSet(TextMatcher... matchers) {
+        this(matchers == null ? null : Arrays.asList(matchers));
+    }
+
+    /**
+     * Gets the text matchers in this set.
+     * @return text matchers (never <code>null</code>)
+     */
+    public List<TextMatcher> getMatchers() {
+        return matchers;
+    }
+
+    /**
+     * Gets the text matchers matching the given text, in the same order
+     * they were supplied.
+     * @param text text to match
+     * @return matching text matchers (never <code>null</code>)
+     */
+    public List<TextMatcher> matches(CharSequence text) {
+        boolean[] hits = match(text);
+        List<TextMatcher> list = new ArrayList<>();
+        for (int i = 0; i < hits.length; i++) {
+            if (hits[i]) {
+                list.add(matchers.get(i));
+            }
+        }
+        return list;
+    }
+    /**
+     * Gets whether at least one text matcher matches the given text.
+     * @param text text to match
+     * @return <code>true</code> if there is at least one match
+     */
+    public boolean matchesAny(CharSequence text) {
+        for (boolean hit : match(text)) {
+            if (hit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean[] match(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null.");
+        }
+        boolean[] hits = new boolean[matchers.size()];
+        for (Group group : groups) {
+            group.match(text, hits);
+        }
+        for (int i : others) {
+            hits[i] = matchers.get(i).matches(text);
+        }
+        return hits;
+    }
+
+    @Override
+    public String toString() {
+        return new ReflectionToStringBuilder(this,
+                ToStringStyle.SHORT_PREFIX_STYLE).setExcludeFieldNames(
+                        "groups", "others").toString();
+    }
+
+    //--- Group ----------------------------------------------------------------
+
+    // Matchers sharing the same case and diacritic sensitivity,
+    // compiled into a single automaton.
+    private static final class Group {
+        private final boolean ignoreCase;
+        private final boolean ignoreDiacritic;
+        private final Automaton automaton;
+        private final Keyword[] keywords;
+        // empty basic patterns
+        private final int[] emptyPartials;
+        private final int[] emptyFulls;
+        // wildcards without any literal portion
+        private final Wildcard[] unconditionals;
+
+        private Group(GroupBuilder b) {
+            this.ignoreCase = b.ignoreCase;
+            this.ignoreDiacritic = b.ignoreDiacritic;
+            this.keywords = b.keywords.values().toArray(
+                    new Keyword[b.keywords.size()]);
+            List<String> words = new ArrayList<>(keywords.length);
+            for (Keyword kw : keywords) {
+                words.add(kw.word);
+            }
+            this.automaton = new Automaton(words);
+            this.emptyPartials = toArray(b.emptyPartials);
+            this.emptyFulls = toArray(b.emptyFulls);
+            this.unconditionals = b.unconditionals.toArray(
+                    new Wildcard[b.unconditionals.size()]);
+        }
+
+        private void match(CharSequence text, boolean[] hits) {
+            CharSequence t = ignoreDiacritic
+                    ? GlobMatcher.stripMarks(text) : text;
+            for (int i : emptyPartials) {
+                hits[i] = true;
+            }
+            if (!GlobMatcher.hasCharAt(t, 0)) {
+                for (int i : emptyFulls) {
+                    hits[i] = true;
+                }
+            }
+
+            boolean[] found = new boolean[keywords.length];
+            int state = 0;
+            for (int pos = 0; GlobMatcher.hasCharAt(t, pos); pos++) {
+                char ch = t.charAt(pos);
+                state = automaton.next(state,
+                        ignoreCase ? GlobMatcher.foldCase(ch) : ch);
+                for (int k : automaton.outputs[state]) {
+                    Keyword kw = keywords[k];
+                    found[k] = true;
+                    for (int i : kw.partials) {
+                        hits[i] = true;
+                    }
+                    // a full match spans the entire text
+                    if (kw.word.length() == pos + 1
+                            && !GlobMatcher.hasCharAt(t, pos + 1)) {
+                        for (int i : kw.fulls) {
+                            hits[i] = true;
+                        }
+                    }
+                }
+            }
+
+            for (int k = 0; k < keywords.length; k++) {
+                if (found[k]) {
+                    verify(keywords[k].wildcards, t, hits);
+                }
+            }
+            verify(unconditionals, t, hits);
+        }
+        private void verify(
+                Wildcard[] wildcards, CharSequence t, boolean[] hits) {
+            for (Wildcard w : wildcards) {
+                if (!hits[w.index]
+                        && w.glob.matchesStripped(t, w.partial)) {
+                    hits[w.index] = true;
+                }
+            }
+        }
+    }
+
+    private static final class GroupBuilder {
+        private final boolean ignoreCase;
+        private final boolean ignoreDiacritic;
+        private final Map<String, Keyword> keywords = new HashMap<>();
+        private final List<Integer> emptyPartials = new ArrayList<>();
+        private final List<Integer> emptyFulls = new ArrayList<>();
+        private final List<Wildcard> unconditionals = new ArrayList<>();
+        private GroupBuilder(boolean ignoreCase, boolean ignoreDiacritic) {
+            this.ignoreCase = ignoreCase;
+            this.ignoreDiacritic = ignoreDiacritic;
+        }
+        private void add(int index, GlobMatcher glob, boolean partial) {
+            String word = glob.longestLiteral();
+            if (word.isEmpty()) {
+                if (!glob.isLiteral()) {
+                    unconditionals.add(new Wildcard(index, glob, partial));
+                } else if (partial) {
+                    emptyPartials.add(index);
+                } else {
+                    emptyFulls.add(index);
+                }
+                return;
+            }
+            Keyword kw = keywords.computeIfAbsent(word, Keyword::new);
+            if (!glob.isLiteral()) {
+                kw.wildcards = ArrayUtils.add(
+                        kw.wildcards, new Wildcard(index, glob, partial));
+            } else if (partial) {
+                kw.partials = ArrayUtils.add(kw.partials, index);
+            } else {
+                kw.fulls = ArrayUtils.add(kw.fulls, index);
+            }
+        }
+        private Group build() {
+            return new Group(this);
+        }
+    }
+
+    private static final class Keyword {
+        private final String word;
+        private int[] partials = ArrayUtils.EMPTY_INT_ARRAY;
+        private int[] fulls = ArrayUtils.EMPTY_INT_ARRAY;
+        private Wildcard[] wildcards = new Wildcard[0];
+        private Keyword(String word) {
+            this.word = word;
+        }
+    }
+
+    private static final class Wildcard {
+        private final int index;
+        private final GlobMatcher glob;
+        private final boolean partial;
+        private Wildcard(int index, GlobMatcher glob, boolean partial) {
+            this.index = index;
+            this.glob = glob;
+            this.partial = partial;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return ArrayUtils.toPrimitive(list.toArray(new Integer[list.size()]));
+    }
+
+    //--- Automaton ------------------------------------------------------------
+
+    // Aho-Corasick automaton. Transitions of each state are kept as
+    // sorted character arrays (binary search) to stay compact with
+    // large alphabets.
+    private static final class Automaton {
+        private final char[][] chars;
+        private final int[][] targets;
+        private final int[] failures;
+        // keyword indices ending at each state, including those
+        // inherited from failure states
+        private final int[][] outputs;
+
+        private Automaton(List<String> words) {
+            // build the trie
+            List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+            List<int[]> outs = new ArrayList<>();
+            trie.add(new TreeMap<>());
+            outs.add(ArrayUtils.EMPTY_INT_ARRAY);
+            for (int k = 0; k < words.size(); k++) {
+                String word = words.get(k);
+                int state = 0;
+                for (int i = 0; i < word.length(); i++) {
+                    Integer next = trie.get(state).get(word.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.get(state).put(word.charAt(i), next);
+                        trie.add(new TreeMap<>());
+                        outs.add(ArrayUtils.EMPTY_INT_ARRAY);
+                    }
+                    state = next;
+                }
+                outs.set(state, ArrayUtils.add(outs.get(state), k));
+            }
+
+            int size = trie.size();
+            chars = new char[size][];
+            targets = new int[size][];
+            failures = new int[size];
+            outputs = new int[size][];
+            for (int s = 0; s < size; s++) {
+                TreeMap<Character, Integer> tr = trie.get(s);
+                chars[s] = new char[tr.size()];
+                targets[s] = new int[tr.size()];
+                int i = 0;
+                for (Entry<Character, Integer> en : tr.entrySet()) {
+                    chars[s][i] = en.getKey();
+                    targets[s][i] = en.getValue();
+                    i++;
+                }
+            }
+
+            // failure links, breadth-first so shallower states are resolved
+            // before deeper ones
+            outputs[0] = outs.get(0);
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int child : targets[0]) {
+                failures[child] = 0;
+                outputs[child] = outs.get(child);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                for (int i = 0; i < chars[s].length; i++) {
+                    char ch = chars[s][i];
+                    int child = targets[s][i];
+                    int f = failures[s];
+                    while (f != 0 && transition(f, ch) == -1) {
+                        f = failures[f];
+                    }
+                    int fnext = transition(f, ch);
+                    failures[child] = fnext == -1 ? 0 : fnext;
+                    outputs[child] = ArrayUtils.addAll(
+                            outs.get(child), outputs[failures[child]]);
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int transition(int state, char ch) {
+            int i = Arrays.binarySearch(chars[state], ch);
+            return i < 0 ? -1 : targets[state][i];
+        }
+
+        private int next(int state, char ch) {
+            int s = state;
+            int next;
+            while ((next = transition(s, ch)) == -1 && s != 0) {
+                s = failures[s];
+            }
+            return next == -1 ? 0 : next;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Host name resolver keeping resolved host names in memory for a
+ * given time (TTL). IP addresses that could not be resolved are
+ * also kept, usually for a shorter time (negative caching).
+ * When the maximum number of entries is reached, the least recently
+ * used ones are removed.
+ * </p>
+ * <p>
+ * Host names can be resolved in advance, without blocking the caller, with
+ * {@link #resolveAsync(String)} or {@link #resolveAllAsync(Collection)}.
+ * Concurrent requests for the same IP address share the same lookup.
+ * Lookups are performed on the executor given on creation. Since they can
+ * block for a long time, a dedicated executor is recommended.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see URLNormalizer#replaceIPWithDomainName(IHostNameResolver)
+ */
+public class CachedHostNameResolver implements IHostNameResolver {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CachedHostNameResolver.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofMinutes(1);
+
+    /**
+     * Resolves host names using {@link InetAddress}, blocking until
+     * resolved.
+     */
+    public static final IHostNameResolver INET_ADDRESS_RESOLVER =
+            ip -> InetAddress.getByName(ip).getHostName();
+
+    private final IHostNameResolver resolver;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Executor executor;
+    private final LongSupplier clock;
+
+    // guarded by itself
+    private final Map<String, CacheEntry> cache;
+    private final Map<String, CompletableFuture<String>> pending =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates a resolver using {@link InetAddress}, with default cache
+     * settings, performing asynchronous lookups on the common
+     * fork-join pool.
+     */
+    public CachedHostNameResolver() {
+        this(INET_ADDRESS_RESOLVER);
+    }
+    /**
+     * Creates a resolver caching host names obtained from the given
+     * resolver, with default cache settings, performing asynchronous
+     * lookups on the common fork-join pool.
+     * @param resolver the resolver performing lookups
+     */
+    public CachedHostNameResolver(IHostNameResolver resolver) {
+        this(resolver, DEFAULT_MAX_ENTRIES,
+                DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, null);
+    }
+    /**
+     * Creates a resolver caching host names obtained from the given
+     * resolver.
+     * @param resolver the resolver performing lookups
+     * @param maxEntries maximum number of IP addresses kept
+     * @param ttl how long a host name is kept
+     * @param negativeTtl how long an IP address that could not be resolved
+     *        is kept (zero or <code>null</code> to not keep them)
+     * @param executor executor for asynchronous lookups
+     *        (<code>null</code> to use the common fork-join pool)
+     */
+    public CachedHostNameResolver(IHostNameResolver resolver, int maxEntries,
+            Duration ttl, Duration negativeTtl, Executor executor) {
+        this(resolver, maxEntries, ttl, negativeTtl, executor,
+                System::nanoTime);
+    }
+    /*default*/ CachedHostNameResolver(IHostNameResolver resolver,
+            int maxEntries, Duration ttl, Duration negativeTtl,
+            Executor executor, LongSupplier clock) {
+        super();
+        Objects.requireNonNull(resolver, "'resolver' must not be null.");
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException(
+                    "Maximum entries must be greater than zero.");
+        }
+        this.resolver = resolver;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl == null ? 0 : negativeTtl.toNanos();
+        this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                    Entry<String, CacheEntry> eldest) {
+                return size() > CachedHostNameResolver.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Resolves the host name of an IP address, from cache if present,
+     * else by looking it up (blocking until resolved). The lookup is
+     * performed by the calling thread, unless one is already pending
+     * for the same IP address, in which case it waits for it.
+     * @param ip the IP address
+     * @return the host name, or the IP address (or <code>null</code>)
+     *         if it has no host name
+     * @throws UnknownHostException the IP address could not be resolved,
+     *         now or when last looked up (negative caching)
+     */
+    @Override
+    public String resolveHostName(String ip) throws UnknownHostException {
+        CacheEntry entry = getCached(ip);
+        if (entry != null) {
+            if (entry.unresolved) {
+                throw new UnknownHostException(ip);
+            }
+            return entry.hostName;
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = pending.putIfAbsent(ip, future);
+        if (existing == null) {
+            completeLookup(ip, future);
+        } else {
+            future = existing;
+        }
+        String hostName;
+        try {
+            hostName = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (hostName == null) {
+            throw new UnknownHostException(ip);
+        }
+        return hostName;
+    }
+
+    /**
+     * Resolves the host name of an IP address without blocking.
+     * The returned future completes with <code>null</code> when
+     * the IP address could not be resolved.
+     * @param ip the IP address
+     * @return future host name
+     */
+    public CompletableFuture<String> resolveAsync(String ip) {
+        CacheEntry entry = getCached(ip);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry.hostName);
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = pending.putIfAbsent(ip, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> completeLookup(ip, future));
+        } catch (RuntimeException e) {
+            pending.remove(ip, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Resolves the host names of IP addresses without blocking.
+     * The returned future completes when all of them were looked up.
+     * IP addresses that could not be resolved are not part of the
+     * resulting map.
+     * @param ips the IP addresses
+     * @return future map of IP addresses and their host names
+     */
+    public CompletableFuture<Map<String, String>> resolveAllAsync(
+            Collection<String> ips) {
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        if (ips != null) {
+            for (String ip : ips) {
+                futures.computeIfAbsent(ip, this::resolveAsync);
+            }
+        }
+        return CompletableFuture.allOf(futures.values().toArray(
+                new CompletableFuture<?>[futures.size()])).thenApply(v -> {
+            Map<String, String> hostNames = new HashMap<>();
+            futures.forEach((ip, future) -> {
+                String host = future.join();
+                if (host != null) {
+                    hostNames.put(ip, host);
+                }
+            });
+            return hostNames;
+        });
+    }
+
+    /**
+     * Gets the number of IP addresses currently cached, including
+     * expired ones not yet removed.
+     * @return cache size
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes all cached IP addresses.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private CacheEntry getCached(String ip) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(ip);
+            if (entry != null && entry.expiry - clock.getAsLong() <= 0) {
+                cache.remove(ip);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void completeLookup(String ip, CompletableFuture<String> future) {
+        String hostName = null;
+        try {
+            hostName = lookup(ip);
+        } catch (UnknownHostException e) {
+            // already logged and cached
+        } catch (RuntimeException e) {
+            pending.remove(ip, future);
+            future.completeExceptionally(e);
+            return;
+        }
+        // removed first so new requests are served from cache
+        pending.remove(ip, future);
+        future.complete(hostName);
+    }
+
+    private String lookup(String ip) throws UnknownHostException {
+        try {
+            String hostName = resolver.resolveHostName(ip);
+            if (hostName == null) {
+                hostName = ip;
+            }
+            cache(ip, new CacheEntry(hostName, false, ttlNanos));
+            return hostName;
+        } catch (UnknownHostException e) {
+            LOG.debug("Could not resolve host name of: {}", ip);
+            cache(ip, new CacheEntry(null, true, negativeTtlNanos));
+            throw e;
+        }
+    }
+    private void cache(String ip, CacheEntry entry) {
+        if (entry.expiry - clock.getAsLong() > 0) {
+            synchronized (cache) {
+                cache.put(ip, entry);
+            }
+        }
+    }
+
+    private class CacheEntry {
+        private final String hostName;
+        private final boolean unresolved;
+        private final long expiry;
+        private CacheEntry(String hostName, boolean unresolved, long ttl) {
+            this.hostName = hostName;
+            this.unresolved = unresolved;
+            this.expiry = clock.getAsLong() + ttl;
+        }
+    }
+}
@@ -20,9 +20,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Locale;
 
-import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -433,31 +431,21 @@ public class HttpURL implements Serializable {
         if (StringUtils.isBlank(path)) {
             return path;
         }
-        StringBuilder sb = new StringBuilder();
-        for (char ch : path.toCharArray()) {
-            // Space to plus sign
-            if (ch == ' ') {
-                sb.append("%20");
-            // Valid: keep it as is.
-            } else if (CharUtils.isAsciiAlphanumeric(ch)
-                    || ".-_~!$&'()*+,;=:@/%".indexOf(ch) != -1)  {
-                sb.append(ch);
-            // Invalid: encode it
-            } else {
-                byte[] bytes;
-                bytes = Character.toString(ch).getBytes(StandardCharsets.UTF_8);
-                for (byte b : bytes) {
-                    sb.append('%');
-                    int upper = ((b) >> 4) & 0xf;
-                    sb.append(Integer.toHexString(
-                            upper).toUpperCase(Locale.US));
-                    int lower = (b) & 0xf;
-                    sb.append(Integer.toHexString(
-                            lower).toUpperCase(Locale.US));
-                }
-            }
-        }
-        return sb.toString();
+        return PercentCodec.encode(
+                path, PercentCodec.Encoding.PATH, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a resolver of relative URLs against the supplied base URL,
+     * following RFC 3986. The base URL is parsed only once, making it
+     * efficient to resolve many URLs against it (e.g., all links of
+     * a page).
+     * @param baseURL the URL relative ones are resolved against
+     * @return URL resolver
+     * @since 2.0.0
+     */
+    public static URLResolver resolver(String baseURL) {
+        return new URLResolver(baseURL);
     }
 
     /**
@@ -468,6 +456,7 @@ public class HttpURL implements Serializable {
      * @param relativeURL the relative URL portion to transform to absolute
      * @return absolute URL
      * @since 1.8.0
+     * @see #resolver(String)
      */
     public static String toAbsolute(String baseURL, String relativeURL) {
         String relURL = relativeURL;
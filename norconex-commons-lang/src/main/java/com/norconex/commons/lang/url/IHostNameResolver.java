@@ -0,0 +1,38 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import java.net.UnknownHostException;
+
+/**
+ * Resolves the host name of an IP address, as done by
+ * {@link URLNormalizer#replaceIPWithDomainName(IHostNameResolver)}.
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see CachedHostNameResolver
+ */
+@FunctionalInterface
+public interface IHostNameResolver {
+
+    /**
+     * Resolves the host name of an IP address.
+     * @param ip the IP address
+     * @return the host name, or the IP address (or <code>null</code>)
+     *         if it has no host name
+     * @throws UnknownHostException the IP address is not valid or cannot
+     *         be resolved
+     */
+    String resolveHostName(String ip) throws UnknownHostException;
+}
@@ -0,0 +1,249 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Mutable URL components, obtained by splitting a URL string once,
+ * without decoding or validating anything. Converting it back to
+ * a string gives the original URL as long as no component is modified.
+ * Query parameters are only split when obtained.
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+/*default*/ final class ParsedURL implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String scheme;
+    private boolean hierarchical;
+    private String userInfo;
+    private String host;
+    private String port;
+    private String path;
+    private String query;
+    private List<String> queryParams;
+    private String fragment;
+
+    private ParsedURL() {
+        super();
+    }
+
+    /**
+     * Splits a URL into its components. The scheme is the text before
+     * the first colon, if it is a valid scheme. The authority is only
+     * present when the scheme is followed by two slashes.
+     * @param url the URL to split
+     * @return URL components
+     */
+    /*default*/ static ParsedURL parse(String url) {
+        ParsedURL u = new ParsedURL();
+        int len = url.length();
+        int fragStart = url.indexOf('#');
+        int end = fragStart == -1 ? len : fragStart;
+        if (fragStart != -1) {
+            u.fragment = url.substring(fragStart + 1);
+        }
+        int queryStart = url.indexOf('?');
+        if (queryStart != -1 && queryStart < end) {
+            u.query = url.substring(queryStart + 1, end);
+            end = queryStart;
+        }
+
+        int pos = 0;
+        int schemeEnd = schemeEnd(url, end);
+        if (schemeEnd != -1) {
+            u.scheme = url.substring(0, schemeEnd);
+            pos = schemeEnd + 1;
+        }
+        if (url.startsWith("//", pos)) {
+            u.hierarchical = true;
+            pos += 2;
+            int authEnd = url.indexOf('/', pos);
+            if (authEnd == -1 || authEnd > end) {
+                authEnd = end;
+            }
+            u.parseAuthority(url.substring(pos, authEnd));
+            pos = authEnd;
+        }
+        u.path = url.substring(pos, end);
+        return u;
+    }
+    /**
+     * Gets the position of the colon ending the scheme, if the text
+     * before it is a valid scheme.
+     * @param url the URL
+     * @param end position where to stop looking
+     * @return colon position, or -1 if there is no scheme
+     */
+    /*default*/ static int schemeEnd(String url, int end) {
+        for (int i = 0; i < end; i++) {
+            char ch = url.charAt(i);
+            if (ch == ':') {
+                return i == 0 ? -1 : i;
+            }
+            boolean valid = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'
+                    || i > 0 && (ch >= '0' && ch <= '9'
+                            || ch == '+' || ch == '-' || ch == '.');
+            if (!valid) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    private void parseAuthority(String authority) {
+        String hostPort = authority;
+        int at = authority.lastIndexOf('@');
+        if (at != -1) {
+            userInfo = authority.substring(0, at);
+            hostPort = authority.substring(at + 1);
+        }
+        int colon;
+        if (hostPort.startsWith("[")) {
+            // IPv6 address
+            int close = hostPort.indexOf(']');
+            colon = close == -1 ? -1 : hostPort.indexOf(':', close);
+        } else {
+            colon = hostPort.indexOf(':');
+        }
+        if (colon == -1) {
+            host = hostPort;
+        } else {
+            host = hostPort.substring(0, colon);
+            port = hostPort.substring(colon + 1);
+        }
+    }
+
+    /*default*/ String getScheme() {
+        return scheme;
+    }
+    /*default*/ void setScheme(String scheme) {
+        this.scheme = scheme;
+    }
+    /**
+     * Whether the scheme is followed by "//" and an authority.
+     * @return <code>true</code> if there is an authority
+     */
+    /*default*/ boolean isHierarchical() {
+        return hierarchical;
+    }
+    /*default*/ String getUserInfo() {
+        return userInfo;
+    }
+    /*default*/ void setUserInfo(String userInfo) {
+        this.userInfo = userInfo;
+    }
+    /*default*/ String getHost() {
+        return host;
+    }
+    /*default*/ void setHost(String host) {
+        this.host = host;
+    }
+    /**
+     * Gets the port as written in the URL.
+     * @return the port, or <code>null</code> if there are no port
+     */
+    /*default*/ String getPort() {
+        return port;
+    }
+    /*default*/ void setPort(String port) {
+        this.port = port;
+    }
+    /*default*/ String getPath() {
+        return path;
+    }
+    /*default*/ void setPath(String path) {
+        this.path = path;
+    }
+    /**
+     * Gets the query string without the question mark.
+     * @return the query string, or <code>null</code> if there is no
+     *         question mark
+     */
+    /*default*/ String getQuery() {
+        if (queryParams != null) {
+            query = StringUtils.join(queryParams, '&');
+        }
+        return query;
+    }
+    /*default*/ void setQuery(String query) {
+        this.query = query;
+        this.queryParams = null;
+    }
+    /**
+     * Gets the query string parameters (name and value pairs, as written),
+     * which can be modified. Empty parameters are not included.
+     * Only call when there is a query string.
+     * @return query string parameters
+     */
+    /*default*/ List<String> getQueryParams() {
+        if (queryParams == null) {
+            queryParams = new ArrayList<>(
+                    Arrays.asList(StringUtils.split(query, '&')));
+        }
+        return queryParams;
+    }
+    /*default*/ boolean hasQuery() {
+        return query != null;
+    }
+    /*default*/ String getFragment() {
+        return fragment;
+    }
+    /*default*/ void setFragment(String fragment) {
+        this.fragment = fragment;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        if (scheme != null) {
+            b.append(scheme).append(':');
+        }
+        if (hierarchical) {
+            b.append("//");
+            if (userInfo != null) {
+                b.append(userInfo).append('@');
+            }
+            b.append(host);
+            if (port != null) {
+                b.append(':').append(port);
+            }
+        }
+        b.append(path);
+        if (query != null) {
+            b.append('?');
+            if (queryParams != null) {
+                for (int i = 0; i < queryParams.size(); i++) {
+                    if (i > 0) {
+                        b.append('&');
+                    }
+                    b.append(queryParams.get(i));
+                }
+            } else {
+                b.append(query);
+            }
+        }
+        if (fragment != null) {
+            b.append('#').append(fragment);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,324 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Percent-encoding and decoding of URL parts, using lookup tables of
+ * characters to leave as is. Methods taking a {@link String} return the
+ * same instance when there is nothing to encode or decode. Methods
+ * taking a {@link CharSequence} append to a {@link StringBuilder} the
+ * caller can reuse.
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+/*default*/ final class PercentCodec {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final boolean[] UNRESERVED = table(".-_~");
+
+    /**
+     * Characters left as is when encoding, in addition to ASCII letters
+     * and digits.
+     */
+    /*default*/ enum Encoding {
+        /**
+         * URL path or fragment. Percent signs are kept, assuming
+         * they are already part of escape sequences. Spaces are
+         * encoded as "%20".
+         */
+        PATH(".-_~!$&'()*+,;=:@/%", false),
+        /**
+         * Query string parameter name or value, same as
+         * {@link java.net.URLEncoder}. Spaces are encoded as "+".
+         */
+        FORM(".-*_", true);
+
+        private final boolean[] safe;
+        private final boolean spaceAsPlus;
+        Encoding(String safeChars, boolean spaceAsPlus) {
+            this.safe = table(safeChars);
+            this.spaceAsPlus = spaceAsPlus;
+        }
+    }
+
+    private PercentCodec() {
+        super();
+    }
+
+    private static boolean[] table(String safeChars) {
+        boolean[] table = new boolean[128];
+        for (char ch = '0'; ch <= '9'; ch++) {
+            table[ch] = true;
+        }
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            table[ch] = true;
+            table[Character.toUpperCase(ch)] = true;
+        }
+        for (char ch : safeChars.toCharArray()) {
+            table[ch] = true;
+        }
+        return table;
+    }
+
+    //--- Encode ---------------------------------------------------------------
+
+    /**
+     * Percent-encodes a string.
+     * @param str the string to encode
+     * @param encoding characters to leave as is
+     * @param charset character set of encoded bytes
+     * @return encoded string, or the same string if nothing was encoded
+     */
+    /*default*/ static String encode(
+            String str, Encoding encoding, Charset charset) {
+        if (str == null) {
+            return null;
+        }
+        int i = 0;
+        while (i < str.length() && isSafe(str.charAt(i), encoding)) {
+            i++;
+        }
+        if (i == str.length()) {
+            return str;
+        }
+        StringBuilder b = new StringBuilder(str.length() + 16);
+        b.append(str, 0, i);
+        encode(str, i, encoding, charset, b);
+        return b.toString();
+    }
+    /**
+     * Percent-encodes characters and appends them to a string builder.
+     * @param chars the characters to encode
+     * @param encoding characters to leave as is
+     * @param charset character set of encoded bytes
+     * @param out where to append encoded characters
+     */
+    /*default*/ static void encode(CharSequence chars,
+            Encoding encoding, Charset charset, StringBuilder out) {
+        encode(chars, 0, encoding, charset, out);
+    }
+    private static void encode(CharSequence chars, int start,
+            Encoding encoding, Charset charset, StringBuilder out) {
+        boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+        int len = chars.length();
+        int i = start;
+        while (i < len) {
+            char ch = chars.charAt(i);
+            if (isSafe(ch, encoding)) {
+                out.append(ch);
+                i++;
+            } else if (ch == ' ' && encoding.spaceAsPlus) {
+                out.append('+');
+                i++;
+            } else if (utf8) {
+                i = appendUTF8(chars, i, out);
+            } else {
+                // encode consecutive characters together
+                int end = i + 1;
+                while (end < len && !isSafe(chars.charAt(end), encoding)
+                        && chars.charAt(end) != ' ') {
+                    end++;
+                }
+                for (byte b : chars.subSequence(i, end)
+                        .toString().getBytes(charset)) {
+                    appendEscape(b, out);
+                }
+                i = end;
+            }
+        }
+    }
+    // Returns the index after the encoded character.
+    private static int appendUTF8(
+            CharSequence chars, int i, StringBuilder out) {
+        char ch = chars.charAt(i);
+        int cp = ch;
+        int next = i + 1;
+        if (Character.isHighSurrogate(ch) && next < chars.length()
+                && Character.isLowSurrogate(chars.charAt(next))) {
+            cp = Character.toCodePoint(ch, chars.charAt(next));
+            next++;
+        } else if (Character.isSurrogate(ch)) {
+            // unpaired surrogate, replaced like String#getBytes does
+            cp = '?';
+        }
+        if (cp < 0x80) {
+            appendEscape(cp, out);
+        } else if (cp < 0x800) {
+            appendEscape(0xC0 | cp >> 6, out);
+            appendEscape(0x80 | cp & 0x3F, out);
+        } else if (cp < 0x10000) {
+            appendEscape(0xE0 | cp >> 12, out);
+            appendEscape(0x80 | cp >> 6 & 0x3F, out);
+            appendEscape(0x80 | cp & 0x3F, out);
+        } else {
+            appendEscape(0xF0 | cp >> 18, out);
+            appendEscape(0x80 | cp >> 12 & 0x3F, out);
+            appendEscape(0x80 | cp >> 6 & 0x3F, out);
+            appendEscape(0x80 | cp & 0x3F, out);
+        }
+        return next;
+    }
+    private static void appendEscape(int b, StringBuilder out) {
+        out.append('%').append(HEX[b >> 4 & 0xF]).append(HEX[b & 0xF]);
+    }
+    private static boolean isSafe(char ch, Encoding encoding) {
+        return ch < 128 && encoding.safe[ch];
+    }
+    // ASCII hexadecimal digit value, or -1
+    private static int hexValue(char ch) {
+        if (ch >= '0' && ch <= '9') {
+            return ch - '0';
+        }
+        if (ch >= 'A' && ch <= 'F') {
+            return ch - 'A' + 10;
+        }
+        if (ch >= 'a' && ch <= 'f') {
+            return ch - 'a' + 10;
+        }
+        return -1;
+    }
+
+    //--- Decode ---------------------------------------------------------------
+
+    /**
+     * Decodes a percent-encoded string, converting plus signs to spaces,
+     * same as {@link java.net.URLDecoder}.
+     * @param str the string to decode
+     * @param charset character set of encoded bytes
+     * @return decoded string, or the same string if nothing was decoded
+     * @throws IllegalArgumentException if an escape sequence is invalid
+     */
+    /*default*/ static String decode(String str, Charset charset) {
+        if (str == null
+                || str.indexOf('%') == -1 && str.indexOf('+') == -1) {
+            return str;
+        }
+        StringBuilder b = new StringBuilder(str.length());
+        decode(str, charset, b);
+        return b.toString();
+    }
+    /**
+     * Decodes percent-encoded characters, converting plus signs to
+     * spaces, and appends them to a string builder.
+     * @param chars the characters to decode
+     * @param charset character set of encoded bytes
+     * @param out where to append decoded characters
+     * @throws IllegalArgumentException if an escape sequence is invalid
+     */
+    /*default*/ static void decode(
+            CharSequence chars, Charset charset, StringBuilder out) {
+        int len = chars.length();
+        byte[] bytes = null;
+        int i = 0;
+        while (i < len) {
+            char ch = chars.charAt(i);
+            if (ch == '+') {
+                out.append(' ');
+                i++;
+            } else if (ch == '%') {
+                if (bytes == null) {
+                    bytes = new byte[(len - i) / 3];
+                }
+                int count = 0;
+                while (i + 2 < len && chars.charAt(i) == '%') {
+                    int hi = hexValue(chars.charAt(i + 1));
+                    int lo = hexValue(chars.charAt(i + 2));
+                    if (hi == -1 || lo == -1) {
+                        throw new IllegalArgumentException(
+                                "Illegal hex characters in escape (%) "
+                              + "pattern: " + chars);
+                    }
+                    bytes[count++] = (byte) (hi << 4 | lo);
+                    i += 3;
+                }
+                if (i < len && chars.charAt(i) == '%') {
+                    throw new IllegalArgumentException(
+                            "Incomplete trailing escape (%) pattern: "
+                          + chars);
+                }
+                out.append(new String(bytes, 0, count, charset));
+            } else {
+                out.append(ch);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Decodes percent-encoded unreserved characters only (ASCII letters,
+     * digits, hyphen, period, underscore, and tilde), leaving other escape
+     * sequences as they are.
+     * @param str the string to decode
+     * @return decoded string, or the same string if nothing was decoded
+     */
+    /*default*/ static String decodeUnreserved(String str) {
+        if (str == null || str.indexOf('%') == -1) {
+            return str;
+        }
+        StringBuilder b = null;
+        int last = 0;
+        for (int i = 0; i < str.length() - 2; i++) {
+            if (str.charAt(i) == '%') {
+                int hi = hexValue(str.charAt(i + 1));
+                int lo = hexValue(str.charAt(i + 2));
+                int ch = hi << 4 | lo;
+                if (hi != -1 && lo != -1 && ch < 128 && UNRESERVED[ch]) {
+                    if (b == null) {
+                        b = new StringBuilder(str.length());
+                    }
+                    b.append(str, last, i).append((char) ch);
+                    last = i + 3;
+                    i += 2;
+                }
+            }
+        }
+        if (b == null) {
+            return str;
+        }
+        return b.append(str, last, str.length()).toString();
+    }
+
+    /**
+     * Converts hexadecimal digits of escape sequences to upper case.
+     * @param str the string to convert
+     * @return converted string, or the same string if nothing was converted
+     */
+    /*default*/ static String upperCaseEscapes(String str) {
+        if (str == null || str.indexOf('%') == -1) {
+            return str;
+        }
+        char[] chars = null;
+        for (int i = 0; i < str.length() - 2; i++) {
+            if (str.charAt(i) == '%'
+                    && hexValue(str.charAt(i + 1)) != -1
+                    && hexValue(str.charAt(i + 2)) != -1) {
+                for (int j = i + 1; j <= i + 2; j++) {
+                    char ch = str.charAt(j);
+                    if (ch >= 'a' && ch <= 'f') {
+                        if (chars == null) {
+                            chars = str.toCharArray();
+                        }
+                        chars[j] = (char) (ch - 'a' + 'A');
+                    }
+                }
+                i += 2;
+            }
+        }
+        return chars == null ? str : new String(chars);
+    }
+}
@@ -14,11 +14,9 @@
  */
 package com.norconex.commons.lang.url;
 
-import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -95,32 +93,48 @@ public class QueryString extends Properties {
         String paramString = urlWithQueryString;
         if (StringUtils.contains(paramString, "?")) {
             paramString = StringUtils.substringBefore(paramString, "#");
-            paramString = paramString.replaceAll("(.*?)(\\?)(.*)", "$3");
+            paramString = StringUtils.substringAfter(paramString, "?");
         }
-        String[] paramParts = paramString.split("\\&");
-        for (int i = 0; i < paramParts.length; i++) {
-            String paramPart = paramParts[i];
-            if (StringUtils.isBlank(paramPart)) {
-                continue;
+        if (StringUtils.isBlank(paramString)) {
+            return;
+        }
+        Charset charset = toCharset(this.encoding);
+        int start = 0;
+        while (start <= paramString.length()) {
+            int end = paramString.indexOf('&', start);
+            if (end == -1) {
+                end = paramString.length();
+            }
+            int eq = paramString.indexOf('=', start);
+            if (eq > end) {
+                eq = -1;
             }
-            String key;
-            String value;
-            if (StringUtils.contains(paramPart, "=")) {
-                key = StringUtils.substringBefore(paramPart, "=");
-                value = StringUtils.substringAfter(paramPart, "=");
-            } else {
-                key = paramPart;
-                value = StringUtils.EMPTY;
+            if (!isBlank(paramString, start, end)) {
+                String key = paramString.substring(
+                        start, eq == -1 ? end : eq);
+                String value = eq == -1 ? StringUtils.EMPTY
+                        : paramString.substring(eq + 1, end);
+                add(PercentCodec.decode(key, charset),
+                        PercentCodec.decode(value, charset));
             }
-            try {
-                add(URLDecoder.decode(key, this.encoding),
-                          URLDecoder.decode(value, this.encoding));
-            } catch (UnsupportedEncodingException e) {
-                throw new URLException(
-                        "Cannot URL-decode query string (key="
-                                + key + "; value=" + value + ").", e);
+            start = end + 1;
+        }
+    }
+    private static boolean isBlank(String str, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(str.charAt(i))) {
+                return false;
             }
         }
+        return true;
+    }
+    private static Charset toCharset(String encoding) {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new URLException(
+                    "Unsupported character encoding: " + encoding, e);
+        }
     }
 
     /**
@@ -141,21 +155,18 @@ public class QueryString extends Properties {
         if (isEmpty()) {
             return "";
         }
+        Charset charset = toCharset(encoding);
         StringBuilder b = new StringBuilder();
         char sep = '?';
         for (String key : keySet()) {
             for (String value : getStrings(key)) {
                 b.append(sep);
                 sep = '&';
-                try {
-                    b.append(URLEncoder.encode(key, encoding));
-                    b.append('=');
-                    b.append(URLEncoder.encode(value, encoding));
-                } catch (UnsupportedEncodingException e) {
-                    throw new URLException(
-                            "Cannot URL-encode query string (key="
-                                    + key + "; value=" + value + ").", e);
-                }
+                PercentCodec.encode(
+                        key, PercentCodec.Encoding.FORM, charset, b);
+                b.append('=');
+                PercentCodec.encode(
+                        value, PercentCodec.Encoding.FORM, charset, b);
             }
         }
         return b.toString();
@@ -0,0 +1,354 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.norconex.commons.lang.xml.XML;
+
+/**
+ * <p>
+ * An immutable list of {@link URLNormalizer} normalizations, decided once
+ * and applied to any number of URLs. Instances are thread-safe and are
+ * meant to be shared (e.g., by all threads of a crawler).
+ * </p>
+ * <p>
+ * Steps are applied in the order they were given, with the same outcome
+ * as invoking the matching {@link URLNormalizer} methods. Adjacent
+ * lower-casing steps are combined when created, so each URL component
+ * is converted to lower case only once.
+ * </p>
+ *
+ * <h3>XML configuration usage:</h3>
+ * <p>
+ * Steps are a comma-separated list of {@link Step} names, matching
+ * {@link URLNormalizer} method names (case-insensitive).
+ * </p>
+ * <pre>
+ * &lt;normalizations&gt;
+ *   removeFragment, lowerCaseSchemeHost, upperCaseEscapeSequence,
+ *   decodeUnreservedCharacters, removeDefaultPort
+ * &lt;/normalizations&gt;
+ * </pre>
+ *
+ * <h3>Usage example:</h3>
+ * <pre>
+ * URLNormalization normalization = new URLNormalization(
+ *         Step.lowerCaseSchemeHost, Step.removeFragment);
+ * String url = normalization.normalize("HTTP://Example.com/a#b");
+ * // url is now "http://example.com/a"
+ * </pre>
+ *
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ * @see URLNormalizer
+ */
+public final class URLNormalization {
+
+    /**
+     * A normalization step, named after the {@link URLNormalizer} method
+     * it invokes.
+     */
+    public enum Step {
+        addDirectoryTrailingSlash(URLNormalizer::addDirectoryTrailingSlash),
+        addDomainTrailingSlash(URLNormalizer::addDomainTrailingSlash),
+        addWWW(URLNormalizer::addWWW),
+        decodeUnreservedCharacters(URLNormalizer::decodeUnreservedCharacters),
+        encodeNonURICharacters(URLNormalizer::encodeNonURICharacters),
+        encodeSpaces(URLNormalizer::encodeSpaces),
+        lowerCase(URLNormalizer::lowerCase),
+        lowerCasePath(URLNormalizer::lowerCasePath),
+        lowerCaseQuery(URLNormalizer::lowerCaseQuery),
+        lowerCaseQueryParameterNames(
+                URLNormalizer::lowerCaseQueryParameterNames),
+        lowerCaseQueryParameterValues(
+                URLNormalizer::lowerCaseQueryParameterValues),
+        lowerCaseSchemeHost(URLNormalizer::lowerCaseSchemeHost),
+        removeDefaultPort(URLNormalizer::removeDefaultPort),
+        removeDirectoryIndex(URLNormalizer::removeDirectoryIndex),
+        removeDotSegments(URLNormalizer::removeDotSegments),
+        removeDuplicateSlashes(URLNormalizer::removeDuplicateSlashes),
+        removeEmptyParameters(URLNormalizer::removeEmptyParameters),
+        removeFragment(URLNormalizer::removeFragment),
+        removeQueryString(URLNormalizer::removeQueryString),
+        removeSessionIds(URLNormalizer::removeSessionIds),
+        removeTrailingHash(URLNormalizer::removeTrailingHash),
+        removeTrailingQuestionMark(URLNormalizer::removeTrailingQuestionMark),
+        removeTrailingSlash(URLNormalizer::removeTrailingSlash),
+        removeWWW(URLNormalizer::removeWWW),
+        replaceIPWithDomainName(URLNormalizer::replaceIPWithDomainName),
+        secureScheme(URLNormalizer::secureScheme),
+        sortQueryParameters(URLNormalizer::sortQueryParameters),
+        unsecureScheme(URLNormalizer::unsecureScheme),
+        upperCaseEscapeSequence(URLNormalizer::upperCaseEscapeSequence);
+
+        private final UnaryOperator<URLNormalizer> operation;
+        Step(UnaryOperator<URLNormalizer> operation) {
+            this.operation = operation;
+        }
+    }
+
+    private static final Set<Step> LOWER_CASE_STEPS =
+            Collections.unmodifiableSet(EnumSet.of(
+                    Step.lowerCase, Step.lowerCaseSchemeHost,
+                    Step.lowerCasePath, Step.lowerCaseQuery,
+                    Step.lowerCaseQueryParameterNames,
+                    Step.lowerCaseQueryParameterValues));
+
+    private final List<Step> steps;
+    private final IHostNameResolver hostNameResolver;
+    private final List<UnaryOperator<URLNormalizer>> operations;
+
+    /**
+     * Creates a normalization made of the given steps, applied in order.
+     * @param steps normalization steps
+     */
+    public URLNormalization(Step... steps) {
+        this(steps == null ? null : Arrays.asList(steps));
+    }
+    /**
+     * Creates a normalization made of the given steps, applied in order.
+     * @param steps normalization steps
+     */
+    public URLNormalization(List<Step> steps) {
+        this(steps, null);
+    }
+    /**
+     * Creates a normalization made of the given steps, applied in order,
+     * using the given resolver for {@link Step#replaceIPWithDomainName}.
+     * @param steps normalization steps
+     * @param hostNameResolver host name resolver (<code>null</code> to
+     *        look up host names with {@link java.net.InetAddress})
+     */
+    public URLNormalization(
+            List<Step> steps, IHostNameResolver hostNameResolver) {
+        super();
+        List<Step> list = new ArrayList<>();
+        if (steps != null) {
+            steps.stream().filter(Objects::nonNull).forEach(list::add);
+        }
+        this.steps = Collections.unmodifiableList(list);
+        this.hostNameResolver = hostNameResolver;
+        this.operations = Collections.unmodifiableList(compile(list));
+    }
+
+    /**
+     * Gets the normalization steps, as they were given.
+     * @return unmodifiable list of steps (never <code>null</code>)
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+    /**
+     * Gets the host name resolver.
+     * @return host name resolver (<code>null</code> if using the default)
+     */
+    public IHostNameResolver getHostNameResolver() {
+        return hostNameResolver;
+    }
+
+    /**
+     * Normalizes a URL.
+     * @param url the URL to normalize
+     * @return normalized URL
+     * @throws IllegalArgumentException if the URL is blank
+     * @throws URLException if the URL is not valid
+     */
+    public String normalize(String url) {
+        URLNormalizer normalizer = new URLNormalizer(url);
+        for (UnaryOperator<URLNormalizer> op : operations) {
+            op.apply(normalizer);
+        }
+        return normalizer.toString();
+    }
+
+    /**
+     * Normalizes a list of URLs, in parallel (using the common fork-join
+     * pool). The returned list has the same order as the given one.
+     * An invalid URL fails the whole batch.
+     * <p>
+     * Steps that may block, like {@link Step#replaceIPWithDomainName}
+     * (which performs DNS lookups), would tie up threads of the JVM-wide
+     * common pool. Use {@link #normalizeAll(List, Executor)} with a
+     * dedicated executor for those.
+     * </p>
+     * @param urls the URLs to normalize
+     * @return normalized URLs
+     * @throws IllegalArgumentException if a URL is blank
+     * @throws URLException if a URL is not valid
+     */
+    public List<String> normalizeAll(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return urls.parallelStream()
+                .map(this::normalize)
+                .collect(Collectors.toList());
+    }
+    /**
+     * Normalizes a list of URLs, in parallel, using the given executor.
+     * The returned list has the same order as the given one.
+     * An invalid URL fails the whole batch. This method waits for all
+     * URLs to be normalized.
+     * @param urls the URLs to normalize
+     * @param executor executor running the normalization of each URL
+     * @return normalized URLs
+     * @throws IllegalArgumentException if a URL is blank
+     * @throws URLException if a URL is not valid
+     */
+    public List<String> normalizeAll(List<String> urls, Executor executor) {
+        Objects.requireNonNull(executor, "'executor' must not be null.");
+        if (urls == null || urls.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<CompletableFuture<String>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> normalize(url), executor));
+        }
+        List<String> normalized = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<String> future : futures) {
+                normalized.add(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return normalized;
+    }
+
+    // Converts steps to operations, merging adjacent lower-casing steps.
+    private List<UnaryOperator<URLNormalizer>> compile(List<Step> steps) {
+        List<UnaryOperator<URLNormalizer>> ops = new ArrayList<>();
+        int i = 0;
+        while (i < steps.size()) {
+            Step step = steps.get(i);
+            if (LOWER_CASE_STEPS.contains(step)) {
+                Set<Step> lowerCases = EnumSet.noneOf(Step.class);
+                while (i < steps.size()
+                        && LOWER_CASE_STEPS.contains(steps.get(i))) {
+                    lowerCases.add(steps.get(i));
+                    i++;
+                }
+                ops.addAll(compileLowerCases(lowerCases));
+            } else if (step == Step.replaceIPWithDomainName
+                    && hostNameResolver != null) {
+                ops.add(n -> n.replaceIPWithDomainName(hostNameResolver));
+                i++;
+            } else {
+                ops.add(step.operation);
+                i++;
+            }
+        }
+        return ops;
+    }
+    // Lower-casing only affects the components each step targets, so
+    // they can be applied in any order. Steps covered by others are dropped.
+    private static List<UnaryOperator<URLNormalizer>> compileLowerCases(
+            Set<Step> lowerCases) {
+        List<UnaryOperator<URLNormalizer>> ops = new ArrayList<>();
+        boolean names = lowerCases.contains(Step.lowerCaseQueryParameterNames);
+        boolean values =
+                lowerCases.contains(Step.lowerCaseQueryParameterValues);
+        if (lowerCases.contains(Step.lowerCase)) {
+            ops.add(Step.lowerCase.operation);
+            // parameter steps also drop empty parameters
+            if (names || values) {
+                ops.add(Step.lowerCaseQueryParameterNames.operation);
+            }
+            return ops;
+        }
+        if (lowerCases.contains(Step.lowerCaseSchemeHost)) {
+            ops.add(Step.lowerCaseSchemeHost.operation);
+        }
+        if (lowerCases.contains(Step.lowerCasePath)) {
+            ops.add(Step.lowerCasePath.operation);
+        }
+        if (lowerCases.contains(Step.lowerCaseQuery)) {
+            ops.add(Step.lowerCaseQuery.operation);
+            // parameter steps also drop empty parameters
+            if (names || values) {
+                ops.add(Step.lowerCaseQueryParameterNames.operation);
+            }
+        } else if (names && values) {
+            ops.add(URLNormalizer::lowerCaseQueryParameters);
+        } else if (names) {
+            ops.add(Step.lowerCaseQueryParameterNames.operation);
+        } else if (values) {
+            ops.add(Step.lowerCaseQueryParameterValues.operation);
+        }
+        return ops;
+    }
+
+    /**
+     * Creates a normalization from the comma-separated step names
+     * found in the given XML node.
+     * @param xml XML to load from
+     * @return URL normalization
+     */
+    public static URLNormalization loadFromXML(XML xml) {
+        if (xml == null) {
+            return new URLNormalization();
+        }
+        return new URLNormalization(xml.getDelimitedEnumList(
+                ".", Step.class, Collections.emptyList()));
+    }
+    /**
+     * Saves the normalization steps as comma-separated names in the
+     * given XML node.
+     * @param xml XML to save to
+     * @param normalization URL normalization
+     */
+    public static void saveToXML(XML xml, URLNormalization normalization) {
+        if (xml != null && normalization != null) {
+            xml.setTextContent(StringUtils.join(normalization.steps, ", "));
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof URLNormalization)) {
+            return false;
+        }
+        URLNormalization that = (URLNormalization) other;
+        return steps.equals(that.steps)
+                && Objects.equals(hostNameResolver, that.hostNameResolver);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(steps, hostNameResolver);
+    }
+    @Override
+    public String toString() {
+        return "URLNormalization" + steps;
+    }
+}
@@ -15,28 +15,25 @@
 package com.norconex.commons.lang.url;
 
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
-import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.net.URLDecoder;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.collections4.bag.TreeBag;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.norconex.commons.lang.EqualsUtil;
-
 /**
  * <p>
  * The general idea behind URL normalization is to make different URLs
@@ -142,6 +139,14 @@ import com.norconex.commons.lang.EqualsUtil;
  * Refer to each methods below for description and examples (or click on a
  * normalization name above).
  * </p>
+ * <p>
+ * <b>Since 2.0.0</b>, the URL is split into its components (scheme, host,
+ * port, path, query string, etc.) only once, on creation. Normalization
+ * methods modify those components directly and the URL string
+ * is only rebuilt when {@link #toString()} (or another conversion
+ * method) is invoked. To apply the same normalizations to many URLs,
+ * consider sharing a {@link URLNormalization} instance.
+ * </p>
  * @author Pascal Essiembre
  */
 public class URLNormalizer implements Serializable {
@@ -151,24 +156,21 @@ public class URLNormalizer implements Serializable {
     private static final Logger LOG =
             LoggerFactory.getLogger(URLNormalizer.class);
 
-    private static final Pattern PATTERN_PERCENT_ENCODED_CHAR =
-            Pattern.compile("(%[0-9a-f]{2})", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PATTERN_PATH_LAST_SEGMENT = Pattern.compile(
-            "(.*/)(index\\.html|index\\.htm|index\\.shtml|index\\.php"
-          + "|default\\.html|default\\.htm|home\\.html|home\\.htm|index\\.php5"
-          + "|index\\.php4|index\\.php3|index\\.cgi|placeholder\\.html"
-          + "|default\\.asp)$", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> DIRECTORY_INDEXES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    "index.html", "index.htm", "index.shtml", "index.php",
+                    "default.html", "default.htm", "home.html", "home.htm",
+                    "index.php5", "index.php4", "index.php3", "index.cgi",
+                    "placeholder.html", "default.asp")));
     private static final Pattern PATTERN_DOMAIN = Pattern.compile(
             "^[a-z0-9]+([\\-\\.]{1}[a-z0-9]+)*\\.[a-z]{2,5}$",
             Pattern.CASE_INSENSITIVE);
-    private static final Pattern PATTERN_SCHEMA = Pattern.compile(
-            "(.*?)(://.*)$",
-            Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern PATTERN_QUERY_STRING =
-            Pattern.compile("(^.*\\?)(.*?)(\\#.*|$)");
+    private static final Pattern PATTERN_PHPSESSID =
+            Pattern.compile("PHPSESSID=[0-9a-zA-Z]*");
+    private static final Pattern PATTERN_ASPSESSIONID =
+            Pattern.compile("ASPSESSIONID[a-zA-Z]{8}=[a-zA-Z]*");
 
-    private String url;
+    private final ParsedURL url;
 
     /**
      * Create a new <code>URLNormalizer</code> instance.
@@ -192,14 +194,27 @@ public class URLNormalizer implements Serializable {
         if (StringUtils.isBlank(url)) {
             throw new IllegalArgumentException("URL argument cannot be null.");
         }
-        this.url = url.trim();
+        String trimmed = url.trim();
+        this.url = ParsedURL.parse(trimmed);
         // Check it is a valid URL.
-        try {
-            new URL(this.url);
-        } catch (MalformedURLException e) {
-            throw new URLException("Invalid URL: " + url, e);
+        if (!isKnownValid(this.url)) {
+            try {
+                new URL(trimmed);
+            } catch (MalformedURLException e) {
+                throw new URLException("Invalid URL: " + url, e);
+            }
         }
     }
+    // Whether an HTTP(S) URL is valid without having java.net.URL parse it.
+    private static boolean isKnownValid(ParsedURL u) {
+        if (!isHttp(u) && !isHttps(u)) {
+            return false;
+        }
+        String port = u.getPort();
+        return port == null || port.length() < 6
+                && StringUtils.isNumeric(port)
+                && (port.isEmpty() || Integer.parseInt(port) <= 65535);
+    }
 
     /**
      * <p>Converts the entire URL to lower case, including scheme, host name,
@@ -214,7 +229,14 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer lowerCase() {
-        url = StringUtils.lowerCase(url, Locale.FRENCH);
+        UnaryOperator<String> lc = s -> StringUtils.lowerCase(s, Locale.FRENCH);
+        url.setScheme(lc.apply(url.getScheme()));
+        url.setUserInfo(lc.apply(url.getUserInfo()));
+        url.setHost(lc.apply(url.getHost()));
+        url.setPort(lc.apply(url.getPort()));
+        url.setPath(lc.apply(url.getPath()));
+        url.setQuery(lc.apply(url.getQuery()));
+        url.setFragment(lc.apply(url.getFragment()));
         return this;
     }
     /**
@@ -225,13 +247,8 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer lowerCaseSchemeHost() {
-        URL u = toURL();
-        url = Pattern.compile(u.getProtocol(),
-                Pattern.CASE_INSENSITIVE).matcher(url).replaceFirst(
-                        u.getProtocol().toLowerCase());
-        url = Pattern.compile(u.getHost(),
-                Pattern.CASE_INSENSITIVE).matcher(url).replaceFirst(
-                        u.getHost().toLowerCase());
+        url.setScheme(StringUtils.lowerCase(url.getScheme(), Locale.ENGLISH));
+        url.setHost(StringUtils.lowerCase(url.getHost(), Locale.ENGLISH));
         return this;
     }
     /**
@@ -244,13 +261,7 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer lowerCasePath() {
-        String urlRoot = HttpURL.getRoot(url);
-        String path = toURL().getPath();
-        String lcPath = StringUtils.lowerCase(path, Locale.FRENCH);
-
-        String urlRootAndPath = urlRoot + path;
-        String urlRootAndLcPath = urlRoot + lcPath;
-        url = StringUtils.replaceOnce(url, urlRootAndPath, urlRootAndLcPath);
+        url.setPath(StringUtils.lowerCase(url.getPath(), Locale.FRENCH));
         return this;
     }
     /**
@@ -264,12 +275,8 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer lowerCaseQuery() {
-        Matcher m = PATTERN_QUERY_STRING.matcher(url);
-        if (m.find()) {
-            String baseURL = m.group(1);
-            String query = m.group(2);
-            String frag = m.group(3);
-            url = baseURL + StringUtils.lowerCase(query, Locale.FRENCH) + frag;
+        if (url.hasQuery()) {
+            url.setQuery(StringUtils.lowerCase(url.getQuery(), Locale.FRENCH));
         }
         return this;
     }
@@ -284,21 +291,15 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer lowerCaseQueryParameterNames() {
-        Matcher m = PATTERN_QUERY_STRING.matcher(url);
-        if (m.find()) {
-            String baseURL = m.group(1);
-            String query = m.group(2);
-            String frag = m.group(3);
-            String[] params = StringUtils.split(query, '&');
-            for (int i = 0; i < params.length; i++) {
-                String param = params[i];
-                String eq = param.contains("=") ? "=" : "";
-                String name = StringUtils.substringBefore(param, "=");
-                String value = StringUtils.substringAfter(param, "=");
-                params[i] = StringUtils.lowerCase(
-                        name, Locale.FRENCH) + eq + value;
-            }
-            url = baseURL + StringUtils.join(params, "&") + frag;
+        if (url.hasQuery()) {
+            url.getQueryParams().replaceAll(param -> {
+                int eq = param.indexOf('=');
+                if (eq == -1) {
+                    return StringUtils.lowerCase(param, Locale.FRENCH);
+                }
+                return StringUtils.lowerCase(param.substring(0, eq),
+                        Locale.FRENCH) + param.substring(eq);
+            });
         }
         return this;
     }
@@ -313,21 +314,24 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer lowerCaseQueryParameterValues() {
-        Matcher m = PATTERN_QUERY_STRING.matcher(url);
-        if (m.find()) {
-            String baseURL = m.group(1);
-            String query = m.group(2);
-            String frag = m.group(3);
-            String[] params = StringUtils.split(query, '&');
-            for (int i = 0; i < params.length; i++) {
-                String param = params[i];
-                String eq = param.contains("=") ? "=" : "";
-                String name = StringUtils.substringBefore(param, "=");
-                String value = StringUtils.substringAfter(param, "=");
-                params[i] = name + eq + StringUtils.lowerCase(
-                        value, Locale.FRENCH);
-            }
-            url = baseURL + StringUtils.join(params, "&") + frag;
+        if (url.hasQuery()) {
+            url.getQueryParams().replaceAll(param -> {
+                int eq = param.indexOf('=');
+                if (eq == -1) {
+                    return param;
+                }
+                return param.substring(0, eq + 1) + StringUtils.lowerCase(
+                        param.substring(eq + 1), Locale.FRENCH);
+            });
+        }
+        return this;
+    }
+    // Same as invoking both lowerCaseQueryParameterNames() and
+    // lowerCaseQueryParameterValues(), in one pass.
+    /*default*/ URLNormalizer lowerCaseQueryParameters() {
+        if (url.hasQuery()) {
+            url.getQueryParams().replaceAll(
+                    param -> StringUtils.lowerCase(param, Locale.FRENCH));
         }
         return this;
     }
@@ -339,14 +343,7 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer upperCaseEscapeSequence() {
-        if (url.contains("%")) {
-            StringBuffer sb = new StringBuffer();
-            Matcher m = PATTERN_PERCENT_ENCODED_CHAR.matcher(url);
-            while (m.find()) {
-                m.appendReplacement(sb, m.group(1).toUpperCase());
-            }
-            url = m.appendTail(sb).toString();
-        }
+        applyToEncodedParts(PercentCodec::upperCaseEscapes);
         return this;
     }
     /**
@@ -356,23 +353,7 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer decodeUnreservedCharacters() {
-        if (url.contains("%")) {
-            StringBuffer sb = new StringBuffer();
-            Matcher m = PATTERN_PERCENT_ENCODED_CHAR.matcher(url);
-            try {
-                while (m.find()) {
-                    String enc = m.group(1).toUpperCase();
-                    if (isEncodedUnreservedCharacter(enc)) {
-                        m.appendReplacement(sb, URLDecoder.decode(
-                                enc, StandardCharsets.UTF_8.toString()));
-                    }
-                }
-            } catch (UnsupportedEncodingException e) {
-                LOG.debug("UTF-8 is not supported by your system. "
-                        + "URL will remain unchanged:" + url, e);
-            }
-            url = m.appendTail(sb).toString();
-        }
+        applyToEncodedParts(PercentCodec::decodeUnreserved);
         return this;
     }
 
@@ -393,7 +374,8 @@ public class URLNormalizer implements Serializable {
      * @since 1.8.0
      */
     public URLNormalizer encodeNonURICharacters() {
-        url = toURI().toASCIIString();
+        // HttpURL encodes path, query string and fragment with PercentCodec
+        replaceWith(toURI().toASCIIString());
         return this;
     }
     /**
@@ -411,15 +393,11 @@ public class URLNormalizer implements Serializable {
      * @since 1.8.0
      */
     public URLNormalizer encodeSpaces() {
-        String path = StringUtils.substringBefore(url, "?");
-        path = StringUtils.replace(path, " ", "%20");
-        String qs = StringUtils.substringAfter(url, "?");
-        if (StringUtils.isNotBlank(qs)) {
-            qs = StringUtils.replace(qs, " ", "+");
-            url = path + "?" + qs;
-        } else {
-            url = path;
+        url.setPath(StringUtils.replace(url.getPath(), " ", "%20"));
+        if (url.hasQuery()) {
+            url.setQuery(StringUtils.replace(url.getQuery(), " ", "+"));
         }
+        url.setFragment(StringUtils.replace(url.getFragment(), " ", "%20"));
         return this;
     }
 
@@ -430,13 +408,12 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeDefaultPort() {
-        URL u = toURL();
-        if ("http".equalsIgnoreCase(u.getProtocol())
-                && u.getPort() == HttpURL.DEFAULT_HTTP_PORT) {
-            url = url.replaceFirst(":" + HttpURL.DEFAULT_HTTP_PORT, "");
-        } else if ("https".equalsIgnoreCase(u.getProtocol())
-                && u.getPort() == HttpURL.DEFAULT_HTTPS_PORT) {
-            url = url.replaceFirst(":" + HttpURL.DEFAULT_HTTPS_PORT, "");
+        String port = url.getPort();
+        if (isHttp(url) && Integer.toString(
+                HttpURL.DEFAULT_HTTP_PORT).equals(port)
+                || isHttps(url) && Integer.toString(
+                        HttpURL.DEFAULT_HTTPS_PORT).equals(port)) {
+            url.setPort(null);
         }
         return this;
     }
@@ -457,16 +434,10 @@ public class URLNormalizer implements Serializable {
      * @since 1.11.0 (renamed from "addTrailingSlash")
      */
     public URLNormalizer addDirectoryTrailingSlash() {
-        String urlRoot = HttpURL.getRoot(url);
-        String path = toURL().getPath();
-        String urlRootAndPath = urlRoot + path;
-
+        String path = url.getPath();
         String name = StringUtils.substringAfterLast(path, "/");
         if (StringUtils.isNotBlank(name) && !name.contains(".")) {
-            String newPath = path + "/";
-            String newUrlRootAndPath = urlRoot + newPath;
-            url = StringUtils.replaceOnce(
-                    url, urlRootAndPath, newUrlRootAndPath);
+            url.setPath(path + "/");
         }
         return this;
     }
@@ -483,14 +454,11 @@ public class URLNormalizer implements Serializable {
      * @since 1.12.0
      */
     public URLNormalizer addDomainTrailingSlash() {
-        String urlRoot = HttpURL.getRoot(url);
-        String path = toURL().getPath();
-        if (StringUtils.isNotBlank(path)) {
+        if (StringUtils.isNotBlank(url.getPath())) {
             // there is a path so do nothing
             return this;
         }
-        String urlRootAndPath = urlRoot + "/";
-        url = StringUtils.replaceOnce(url, urlRoot, urlRootAndPath);
+        url.setPath("/");
         return this;
     }
 
@@ -526,15 +494,9 @@ public class URLNormalizer implements Serializable {
      * @since 1.11.0
      */
     public URLNormalizer removeTrailingSlash() {
-        String urlRoot = HttpURL.getRoot(url);
-        String path = toURL().getPath();
-        String urlRootAndPath = urlRoot + path;
-
-        if (StringUtils.endsWith(path, "/")) {
-            String newPath = StringUtils.removeEnd(path, "/");
-            String newUrlRootAndPath = urlRoot + newPath;
-            url = StringUtils.replaceOnce(
-                    url, urlRootAndPath, newUrlRootAndPath);
+        String path = url.getPath();
+        if (path.endsWith("/")) {
+            url.setPath(path.substring(0, path.length() - 1));
         }
         return this;
     }
@@ -557,7 +519,7 @@ public class URLNormalizer implements Serializable {
      * @see URI#normalize()
      */
     public URLNormalizer removeDotSegments() {
-        String path = toURL().getPath().trim();
+        String path = url.getPath().trim();
 
         // (Bulleted comments are from RFC3986, section-5.2.4)
 
@@ -626,7 +588,7 @@ public class URLNormalizer implements Serializable {
 
         // 3.  Finally, the output buffer is returned as the result of
         //     remove_dot_segments.
-        url = StringUtils.replaceOnce(url, path, out.toString());
+        url.setPath(out.toString());
         return this;
     }
     private static boolean equalStrings(StringBuilder b, String str) {
@@ -679,10 +641,11 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeDirectoryIndex() {
-        String path = toURL().getPath();
-        if (PATTERN_PATH_LAST_SEGMENT.matcher(path).matches()) {
-            url = StringUtils.replaceOnce(
-                   url, path, StringUtils.substringBeforeLast(path, "/") + "/");
+        String path = url.getPath();
+        int slash = path.lastIndexOf('/');
+        if (slash != -1 && DIRECTORY_INDEXES.contains(
+                path.substring(slash + 1).toLowerCase(Locale.ENGLISH))) {
+            url.setPath(path.substring(0, slash + 1));
         }
         return this;
     }
@@ -693,7 +656,7 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeFragment() {
-        url = url.replaceFirst("(.*?)(#.*)", "$1");
+        url.setFragment(null);
         return this;
     }
     /**
@@ -706,10 +669,7 @@ public class URLNormalizer implements Serializable {
      * @since 1.15.1
      */
     public URLNormalizer removeQueryString() {
-        Matcher m = PATTERN_QUERY_STRING.matcher(url);
-        if (m.find()) {
-            url = StringUtils.removeEnd(m.group(1), "?") + m.group(3);
-        }
+        url.setQuery(null);
         return this;
     }
     /**
@@ -720,16 +680,30 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer replaceIPWithDomainName() {
-        URL u = toURL();
-        if (!PATTERN_DOMAIN.matcher(u.getHost()).matches()) {
+        return replaceIPWithDomainName(
+                CachedHostNameResolver.INET_ADDRESS_RESOLVER);
+    }
+    /**
+     * <p>Replaces IP address with domain name, obtained from the given
+     * resolver. Use a {@link CachedHostNameResolver} to avoid looking up
+     * the same IP address repeatedly.</p>
+     * <code>http://208.77.188.166/ &rarr; http://www.example.com/</code>
+     * @param resolver host name resolver
+     * @return this instance
+     * @since 2.0.0
+     */
+    public URLNormalizer replaceIPWithDomainName(IHostNameResolver resolver) {
+        String ip = url.getHost();
+        if (StringUtils.isNotEmpty(ip)
+                && !PATTERN_DOMAIN.matcher(ip).matches()) {
             try {
-                InetAddress addr = InetAddress.getByName(u.getHost());
-                String host = addr.getHostName();
-                if (!u.getHost().equalsIgnoreCase(host)) {
-                    url = url.replaceFirst(u.getHost(), host);
+                String host = resolver.resolveHostName(ip);
+                if (StringUtils.isNotBlank(host)
+                        && !ip.equalsIgnoreCase(host)) {
+                    url.setHost(host);
                 }
             } catch (UnknownHostException e) {
-                LOG.debug("Cannot resolve IP to host for :" + u.getHost(), e);
+                LOG.debug("Cannot resolve IP to host for :" + ip, e);
             }
         }
         return this;
@@ -740,12 +714,8 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer unsecureScheme() {
-        Matcher m = PATTERN_SCHEMA.matcher(url);
-        if (m.find()) {
-            String schema = m.group(1);
-            if ("https".equalsIgnoreCase(schema)) {
-                url = m.replaceFirst(StringUtils.stripEnd(schema, "Ss") + "$2");
-            }
+        if (isHttps(url)) {
+            url.setScheme(StringUtils.stripEnd(url.getScheme(), "Ss"));
         }
         return this;
     }
@@ -755,12 +725,8 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer secureScheme() {
-        Matcher m = PATTERN_SCHEMA.matcher(url);
-        if (m.find()) {
-            String schema = m.group(1);
-            if ("http".equalsIgnoreCase(schema)) {
-                url = m.replaceFirst(schema + "s$2");
-            }
+        if (isHttp(url)) {
+            url.setScheme(url.getScheme() + "s");
         }
         return this;
     }
@@ -772,12 +738,18 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeDuplicateSlashes() {
-        String urlRoot = HttpURL.getRoot(url);
-        String path = toURL().getPath();
-        String urlRootAndPath = urlRoot + path;
-        String newPath = path.replaceAll("/{2,}", "/");
-        String newUrlRootAndPath = urlRoot + newPath;
-        url = StringUtils.replaceOnce(url, urlRootAndPath, newUrlRootAndPath);
+        String path = url.getPath();
+        if (!path.contains("//")) {
+            return this;
+        }
+        StringBuilder b = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char ch = path.charAt(i);
+            if (ch != '/' || i == 0 || path.charAt(i - 1) != '/') {
+                b.append(ch);
+            }
+        }
+        url.setPath(b.toString());
         return this;
     }
     /**
@@ -786,9 +758,7 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeWWW() {
-        String host = toURL().getHost();
-        String newHost = StringUtils.removeStartIgnoreCase(host, "www.");
-        url = StringUtils.replaceOnce(url, host, newHost);
+        url.setHost(StringUtils.removeStartIgnoreCase(url.getHost(), "www."));
         return this;
     }
     /**
@@ -797,9 +767,10 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer addWWW() {
-        String host = toURL().getHost();
-        if (!host.toLowerCase().startsWith("www.")) {
-            url = StringUtils.replaceOnce(url, host, "www." + host);
+        String host = url.getHost();
+        if (StringUtils.isNotEmpty(host)
+                && !StringUtils.startsWithIgnoreCase(host, "www.")) {
+            url.setHost("www." + host);
         }
         return this;
     }
@@ -811,30 +782,9 @@ public class URLNormalizer implements Serializable {
      */
     public URLNormalizer sortQueryParameters() {
         // Does it have query parameters?
-        if (!url.contains("?")) {
-            return this;
-        }
-        // It does, so proceed
-        TreeBag<String> keyValues = new TreeBag<>();
-        String queryString = StringUtils.substringAfter(url, "?");
-
-        // extract and remove any fragments
-        String fragment = StringUtils.substringAfter(queryString, "#");
-        if (StringUtils.isNotBlank(fragment)) {
-            fragment = "#" + fragment;
-        }
-        queryString = StringUtils.substringBefore(queryString, "#");
-
-        String[] params = StringUtils.split(queryString, '&');
-        for (String param : params) {
-            keyValues.add(param);
+        if (url.hasQuery()) {
+            Collections.sort(url.getQueryParams());
         }
-        String sortedQueryString = StringUtils.join(keyValues, '&');
-        if (StringUtils.isNotBlank(sortedQueryString)) {
-            url = StringUtils.substringBefore(
-                    url, "?") + "?" + sortedQueryString + fragment;
-        }
-
         return this;
     }
     /**
@@ -845,29 +795,26 @@ public class URLNormalizer implements Serializable {
      */
     public URLNormalizer removeEmptyParameters() {
         // Does it have query parameters?
-        if (!url.contains("?")) {
+        if (!url.hasQuery()) {
             return this;
         }
         // It does, so proceed
-        List<String> keyValues = new ArrayList<>();
-        String queryString = StringUtils.substringAfter(url, "?");
-        String[] params = StringUtils.split(queryString, '&');
-        for (String param : params) {
-            if (param.contains("=")
-                    && StringUtils.isNotBlank(
-                            StringUtils.substringAfter(param, "="))
-                    && StringUtils.isNotBlank(
-                            StringUtils.substringBefore(param, "="))) {
-                keyValues.add(param);
-            }
-        }
-        String cleanQueryString = StringUtils.join(keyValues, '&');
-        if (StringUtils.isNotBlank(cleanQueryString)) {
-            url = StringUtils.substringBefore(
-                    url, "?") + "?" + cleanQueryString;
+        List<String> params = url.getQueryParams();
+        boolean hasNonEmpty = params.stream().anyMatch(
+                URLNormalizer::isNonEmptyParameter);
+        // like before, do nothing if they are all empty
+        if (hasNonEmpty) {
+            params.removeIf(p -> !isNonEmptyParameter(p));
         }
         return this;
     }
+    private static boolean isNonEmptyParameter(String param) {
+        return param.contains("=")
+                && StringUtils.isNotBlank(
+                        StringUtils.substringAfter(param, "="))
+                && StringUtils.isNotBlank(
+                        StringUtils.substringBefore(param, "="));
+    }
     /**
      * <p>Removes trailing question mark ("?").</p>
      * <code>http://www.example.com/display? &rarr;
@@ -875,8 +822,9 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeTrailingQuestionMark() {
-        if (url.endsWith("?") && StringUtils.countMatches(url, "?") == 1) {
-            url = StringUtils.removeEnd(url, "?");
+        if (url.getFragment() == null
+                && StringUtils.isEmpty(url.getQuery())) {
+            url.setQuery(null);
         }
         return this;
     }
@@ -890,25 +838,70 @@ public class URLNormalizer implements Serializable {
      * @return this instance
      */
     public URLNormalizer removeSessionIds() {
-        if (StringUtils.containsIgnoreCase(url, ";jsessionid=")) {
-            url = url.replaceFirst(
-                    "(;jsessionid=([A-F0-9]+)((\\.\\w+)*))", "");
-        } else {
-            String u = StringUtils.substringBefore(url, "?");
-            String q = StringUtils.substringAfter(url, "?");
-            if (StringUtils.containsIgnoreCase(url, "PHPSESSID=")) {
-                q = q.replaceFirst("(&|^)(PHPSESSID=[0-9a-zA-Z]*)", "");
-            } else if (StringUtils.containsIgnoreCase(url, "ASPSESSIONID")) {
-                q = q.replaceFirst(
-                        "(&|^)(ASPSESSIONID[a-zA-Z]{8}=[a-zA-Z]*)", "");
+        if (StringUtils.containsIgnoreCase(url.getPath(), ";jsessionid=")) {
+            url.setPath(removeJSessionId(url.getPath()));
+        } else if (StringUtils.containsIgnoreCase(
+                url.getHost(), ";jsessionid=")) {
+            url.setHost(removeJSessionId(url.getHost()));
+        } else if (url.hasQuery()) {
+            // only split into parameters when there is one to remove,
+            // so other queries are kept as is
+            String query = url.getQuery();
+            if (StringUtils.containsIgnoreCase(query, "PHPSESSID=")) {
+                removeFirstParam(url.getQueryParams(), PATTERN_PHPSESSID);
+            } else if (StringUtils.containsIgnoreCase(query, "ASPSESSIONID")) {
+                removeFirstParam(url.getQueryParams(), PATTERN_ASPSESSIONID);
             }
-            if (!StringUtils.isBlank(q)) {
-                u += "?" + StringUtils.removeStart(q, "&");
+            if (StringUtils.isBlank(url.getQuery())) {
+                url.setQuery(null);
             }
-            url = u;
         }
         return this;
     }
+    // ;jsessionid=([A-F0-9]+)((\.\w+)*)
+    private static String removeJSessionId(String str) {
+        int start = str.indexOf(";jsessionid=");
+        if (start == -1) {
+            return str;
+        }
+        int i = start + ";jsessionid=".length();
+        int idStart = i;
+        while (i < str.length() && isUpperHexDigit(str.charAt(i))) {
+            i++;
+        }
+        if (i == idStart) {
+            return str;
+        }
+        int end = i;
+        while (end < str.length() && str.charAt(end) == '.') {
+            int word = end + 1;
+            while (word < str.length() && isWordChar(str.charAt(word))) {
+                word++;
+            }
+            if (word == end + 1) {
+                break;
+            }
+            end = word;
+        }
+        return str.substring(0, start) + str.substring(end);
+    }
+    // Removes the session id found at the start of a parameter,
+    // keeping what follows it, if anything.
+    private static void removeFirstParam(
+            List<String> params, Pattern sessionId) {
+        for (int i = 0; i < params.size(); i++) {
+            Matcher m = sessionId.matcher(params.get(i));
+            if (m.lookingAt()) {
+                String rest = params.get(i).substring(m.end());
+                if (rest.isEmpty()) {
+                    params.remove(i);
+                } else {
+                    params.set(i, rest);
+                }
+                return;
+            }
+        }
+    }
 
     /**
      * <p>Removes trailing hash character ("#").</p>
@@ -922,8 +915,8 @@ public class URLNormalizer implements Serializable {
      * @since 1.13.0
      */
     public URLNormalizer removeTrailingHash() {
-        if (url.endsWith("#") && StringUtils.countMatches(url, "#") == 1) {
-            url = StringUtils.removeEnd(url, "#");
+        if ("".equals(url.getFragment())) {
+            url.setFragment(null);
         }
         return this;
     }
@@ -934,46 +927,71 @@ public class URLNormalizer implements Serializable {
      */
     @Override
     public String toString() {
-        return url;
+        return url.toString();
     }
     /**
      * Returns the normalized URL as {@link URI}.
      * @return URI
      */
     public URI toURI() {
-        if (StringUtils.isBlank(url)) {
-            return null;
-        }
-        return HttpURL.toURI(url);
+        return HttpURL.toURI(toString());
     }
     /**
      * Returns the normalized URL as {@link URL}.
      * @return URI
      */
     public URL toURL() {
-        if (StringUtils.isBlank(url)) {
-            return null;
-        }
+        String u = toString();
         try {
-            return new URL(url);
+            return new URL(u);
         } catch (MalformedURLException e) {
             LOG.info("URL does not appear to be valid and cannot be parsed:"
-                    + url, e);
+                    + u, e);
             return null;
         }
     }
 
-    private boolean isEncodedUnreservedCharacter(String enc) {
-        // is ALPHA (a-zA-Z)
-        if ((enc.compareTo("%41") >= 0 && enc.compareTo("%5A") <= 0)
-         || (enc.compareTo("%61") >= 0 && enc.compareTo("%7A") <= 0)) {
-            return true;
+    // Replaces all components with the ones of the given URL.
+    private void replaceWith(String newURL) {
+        ParsedURL u = ParsedURL.parse(newURL);
+        url.setScheme(u.getScheme());
+        url.setUserInfo(u.getUserInfo());
+        url.setHost(u.getHost());
+        url.setPort(u.getPort());
+        url.setPath(u.getPath());
+        url.setQuery(u.getQuery());
+        url.setFragment(u.getFragment());
+    }
+
+    // Applies the operation to components that can hold
+    // percent-encoded characters.
+    private void applyToEncodedParts(UnaryOperator<String> op) {
+        if (url.getUserInfo() != null) {
+            url.setUserInfo(op.apply(url.getUserInfo()));
         }
-        // is Digit (0-9)
-        if (enc.compareTo("%30") >= 0 && enc.compareTo("%39") <= 0) {
-            return true;
+        url.setHost(op.apply(url.getHost()));
+        url.setPath(op.apply(url.getPath()));
+        if (url.hasQuery()) {
+            // escapes never span "&": keep the query (and any empty
+            // parameters) as is
+            url.setQuery(op.apply(url.getQuery()));
         }
-        // is hyphen, period, underscore, tilde
-        return EqualsUtil.equalsAny(enc, "%2D", "%2E", "%5F", "%7E");
+        if (url.getFragment() != null) {
+            url.setFragment(op.apply(url.getFragment()));
+        }
+    }
+
+    private static boolean isUpperHexDigit(char ch) {
+        return ch >= '0' && ch <= '9' || ch >= 'A' && ch <= 'F';
+    }
+    private static boolean isWordChar(char ch) {
+        return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z'
+                || ch >= '0' && ch <= '9' || ch == '_';
+    }
+    private static boolean isHttp(ParsedURL u) {
+        return HttpURL.PROTOCOL_HTTP.equalsIgnoreCase(u.getScheme());
+    }
+    private static boolean isHttps(ParsedURL u) {
+        return HttpURL.PROTOCOL_HTTPS.equalsIgnoreCase(u.getScheme());
     }
 }
@@ -0,0 +1,266 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * <p>
+ * Resolves relative URLs against a base URL, following
+ * <a href="https://tools.ietf.org/html/rfc3986#section-5.2">RFC 3986</a>
+ * (strict parsing). The base URL is parsed once, when this resolver is
+ * created, so it is cheap to resolve all links found on a page.
+ * Obtain an instance with {@link HttpURL#resolver(String)}.
+ * </p>
+ * <p>
+ * Contrary to {@link HttpURL#toAbsolute(String, String)}, dot-segments
+ * ("." and "..") are removed from resolved paths. No other change is made
+ * (e.g., no encoding or case conversion).
+ * </p>
+ * <p>
+ * This class is immutable and thread-safe.
+ * </p>
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public final class URLResolver {
+
+    private final String baseURL;
+    private final String scheme;
+    // base URL parts, each one starting with the previous one
+    private final String root;
+    private final String directory;
+    private final String withoutQuery;
+    private final String withoutFragment;
+
+    /*default*/ URLResolver(String baseURL) {
+        super();
+        this.baseURL = baseURL;
+        ParsedURL base = ParsedURL.parse(StringUtils.defaultString(baseURL));
+        String path = base.getPath();
+        String query = base.getQuery();
+        base.setPath("");
+        base.setQuery(null);
+        base.setFragment(null);
+        this.scheme = base.getScheme();
+        this.root = base.toString();
+
+        // Merge with the raw base path, up to its last "/", and only then
+        // remove dot-segments (RFC 3986, section 5.2.3).
+        StringBuilder b = new StringBuilder(root);
+        int lastSlash = path.lastIndexOf('/');
+        if (lastSlash != -1) {
+            removeDotSegments(
+                    path.substring(0, lastSlash + 1), b, root.length());
+        }
+        if (b.length() > root.length()) {
+            this.directory = b.toString();
+        } else if (base.isHierarchical()) {
+            this.directory = root + "/";
+        } else {
+            this.directory = root;
+        }
+
+        this.withoutQuery = root + path;
+        this.withoutFragment =
+                query == null ? withoutQuery : withoutQuery + "?" + query;
+    }
+
+    /**
+     * Gets the base URL relative URLs are resolved against.
+     * @return base URL
+     */
+    public String getBaseURL() {
+        return baseURL;
+    }
+
+    /**
+     * Resolves a URL reference against the base URL. Absolute URLs
+     * are returned as they are, minus dot-segments.
+     * @param relativeURL the URL to resolve
+     * @return absolute URL, or <code>null</code> if the supplied URL
+     *         is <code>null</code>
+     */
+    public String resolve(String relativeURL) {
+        if (relativeURL == null) {
+            return null;
+        }
+        String rel = relativeURL;
+        int len = rel.length();
+        int end = len;
+        for (int i = 0; i < len; i++) {
+            char ch = rel.charAt(i);
+            if (ch == '?' || ch == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        // Has a scheme: absolute
+        if (ParsedURL.schemeEnd(rel, end) != -1) {
+            if (!hasDotSegments(rel, 0, end)) {
+                return rel;
+            }
+            ParsedURL url = ParsedURL.parse(rel);
+            StringBuilder b = new StringBuilder(len);
+            removeDotSegments(url.getPath(), b, 0);
+            url.setPath(b.toString());
+            return url.toString();
+        }
+
+        // Relative to scheme
+        if (rel.startsWith("//")) {
+            int pathStart = rel.indexOf('/', 2);
+            if (pathStart == -1 || pathStart > end) {
+                pathStart = end;
+            }
+            StringBuilder b = new StringBuilder(len + 8);
+            if (scheme != null) {
+                b.append(scheme).append(':');
+            }
+            b.append(rel, 0, pathStart);
+            appendPath(rel, pathStart, end, b);
+            return b.append(rel, end, len).toString();
+        }
+
+        // Same document (empty path)
+        if (end == 0) {
+            if (len == 0 || rel.charAt(0) == '#') {
+                return withoutFragment + rel;
+            }
+            return withoutQuery + rel;
+        }
+
+        // Relative to root or directory
+        StringBuilder b;
+        if (rel.charAt(0) == '/') {
+            b = new StringBuilder(root.length() + len);
+            b.append(root);
+            appendPath(rel, 0, end, b);
+        } else if (!hasDotSegments(rel, 0, end)) {
+            b = new StringBuilder(directory.length() + len);
+            b.append(directory).append(rel, 0, end);
+        } else {
+            b = new StringBuilder(directory.length() + len);
+            b.append(root);
+            removeDotSegments(new StringBuilder(
+                    directory.length() - root.length() + end)
+                    .append(directory, root.length(), directory.length())
+                    .append(rel, 0, end), b, root.length());
+        }
+        return b.append(rel, end, len).toString();
+    }
+
+    private static void appendPath(
+            CharSequence path, int start, int end, StringBuilder out) {
+        if (hasDotSegments(path, start, end)) {
+            removeDotSegments(path.subSequence(start, end), out, out.length());
+        } else {
+            out.append(path, start, end);
+        }
+    }
+
+    // Whether any segment is "." or ".."
+    private static boolean hasDotSegments(
+            CharSequence path, int start, int end) {
+        int segStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || path.charAt(i) == '/') {
+                int segLen = i - segStart;
+                if (segLen == 1 && path.charAt(segStart) == '.'
+                        || segLen == 2 && path.charAt(segStart) == '.'
+                                && path.charAt(segStart + 1) == '.') {
+                    return true;
+                }
+                segStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes dot-segments from a path as per RFC 3986 (section 5.2.4),
+     * appending the result to a string builder.
+     * @param path the path
+     * @param out where to append the resulting path
+     * @param floor position in the string builder segments can't be
+     *        removed before
+     */
+    /*default*/ static void removeDotSegments(
+            CharSequence path, StringBuilder out, int floor) {
+        int len = path.length();
+        int i = 0;
+        while (i < len) {
+            int remaining = len - i;
+            // A. remove prefix "../" or "./"
+            if (regionMatches(path, i, "../")) {
+                i += 3;
+            } else if (regionMatches(path, i, "./")) {
+                i += 2;
+            // B. replace prefix "/./" or "/." (complete segment) with "/"
+            } else if (regionMatches(path, i, "/./")) {
+                i += 2;
+            } else if (remaining == 2 && regionMatches(path, i, "/.")) {
+                out.append('/');
+                i = len;
+            // C. replace prefix "/../" or "/.." (complete segment) with "/"
+            //    and remove last output segment
+            } else if (regionMatches(path, i, "/../")) {
+                i += 3;
+                removeLastSegment(out, floor);
+            } else if (remaining == 3 && regionMatches(path, i, "/..")) {
+                removeLastSegment(out, floor);
+                out.append('/');
+                i = len;
+            // D. remove "." or ".." when alone
+            } else if (remaining == 1 && path.charAt(i) == '.'
+                    || remaining == 2 && regionMatches(path, i, "..")) {
+                i = len;
+            // E. move first segment (with its initial "/", if any) to output
+            } else {
+                int next = i + 1;
+                while (next < len && path.charAt(next) != '/') {
+                    next++;
+                }
+                out.append(path, i, next);
+                i = next;
+            }
+        }
+    }
+    private static boolean regionMatches(
+            CharSequence str, int offset, String prefix) {
+        if (str.length() - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (str.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static void removeLastSegment(StringBuilder out, int floor) {
+        int i = out.length() - 1;
+        while (i >= floor && out.charAt(i) != '/') {
+            i--;
+        }
+        out.setLength(Math.max(floor, i));
+    }
+
+    @Override
+    public String toString() {
+        return "URLResolver[" + baseURL + "]";
+    }
+}
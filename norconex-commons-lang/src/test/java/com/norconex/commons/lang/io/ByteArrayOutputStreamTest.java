@@ -77,4 +77,37 @@ public class ByteArrayOutputStreamTest {
         out.close();
     }
 
+    @Test
+    public void testChunkPool() throws IOException {
+        ByteChunkPool pool = new ByteChunkPool(4, 1, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pool);
+        Assertions.assertEquals(1, pool.getMisses());
+        out.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+        Assertions.assertEquals(3, pool.getMisses());
+        Assertions.assertEquals("0123456789", out.toString());
+
+        // 3 chunks released: one kept for the thread, one shared,
+        // one dropped
+        out.reset();
+        Assertions.assertEquals(1, pool.getHits());
+        Assertions.assertEquals(0, out.size());
+        Assertions.assertEquals(1, pool.getSharedChunks());
+        out.write("ABCDEF".getBytes(StandardCharsets.US_ASCII));
+        Assertions.assertEquals(2, pool.getHits());
+        Assertions.assertEquals(0, pool.getSharedChunks());
+        Assertions.assertEquals("ABCDEF", out.toString());
+        Assertions.assertEquals('F', (char) out.getByte(5));
+        out.write(0xFF);
+        Assertions.assertEquals(0xFF, out.getByte(6));
+
+        // closing releases chunks, and the stream remains usable
+        out.close();
+        Assertions.assertEquals(0, out.size());
+        Assertions.assertEquals(1, pool.getSharedChunks());
+        out.write('X');
+        Assertions.assertEquals("X", out.toString());
+        Assertions.assertEquals(3, pool.getHits());
+        Assertions.assertEquals(3, pool.getMisses());
+        out.close();
+    }
 }
@@ -15,10 +15,22 @@
 package com.norconex.commons.lang.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.input.NullInputStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -236,6 +248,339 @@ public class CachedInputStreamTest {
         }
     }
 
+    @Test
+    public void testMarkingHighByteValues() throws IOException {
+        byte[] content = { (byte) 0xFF, (byte) 0x80, 5 };
+        CachedStreamFactory factory = new CachedStreamFactory(1000, 1000);
+        CachedInputStream cache =
+                factory.newInputStream(new ByteArrayInputStream(content));
+        cache.mark(0);
+        Assertions.assertEquals(0xFF, cache.read());
+        Assertions.assertEquals(0x80, cache.read());
+        cache.reset();
+        Assertions.assertEquals(0xFF, cache.read());
+        Assertions.assertEquals(0x80, cache.read());
+        Assertions.assertEquals(5, cache.read());
+        Assertions.assertEquals(-1, cache.read());
+        cache.dispose();
+    }
+
+    @Test
+    public void testMemoryPool() throws IOException {
+        byte[] content = new byte[80];
+        CachedStreamFactory factory = new CachedStreamFactory(200, 100);
+        CachedInputStream is1 = readFully(factory, content);
+        CachedInputStream is2 = readFully(factory, content);
+        // each reserved its max instance memory
+        Assertions.assertEquals(200, factory.getPoolCurrentMemory());
+        Assertions.assertTrue(is1.isInMemory());
+        Assertions.assertTrue(is2.isInMemory());
+
+        CachedInputStream is3 = readFully(factory, content);
+        Assertions.assertFalse(is3.isInMemory());
+        is3.dispose();
+
+        is1.dispose();
+        Assertions.assertEquals(100, factory.getPoolCurrentMemory());
+        CachedInputStream is4 = readFully(factory, content);
+        Assertions.assertTrue(is4.isInMemory());
+        is2.dispose();
+        is4.dispose();
+        Assertions.assertEquals(0, factory.getPoolCurrentMemory());
+
+        // memory is passed from output to input streams
+        CachedOutputStream os = factory.newOuputStream();
+        os.write(content);
+        Assertions.assertEquals(100, factory.getPoolCurrentMemory());
+        CachedInputStream is5 = os.getInputStream();
+        Assertions.assertEquals(80, factory.getPoolCurrentMemory());
+        is5.dispose();
+        Assertions.assertEquals(0, factory.getPoolCurrentMemory());
+    }
+    private CachedInputStream readFully(
+            CachedStreamFactory factory, byte[] content) throws IOException {
+        CachedInputStream is =
+                factory.newInputStream(new ByteArrayInputStream(content));
+        is.enforceFullCaching();
+        return is;
+    }
+
+    @Test
+    public void testBulkFirstRead() throws IOException {
+        byte[] content = new byte[100 * 1024];
+        new Random(2).nextBytes(content);
+        // spills to file part way through a large read
+        CachedStreamFactory factory = new CachedStreamFactory(
+                200 * 1024, 20000);
+        CachedInputStream cache = factory.newInputStream(
+                new ByteArrayInputStream(content));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[16 * 1024];
+            out.write(cache.read());
+            int num = cache.read(buf, 0, 10);
+            out.write(buf, 0, num);
+            while ((num = cache.read(buf)) != -1) {
+                out.write(buf, 0, num);
+            }
+            Assertions.assertArrayEquals(content, out.toByteArray());
+            Assertions.assertFalse(cache.isInMemory());
+            Assertions.assertEquals(content.length, cache.length());
+
+            cache.rewind();
+            Assertions.assertArrayEquals(content, IOUtils.toByteArray(cache));
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testTransferToOnFirstRead() throws IOException {
+        byte[] content = new byte[100 * 1024];
+        new Random(5).nextBytes(content);
+        // spills to file during the transfer
+        CachedInputStream cache = new CachedStreamFactory(200 * 1024, 20000)
+                .newInputStream(new ByteArrayInputStream(content));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(cache.read());
+            Assertions.assertEquals(
+                    content.length - 1, cache.transferTo(out));
+            Assertions.assertArrayEquals(content, out.toByteArray());
+            Assertions.assertFalse(cache.isInMemory());
+
+            cache.rewind();
+            out.reset();
+            Assertions.assertEquals(content.length,
+                    cache.transferTo(Channels.newChannel(out)));
+            Assertions.assertArrayEquals(content, out.toByteArray());
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testTransferToShortFileTransfers() throws IOException {
+        byte[] content = new byte[10 * 1024];
+        new Random(6).nextBytes(content);
+        // file transferring at most 1000 bytes at once
+        ICachedStreamStorage storage = new ICachedStreamStorage() {
+            private final ICachedStreamStorage channelStorage =
+                    new ChannelCachedStreamStorage();
+            @Override
+            public ICachedStreamFile newFile(Path dir, String prefix)
+                    throws IOException {
+                return new ShortTransferFile(
+                        channelStorage.newFile(dir, prefix));
+            }
+            @Override
+            public ICachedStreamFile openFile(Path file) throws IOException {
+                return new ShortTransferFile(channelStorage.openFile(file));
+            }
+        };
+        CachedInputStream cache = new CachedStreamFactory(1000, 100,
+                FileUtils.getTempDirectory().toPath(), storage)
+                        .newInputStream(new ByteArrayInputStream(content));
+        try {
+            Assertions.assertArrayEquals(content, IOUtils.toByteArray(cache));
+            Assertions.assertFalse(cache.isInMemory());
+            cache.rewind();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Assertions.assertEquals(content.length, cache.transferTo(out));
+            Assertions.assertArrayEquals(content, out.toByteArray());
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        byte[] content = new byte[100 * 1024];
+        new Random(3).nextBytes(content);
+        CountingInputStream source =
+                new CountingInputStream(new ByteArrayInputStream(content));
+        CachedStreamFactory factory = new CachedStreamFactory(
+                200 * 1024, 20000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CachedInputStream cache =
+                    factory.newInputStream(source, executor, 16 * 1024);
+            // reads ahead until the window is full, then waits
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (source.getByteCount() < 16 * 1024) {
+                Assertions.assertTrue(System.nanoTime() < deadline,
+                        "Read-ahead window not filled in time.");
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(16 * 1024, source.getByteCount());
+            // only bytes read ahead are reserved
+            Assertions.assertEquals(16 * 1024, factory.getPoolCurrentMemory());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(cache, out, content.length, new Random(4));
+            Assertions.assertArrayEquals(content, out.toByteArray());
+            Assertions.assertEquals(-1, cache.read());
+            cache.rewind();
+            Assertions.assertArrayEquals(content, IOUtils.toByteArray(cache));
+            cache.dispose();
+            Assertions.assertEquals(0, factory.getPoolCurrentMemory());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrefetchError() throws Exception {
+        InputStream source = new SequenceInputStream(
+                new ByteArrayInputStream(new byte[10]), new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Source failure.");
+                    }
+                });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CachedInputStream cache = new CachedStreamFactory(1000, 1000)
+                    .newInputStream(source, executor, 1000);
+            // bytes read before the failure come first
+            Assertions.assertEquals(10, cache.read(new byte[20]));
+            IOException e = Assertions.assertThrows(
+                    IOException.class, () -> cache.read());
+            Assertions.assertEquals("Source failure.", e.getMessage());
+            cache.dispose();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFileCacheMarkingAndReplay() throws IOException {
+        assertMarkingAndReplay(new CachedStreamFactory(1000, 100), false);
+    }
+    @Test
+    public void testMappedFileCacheMarkingAndReplay() throws IOException {
+        // smallest segments, so content spans more than one
+        assertMarkingAndReplay(new CachedStreamFactory(1000, 100,
+                FileUtils.getTempDirectory().toPath(),
+                new MappedCachedStreamStorage(1)), false);
+    }
+    @Test
+    public void testChunkPoolMarkingAndReplay() throws IOException {
+        ByteChunkPool pool = new ByteChunkPool(1024, 100, 10);
+        CachedStreamFactory factory = new CachedStreamFactory(
+                200 * 1024, 200 * 1024, FileUtils.getTempDirectory().toPath(),
+                new ChannelCachedStreamStorage(), pool);
+        assertMarkingAndReplay(factory, true);
+        long misses = pool.getMisses();
+        assertMarkingAndReplay(factory, true);
+        Assertions.assertEquals(misses, pool.getMisses());
+    }
+    @Test
+    public void testOffHeapCacheMarkingAndReplay() throws IOException {
+        // content split between off-heap memory and a file
+        assertMarkingAndReplay(new CachedStreamFactory(1000, 100,
+                FileUtils.getTempDirectory().toPath(),
+                new OffHeapCachedStreamStorage(50000, 4096,
+                        new ChannelCachedStreamStorage())), false);
+    }
+    private void assertMarkingAndReplay(
+            CachedStreamFactory factory, boolean inMemory) throws IOException {
+        byte[] content = new byte[100 * 1024];
+        Random random = new Random(1);
+        random.nextBytes(content);
+        CachedInputStream cache = factory.newInputStream(
+                new ByteArrayInputStream(content));
+        try {
+            // first read, with re-reads from file cache
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(cache, out, 30000, random);
+            Assertions.assertEquals(inMemory, cache.isInMemory());
+            cache.mark(0);
+            copy(cache, new ByteArrayOutputStream(), 20000, random);
+            cache.reset();
+            copy(cache, out, content.length, random);
+            Assertions.assertArrayEquals(content, out.toByteArray());
+
+            // replay, with re-reads from file cache
+            cache.rewind();
+            out = new ByteArrayOutputStream();
+            copy(cache, out, 50000, random);
+            cache.mark(0);
+            copy(cache, new ByteArrayOutputStream(), 40000, random);
+            cache.reset();
+            copy(cache, out, content.length, random);
+            Assertions.assertArrayEquals(content, out.toByteArray());
+        }  finally {
+            cache.dispose();
+        }
+    }
+
+    // copies up to max bytes, mixing single-byte and bulk reads
+    private void copy(InputStream is, ByteArrayOutputStream out,
+            int max, Random random) throws IOException {
+        int copied = 0;
+        while (copied < max) {
+            if (random.nextBoolean()) {
+                int b = is.read();
+                if (b == -1) {
+                    return;
+                }
+                out.write(b);
+                copied++;
+            } else {
+                byte[] bytes = new byte[Math.min(
+                        max - copied, 1 + random.nextInt(10000))];
+                int num = is.read(bytes);
+                if (num == -1) {
+                    return;
+                }
+                out.write(bytes, 0, num);
+                copied += num;
+            }
+        }
+    }
+
+    private static final class ShortTransferFile implements ICachedStreamFile {
+        private final ICachedStreamFile file;
+        private ShortTransferFile(ICachedStreamFile file) {
+            this.file = file;
+        }
+        @Override
+        public Path getPath() {
+            return file.getPath();
+        }
+        @Override
+        public long size() {
+            return file.size();
+        }
+        @Override
+        public void write(int b) throws IOException {
+            file.write(b);
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+        }
+        @Override
+        public int read(long position, byte[] b, int off, int len)
+                throws IOException {
+            return file.read(position, b, off, len);
+        }
+        @Override
+        public long transferTo(long position, long len,
+                WritableByteChannel target) throws IOException {
+            return file.transferTo(position, Math.min(len, 1000), target);
+        }
+        @Override
+        public void delete() throws IOException {
+            file.delete();
+        }
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
     private CachedInputStream newCachedInputStream(
             String content, int poolMaxMemory, int instanceMaxMemory) {
         ByteArrayInputStream is = new ByteArrayInputStream(content.getBytes());
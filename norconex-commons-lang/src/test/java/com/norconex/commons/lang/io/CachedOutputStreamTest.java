@@ -14,17 +14,30 @@
  */
 package com.norconex.commons.lang.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * @author Pascal Essiembre
  */
 public class CachedOutputStreamTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     public void testContentMatchMemCache() throws IOException {
         String content = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -61,6 +74,132 @@ public class CachedOutputStreamTest {
         }
     }
 
+    @Test
+    public void testFileCacheHandover() throws IOException {
+        assertFileCacheHandover(new ChannelCachedStreamStorage());
+        // smallest segments, so content spans more than one
+        assertFileCacheHandover(new MappedCachedStreamStorage(1));
+    }
+    private void assertFileCacheHandover(ICachedStreamStorage storage)
+            throws IOException {
+        byte[] content = new byte[200 * 1024];
+        new Random(1).nextBytes(content);
+
+        CachedStreamFactory factory =
+                new CachedStreamFactory(1000, 100, tempDir, storage);
+        CachedOutputStream cache = factory.newOuputStream();
+        cache.write(content, 0, 50);
+        cache.write(content[50]);
+        cache.write(content, 51, content.length - 51);
+        Assertions.assertEquals(1, countFiles());
+
+        CachedInputStream is = cache.getInputStream();
+        try {
+            // same file is read, without a copy
+            Assertions.assertEquals(1, countFiles());
+            Assertions.assertFalse(is.isInMemory());
+            Assertions.assertEquals(content.length, is.length());
+            Assertions.assertArrayEquals(content, IOUtils.toByteArray(is));
+            is.rewind();
+            Assertions.assertArrayEquals(content, IOUtils.toByteArray(is));
+        }  finally {
+            is.dispose();
+            cache.close();
+        }
+        Assertions.assertEquals(0, countFiles());
+    }
+    @Test
+    public void testOffHeapCache() throws IOException {
+        int maxOffHeap = 64 * 1024;
+        OffHeapCachedStreamStorage storage = new OffHeapCachedStreamStorage(
+                maxOffHeap, 1000, new ChannelCachedStreamStorage());
+        assertFileCacheHandover(storage);
+        Assertions.assertEquals(0, storage.getPoolCurrentMemory());
+        // 66 chunks of 1000 would exceed the max
+        Assertions.assertEquals(65000, storage.getPoolAllocatedMemory());
+
+        byte[] content = new byte[100 * 1024];
+        new Random(1).nextBytes(content);
+        CachedStreamFactory factory =
+                new CachedStreamFactory(1000, 100, tempDir, storage);
+        CachedOutputStream cache = factory.newOuputStream();
+        cache.write(content, 0, 50);
+        Assertions.assertEquals(50, cache.getMemCacheSize());
+        Assertions.assertEquals(0, cache.getOffHeapCacheSize());
+        cache.write(content, 50, 30000);
+        Assertions.assertEquals(0, cache.getMemCacheSize());
+        Assertions.assertEquals(30050, cache.getOffHeapCacheSize());
+        Assertions.assertEquals(0, cache.getFileCacheSize());
+        Assertions.assertEquals(0, countFiles());
+        cache.write(content, 30050, content.length - 30050);
+        Assertions.assertEquals(65000, cache.getOffHeapCacheSize());
+        Assertions.assertEquals(
+                content.length - 65000, cache.getFileCacheSize());
+        Assertions.assertEquals(1, countFiles());
+
+        CachedInputStream is = cache.getInputStream();
+        Assertions.assertEquals(65000, is.getOffHeapCacheSize());
+        Assertions.assertArrayEquals(content, IOUtils.toByteArray(is));
+        is.dispose();
+        Assertions.assertEquals(0, storage.getPoolCurrentMemory());
+        Assertions.assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        assertTransferTo(new CachedStreamFactory(
+                300 * 1024, 300 * 1024, tempDir));
+        assertTransferTo(new CachedStreamFactory(1000, 100, tempDir,
+                new ChannelCachedStreamStorage()));
+        assertTransferTo(new CachedStreamFactory(1000, 100, tempDir,
+                new MappedCachedStreamStorage(1)));
+        assertTransferTo(new CachedStreamFactory(1000, 100, tempDir,
+                new OffHeapCachedStreamStorage(64 * 1024, 1000,
+                        new ChannelCachedStreamStorage())));
+    }
+    private void assertTransferTo(CachedStreamFactory factory)
+            throws IOException {
+        byte[] content = new byte[200 * 1024];
+        new Random(2).nextBytes(content);
+
+        CachedOutputStream cache = factory.newOuputStream();
+        cache.write(content);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assertions.assertEquals(content.length, cache.transferTo(out));
+        Assertions.assertArrayEquals(content, out.toByteArray());
+
+        CachedInputStream is = cache.getInputStream();
+        try {
+            Assertions.assertEquals(1000, is.read(new byte[1000]));
+            Path target = tempDir.resolve("target");
+            try (FileChannel channel = FileChannel.open(target,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Assertions.assertEquals(
+                        content.length - 1000, is.transferTo(channel));
+            }
+            Assertions.assertArrayEquals(
+                    Arrays.copyOfRange(content, 1000, content.length),
+                    Files.readAllBytes(target));
+            Assertions.assertEquals(-1, is.read());
+            Files.delete(target);
+
+            is.rewind();
+            out.reset();
+            Assertions.assertEquals(content.length, is.transferTo(out));
+            Assertions.assertArrayEquals(content, out.toByteArray());
+        }  finally {
+            is.dispose();
+            cache.close();
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
     private String readCacheToString(InputStream is) throws IOException {
         long i;
         StringBuilder b = new StringBuilder();
@@ -0,0 +1,106 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class CachedStreamMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testMetrics() throws Exception {
+        CachedStreamFactory factory =
+                new CachedStreamFactory(1000, 100, tempDir);
+        CachedStreamMetrics metrics = factory.getMetrics();
+
+        CachedInputStream small = factory.newInputStream(
+                new ByteArrayInputStream(new byte[50]));
+        CachedInputStream large = factory.newInputStream(
+                new ByteArrayInputStream(new byte[500]));
+        IOUtils.toByteArray(small);
+        IOUtils.toByteArray(large);
+        Assertions.assertEquals(2, metrics.getCreatedStreams());
+        Assertions.assertEquals(2, metrics.getLiveStreams());
+        Assertions.assertEquals(1, metrics.getSpillCount());
+        Assertions.assertEquals(100, metrics.getPoolMemory());
+        Assertions.assertEquals(100, metrics.getPoolMemoryHighWaterMark());
+        // counted as written, before disposal
+        Assertions.assertEquals(500, metrics.getFileBytesWritten());
+
+        small.dispose();
+        large.dispose();
+        // disposing again does not count
+        large.dispose();
+        Assertions.assertEquals(0, metrics.getLiveStreams());
+        Assertions.assertEquals(0, metrics.getPoolMemory());
+        Assertions.assertEquals(100, metrics.getPoolMemoryHighWaterMark());
+        Assertions.assertEquals(500, metrics.getFileBytesWritten());
+        Assertions.assertTrue(metrics.getAverageLifetime() >= 0);
+
+        // an input stream handed over is the same stream
+        CachedOutputStream os = factory.newOuputStream();
+        os.write(new byte[50]);
+        CachedInputStream is = os.getInputStream();
+        Assertions.assertEquals(3, metrics.getCreatedStreams());
+        Assertions.assertEquals(1, metrics.getLiveStreams());
+        is.dispose();
+        Assertions.assertEquals(0, metrics.getLiveStreams());
+
+        os = factory.newOuputStream();
+        os.write(new byte[300]);
+        Assertions.assertEquals(800, metrics.getFileBytesWritten());
+        is = os.getInputStream();
+        Assertions.assertEquals(4, metrics.getCreatedStreams());
+        is.dispose();
+        Assertions.assertEquals(0, metrics.getLiveStreams());
+        Assertions.assertEquals(800, metrics.getFileBytesWritten());
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        CachedStreamFactory factory = new CachedStreamFactory(1000, 100);
+        factory.newInputStream("abc").dispose();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+                "com.norconex.commons.lang.io:type=CachedStreamsTest");
+        server.registerMBean(factory.getMetrics(), name);
+        try {
+            Assertions.assertEquals(1L,
+                    server.getAttribute(name, "CreatedStreams"));
+            Assertions.assertEquals(0L,
+                    server.getAttribute(name, "LiveStreams"));
+            Assertions.assertEquals(1000L,
+                    server.getAttribute(name, "MaxPoolMemory"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class ChunkedByteArrayOutputStreamTest {
+
+    @Test
+    public void testWriteAndGet() throws IOException {
+        byte[] content = new byte[1000];
+        new Random(1).nextBytes(content);
+        ChunkedByteArrayOutputStream out = new ChunkedByteArrayOutputStream(16);
+
+        Assertions.assertEquals(-1, out.getByte(0));
+        Assertions.assertEquals(-1, out.getBytes(0, new byte[1], 0, 1));
+        Assertions.assertEquals(0, out.toByteArray().length);
+
+        out.write(content, 0, 7);
+        for (int i = 7; i < 100; i++) {
+            out.write(content[i]);
+        }
+        out.write(content, 100, content.length - 100);
+        Assertions.assertEquals(content.length, out.size());
+        Assertions.assertArrayEquals(content, out.toByteArray());
+        for (int i = 0; i < content.length; i++) {
+            Assertions.assertEquals(content[i] & 0xFF, out.getByte(i));
+        }
+        Assertions.assertEquals(-1, out.getByte(content.length));
+        Assertions.assertEquals(-1, out.getByte(-1));
+
+        byte[] target = new byte[50];
+        Assertions.assertEquals(40, out.getBytes(5, target, 10, 40));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 5, 45),
+                Arrays.copyOfRange(target, 10, 50));
+        Assertions.assertEquals(
+                10, out.getBytes(content.length - 10, target, 0, 50));
+
+        java.io.ByteArrayOutputStream copy =
+                new java.io.ByteArrayOutputStream();
+        out.writeTo(copy);
+        Assertions.assertArrayEquals(content, copy.toByteArray());
+
+        out.reset();
+        Assertions.assertEquals(0, out.size());
+        out.write(0xFF);
+        Assertions.assertEquals(0xFF, out.getByte(0));
+        out.close();
+    }
+
+    @Test
+    public void testChunkPool() {
+        ByteChunkPool pool = new ByteChunkPool(4, 10, 10);
+        ChunkedByteArrayOutputStream out =
+                new ChunkedByteArrayOutputStream(pool);
+        // chunks are obtained when written to
+        Assertions.assertEquals(0, pool.getMisses());
+        out.write(new byte[10], 0, 10);
+        Assertions.assertEquals(3, pool.getMisses());
+        out.close();
+        out.write(new byte[10], 0, 10);
+        Assertions.assertEquals(3, pool.getMisses());
+        Assertions.assertEquals(3, pool.getHits());
+        out.close();
+    }
+
+    @Test
+    public void testInvalidChunkSize() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ChunkedByteArrayOutputStream(1000));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ChunkedByteArrayOutputStream(0));
+    }
+}
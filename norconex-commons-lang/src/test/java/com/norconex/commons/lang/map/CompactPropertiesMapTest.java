@@ -0,0 +1,168 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.map;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class CompactPropertiesMapTest {
+
+    @Test
+    public void testSameAsHashMap() {
+        Map<String, List<String>> expected = new HashMap<>();
+        Map<String, List<String>> actual = new CompactPropertiesMap();
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String key = random.nextInt(50) == 0
+                    ? null : "key" + random.nextInt(500);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                assertEquals(expected.remove(key), actual.remove(key));
+            } else if (op == 1 && expected.containsKey(key)
+                    && expected.get(key) != null) {
+                String value = "added" + i;
+                expected.get(key).add(value);
+                actual.get(key).add(value);
+            } else {
+                List<String> values = new ArrayList<>();
+                for (int j = random.nextInt(3); j > 0; j--) {
+                    values.add("value" + j);
+                }
+                if (random.nextInt(20) == 0) {
+                    values = null;
+                }
+                assertEquals(expected.put(key, copy(values)),
+                        actual.put(key, copy(values)));
+            }
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals(expected.hashCode(), actual.hashCode());
+        }
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        Map<String, List<String>> map = new CompactPropertiesMap(4);
+        for (int i = 0; i < 1000; i++) {
+            map.put("key" + i, asList("value" + i));
+        }
+        int count = 0;
+        Iterator<Entry<String, List<String>>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, List<String>> en = it.next();
+            count++;
+            if (Integer.parseInt(en.getKey().substring(3)) % 3 != 0) {
+                it.remove();
+            } else {
+                en.setValue(asList("a", "b"));
+            }
+        }
+        assertEquals(1000, count);
+        assertEquals(334, map.size());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 == 0) {
+                assertEquals(asList("a", "b"), map.get("key" + i));
+            } else {
+                assertNull(map.get("key" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testValueListWriteThrough() {
+        Map<String, List<String>> map = new CompactPropertiesMap();
+        map.put("key", asList("a"));
+        List<String> values = map.get("key");
+        values.add("b");
+        values.add(0, "c");
+        assertEquals(asList("c", "a", "b"), map.get("key"));
+        values.remove("a");
+        values.set(1, "d");
+        assertEquals(asList("c", "d"), map.get("key"));
+        values.clear();
+        assertTrue(map.get("key").isEmpty());
+        assertTrue(map.containsKey("key"));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        CompactPropertiesMap map = new CompactPropertiesMap();
+        map.put("single", asList("a"));
+        map.put("multi", asList("a", "b"));
+        map.put("empty", new ArrayList<>());
+        map.put("null", null);
+        map.put(null, asList("c"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(map);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(map, in.readObject());
+        }
+    }
+
+    @Test
+    public void testTypedValueCache() {
+        Properties props = new Properties(new CompactPropertiesMap(), true);
+        props.set("Number", "123");
+        Integer value = props.getInteger("number");
+        assertEquals(123, (int) value);
+        assertSame(value, props.get("NUMBER", Integer.class));
+        assertEquals(123L, (long) props.getLong("number"));
+
+        props.get("number").set(0, "456");
+        assertEquals(456, (int) props.getInteger("number"));
+        props.set("number", "789");
+        assertEquals(789, (int) props.getInteger("number"));
+        props.remove("number");
+        assertEquals(7, (int) props.getInteger("number", 7));
+
+        props.set("other", "a");
+        Properties copy = new Properties(true);
+        copy.loadFromMap(props);
+        assertEquals(copy, props);
+        assertEquals(copy.hashCode(), props.hashCode());
+    }
+
+    private static List<String> copy(List<String> values) {
+        return values == null ? null : new ArrayList<>(values);
+    }
+}
@@ -16,17 +16,25 @@ package com.norconex.commons.lang.map;
 
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.InvalidPropertiesFormatException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -130,6 +138,59 @@ public class PropertiesTest {
         assertEquals(2, properties.get("kEy").size());
     }
 
+    @Test
+    public void testCaseInsensitiveManyKeys() throws Exception {
+        Properties properties = new Properties(true);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            properties.add("Key" + i, "value" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            properties.add("KEY" + i, "other" + i);
+        }
+        assertEquals(count, properties.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(asList("value" + i, "other" + i),
+                    properties.get("kEy" + i));
+        }
+        properties.remove("key0");
+        properties.add("KEY0", "new");
+        assertEquals(asList("new"), properties.get("key0"));
+        assertTrue(properties.containsKey("KEY0"));
+
+        // keys changed outside Properties methods must still be found
+        properties.keySet().remove("KEY0");
+        properties.entrySet().removeIf(en -> en.getKey().equals("Key1"));
+        assertNull(properties.get("key1"));
+        properties.add("key1", "again");
+        assertEquals(asList("again"), properties.get("KEY1"));
+        properties.clear();
+        assertNull(properties.get("key2"));
+    }
+
+    @Test
+    public void testCaseInsensitiveDecoratedVariants() throws Exception {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        map.put("Title", asList("first"));
+        map.put("TITLE", asList("second"));
+        map.put(null, asList("none"));
+        Properties properties = new Properties(map, true);
+        assertEquals(asList("first"), properties.get("title"));
+        properties.add("tItLe", "more");
+        assertEquals(asList("first", "more"), properties.get("TITLE"));
+        properties.add("Other", "value");
+        assertEquals(asList("value"), properties.get("OTHER"));
+        assertEquals(asList("none"), properties.get(null));
+        assertEquals(4, properties.size());
+
+        // the remaining variant is found once the first one is removed
+        properties.remove("title");
+        assertEquals(asList("second"), properties.get("title"));
+        properties.remove("title");
+        assertNull(properties.get("Title"));
+        assertEquals(2, properties.size());
+    }
+
     @Test
     public void testPutAll() throws Exception {
         Map<String, List<String>> m = new TreeMap<>();
@@ -209,6 +270,250 @@ public class PropertiesTest {
         assertTrue(EqualsUtil.equalsMap(original, p));
     }
 
+    @Test
+    public void testJSON() throws Exception {
+        Properties original = new Properties();
+        original.add("quote\"key", "back\\slash", "new\nline\ttab");
+        original.add("unicode", "Élève \u2028 \u0001 \uD83D\uDE00 /");
+        original.add("empty", "");
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            b.append("long value ").append(i);
+        }
+        original.add("long", b.toString());
+
+        StringWriter w = new StringWriter();
+        original.storeToJSON(w);
+        Properties p = new Properties();
+        p.loadFromJSON(new StringReader(w.toString()));
+        assertEquals(original, p);
+
+        p = new Properties();
+        p.loadFromJSON(new StringReader(" { \"a\" : [ \"1\" , 2, true, null ],"
+                + "\"b\":\"\\u0041\\/\", \"c\":3.5e1, \"d\":[] } trailing"));
+        assertEquals(asList("1", "2", "true"), p.get("a"));
+        assertEquals(asList("A/"), p.get("b"));
+        assertEquals(asList("3.5e1"), p.get("c"));
+        assertFalse(p.containsKey("d"));
+
+        for (String bad : new String[] {
+                "", "[]", "{\"a\":[{}]}", "{\"a\":[\"1\"", "{a:[]}",
+                "{\"a\":\"\\x\"}", "{\"a\":\"1\" \"b\":\"2\"}"}) {
+            assertThrows(PropertiesException.class,
+                    () -> new Properties().loadFromJSON(
+                            new StringReader(bad)), bad);
+        }
+    }
+
+    @Test
+    public void testJavaUtilPropertiesCompatibility() throws Exception {
+        java.util.Properties javaProps = new java.util.Properties();
+        javaProps.setProperty(" key = with: #special! chars ",
+                " value\\ with\ttab\nnew line\r and = : # ! ");
+        javaProps.setProperty("unicode", "Élève \u241E \uD83D\uDE00");
+        javaProps.setProperty("xml", "<a href=\"b\">&amp;</a>\r\n");
+        javaProps.setProperty("", "empty key");
+
+        // java.util.Properties to Properties
+        for (int i = 0; i < 4; i++) {
+            boolean xml = i > 1;
+            boolean stream = i % 2 == 0;
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            StringWriter w = new StringWriter();
+            if (xml && stream) {
+                javaProps.storeToXML(os, "comment");
+            } else if (xml) {
+                javaProps.storeToXML(os, "comment", "UTF-8");
+            } else if (stream) {
+                javaProps.store(os, "comment");
+            } else {
+                javaProps.store(w, "comment");
+            }
+            Properties p = new Properties();
+            if (xml && stream) {
+                p.loadFromXML(new ByteArrayInputStream(os.toByteArray()), "|");
+            } else if (xml) {
+                p.loadFromXML(new StringReader(
+                        os.toString(StandardCharsets.UTF_8.name())), "|");
+            } else if (stream) {
+                p.loadFromProperties(
+                        new ByteArrayInputStream(os.toByteArray()), "|");
+            } else {
+                p.loadFromProperties(new StringReader(w.toString()), "|");
+            }
+            assertEquals(javaProps.size(), p.size());
+            for (String key : javaProps.stringPropertyNames()) {
+                assertEquals(javaProps.getProperty(key), p.getString(key));
+            }
+        }
+
+        // Properties to java.util.Properties
+        Properties props = new Properties();
+        javaProps.forEach((k, v) -> props.add((String) k, v));
+        props.add("multi", "a", "b");
+        javaProps.setProperty("multi", "a|b");
+        for (int i = 0; i < 4; i++) {
+            boolean xml = i > 1;
+            boolean stream = i % 2 == 0;
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            StringWriter w = new StringWriter();
+            if (xml && stream) {
+                props.storeToXML(os, "|");
+            } else if (xml) {
+                props.storeToXML(w, "|");
+            } else if (stream) {
+                props.storeToProperties(os, "|");
+            } else {
+                props.storeToProperties(w, "|");
+            }
+            java.util.Properties p = new java.util.Properties();
+            if (xml && stream) {
+                p.loadFromXML(new ByteArrayInputStream(os.toByteArray()));
+            } else if (xml) {
+                p.loadFromXML(new ByteArrayInputStream(
+                        w.toString().getBytes(StandardCharsets.UTF_8)));
+            } else if (stream) {
+                p.load(new ByteArrayInputStream(os.toByteArray()));
+            } else {
+                p.load(new StringReader(w.toString()));
+            }
+            assertEquals(javaProps, p);
+        }
+    }
+
+    @Test
+    public void testLoadPropertiesSyntax() throws Exception {
+        Properties p = new Properties();
+        p.loadFromProperties(new StringReader(
+                "# comment \\\n"
+              + "  ! other comment\r\n"
+              + "\n"
+              + "a=1\r"
+              + "b : 2\n"
+              + "c 3\n"
+              + "d\n"
+              + "e = multi\\\n"
+              + "     line\\\r\n"
+              + "  value\n"
+              + "f\\ g=\\u0041\\\\\n"
+              + "h=1^^2^^^^3^^"));
+        assertEquals(asList("1"), p.get("a"));
+        assertEquals(asList("2"), p.get("b"));
+        assertEquals(asList("3"), p.get("c"));
+        assertFalse(p.containsKey("d"));
+        assertEquals(asList("multilinevalue"), p.get("e"));
+        assertEquals(asList("A\\"), p.get("f g"));
+        assertEquals(6, p.size());
+
+        p = new Properties();
+        p.loadFromProperties(new StringReader("h=1^^2^^^^3^^"), "^^");
+        assertEquals(asList("1", "2", "3"), p.get("h"));
+        assertThrows(IllegalArgumentException.class, () -> new Properties()
+                .loadFromProperties(new StringReader("a=\\u12")));
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        Properties big = new Properties();
+        for (int i = 0; i < 1000; i++) {
+            big.add("key" + i, "value", "value" + i, "");
+        }
+        Properties other = new Properties(true);
+        other.add("unicode", "Élève \u241E \uD83D\uDE00 \uD800 !");
+        other.put("null", null);
+        other.put("nullValue", asList("a", null));
+        other.add("empty");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        big.storeToBinary(os);
+        int uncompressedSize = os.size();
+        other.storeToBinary(os, true);
+        big.storeToBinary(os, true);
+        assertTrue(os.size() - uncompressedSize < uncompressedSize);
+
+        ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
+        Properties p = new Properties();
+        assertTrue(p.loadFromBinary(is));
+        assertEquals(big, p);
+        p = new Properties();
+        assertTrue(p.loadFromBinary(is));
+        assertEquals(asList("Élève \u241E \uD83D\uDE00 ? !"),
+                p.get("unicode"));
+        assertEquals(asList("a", ""), p.get("nullValue"));
+        assertEquals(2, p.size());
+        p = new Properties();
+        assertTrue(p.loadFromBinary(is));
+        assertEquals(big, p);
+        assertFalse(p.loadFromBinary(is));
+
+        byte[] bytes = os.toByteArray();
+        bytes[10] = (byte) 0xFF;
+        assertThrows(IOException.class, () -> new Properties().loadFromBinary(
+                new ByteArrayInputStream(bytes)));
+        assertThrows(IOException.class, () -> new Properties().loadFromBinary(
+                new ByteArrayInputStream("NXQ\u0001\u0000".getBytes())));
+        assertThrows(IOException.class, () -> new Properties().loadFromBinary(
+                new ByteArrayInputStream(bytes, 0, 100)));
+
+        // corrupted lengths are rejected without allocating them
+        for (byte[] record : new byte[][] {
+                // Integer.MAX_VALUE length
+                { 'N', 'X', 'P', 1, 0, -1, -1, -1, -1, 7, 0 },
+                { 'N', 'X', 'P', 1, 1, -1, -1, -1, -1, 7, 1, 0 },
+                // 1 GB length, few bytes
+                { 'N', 'X', 'P', 1, 0, -128, -128, -128, -128, 4, 0 },
+                { 'N', 'X', 'P', 1, 1, -128, -128, -128, -128, 4, 1, 0 },
+                { 'N', 'X', 'P', 1, 1, 1, -128, -128, -128, -128, 4, 0 } }) {
+            assertThrows(InvalidPropertiesFormatException.class,
+                    () -> new Properties().loadFromBinary(
+                            new ByteArrayInputStream(record)));
+        }
+        // negative dictionary reference
+        assertThrows(InvalidPropertiesFormatException.class,
+                () -> new Properties().loadFromBinary(new ByteArrayInputStream(
+                        new byte[] { 'N', 'X', 'P', 1, 0, 7,
+                                1, 1, -1, -1, -1, -1, 15 })));
+    }
+
+    @Test
+    public void testBinaryNoValues() throws Exception {
+        Map<String, List<String>> map = new TreeMap<>();
+        map.put("empty", new ArrayList<>());
+        map.put("null", null);
+        map.put("value", asList("a"));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new Properties(map).storeToBinary(os);
+        Properties p = new Properties();
+        assertTrue(p.loadFromBinary(
+                new ByteArrayInputStream(os.toByteArray())));
+        assertEquals(3, p.size());
+        assertEquals(asList(), p.get("empty"));
+        assertEquals(asList(), p.get("null"));
+        assertEquals(asList("a"), p.get("value"));
+    }
+
+    @Test
+    public void testHashCode() throws Exception {
+        Properties p1 = new Properties();
+        Properties p2 = new Properties(new CompactPropertiesMap(), true);
+        Map<String, List<String>> map = new TreeMap<>();
+        for (Properties p : new Properties[] {p1, p2}) {
+            p.add("a", "1", "2");
+            p.set("b", "3");
+            p.addMapChangeListener(event -> {});
+            p.get("a").add("4");
+            p.add("c", "5");
+            p.remove("c");
+        }
+        map.put("a", asList("1", "2", "4"));
+        map.put("b", asList("3"));
+        assertEquals(p1, p2);
+        assertEquals(map.hashCode(), p1.hashCode());
+        assertEquals(map.hashCode(), p2.hashCode());
+        p2.clear();
+        assertEquals(new Properties().hashCode(), p2.hashCode());
+    }
+
     @Test
     public void testMultiValuesWriterDelim() throws Exception {
 
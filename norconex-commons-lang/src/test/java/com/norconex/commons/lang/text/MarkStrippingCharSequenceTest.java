@@ -0,0 +1,82 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.text;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class MarkStrippingCharSequenceTest {
+
+    @Test
+    public void testStripMarks() {
+        assertStripped("", "");
+        assertStripped("plain ascii", "plain ascii");
+        assertStripped("Eleve modele", "Élève modèle");
+        assertStripped("Eleve", "Élève");
+        assertStripped("ca va? 漢字 ok", "ça va? 漢字 ok");
+        assertStripped("𝐀x", "𝐀x́");
+    }
+
+    @Test
+    public void testLazyRead() {
+        CharSequence seq = MarkStrippingCharSequence.of("àbçdé");
+        // reading a character only folds what precedes it
+        Assertions.assertEquals('c', seq.charAt(2));
+        Assertions.assertEquals('a', seq.charAt(0));
+        Assertions.assertEquals(5, seq.length());
+        Assertions.assertEquals("bcd", seq.subSequence(1, 4).toString());
+        Assertions.assertThrows(IndexOutOfBoundsException.class,
+                () -> seq.charAt(5));
+    }
+
+    @Test
+    public void testMatchingOnlyFoldsCharsRead() {
+        // only the first characters may be read
+        CharSequence text = new CharSequence() {
+            @Override
+            public int length() {
+                return 1_000_000;
+            }
+            @Override
+            public char charAt(int index) {
+                Assertions.assertTrue(index < 10, "Read too far: " + index);
+                return index == 0 ? 'É' : 'x';
+            }
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        Assertions.assertTrue(GlobMatcher.wildcard(
+                "ex*", true, true).matches(text, false));
+        Assertions.assertTrue(GlobMatcher.literal(
+                "ex", true, true).matches(text, true));
+        Assertions.assertFalse(GlobMatcher.literal(
+                "Ex", false, true).matches(text, false));
+    }
+
+    private void assertStripped(String expected, String source) {
+        CharSequence seq = MarkStrippingCharSequence.of(source);
+        Assertions.assertEquals(expected.length(), seq.length());
+        for (int i = 0; i < expected.length(); i++) {
+            Assertions.assertEquals(expected.charAt(i), seq.charAt(i));
+        }
+        Assertions.assertEquals(expected, seq.toString());
+    }
+}
@@ -0,0 +1,91 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.norconex.commons.lang.text.TextMatcher.Method;
+
+/**
+ * @author Pascal Essiembre
+ * @since 2.0.0
+ */
+public class TextMatcherSetTest {
+
+    private static final String[] PATTERNS = {
+            "", "a", "he", "she", "his", "hers", "ushers", "*she*", "h?s",
+            "*", "?", "u*s", "*rs", "Élève", "ELEVE*", "[a-z]+", "s.e",
+            "*e?e*", "x"};
+    private static final String[] TEXTS = {
+            "", "a", "ushers", "USHERS", "his story", "she", "Élève modèle",
+            "eleve", "s.e", "hers"};
+
+    @Test
+    public void testSameAsIndividualMatchers() {
+        List<TextMatcher> matchers = new ArrayList<>();
+        for (String pattern : PATTERNS) {
+            for (Method method : Method.values()) {
+                for (int flags = 0; flags < 8; flags++) {
+                    TextMatcher tm = new TextMatcher(pattern, method)
+                            .setIgnoreCase((flags & 1) != 0)
+                            .setIgnoreDiacritic((flags & 2) != 0)
+                            .setPartial((flags & 4) != 0);
+                    if (method != Method.REGEX || isValidRegex(tm)) {
+                        matchers.add(tm);
+                    }
+                }
+            }
+        }
+        matchers.add(new TextMatcher());
+        TextMatcherSet set = new TextMatcherSet(matchers);
+
+        for (String text : TEXTS) {
+            List<TextMatcher> expected = new ArrayList<>();
+            for (TextMatcher tm : matchers) {
+                if (tm.matches(text)) {
+                    expected.add(tm);
+                }
+            }
+            Assertions.assertEquals(expected, set.matches(text), text);
+            Assertions.assertEquals(
+                    !expected.isEmpty(), set.matchesAny(text), text);
+        }
+    }
+
+    private boolean isValidRegex(TextMatcher tm) {
+        try {
+            tm.toRegexPattern();
+            return true;
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testIsolation() {
+        TextMatcher tm = TextMatcher.basic("abc");
+        TextMatcherSet set = new TextMatcherSet(tm, null);
+        tm.setPattern("xyz");
+        Assertions.assertEquals(1, set.getMatchers().size());
+        Assertions.assertTrue(set.matchesAny("abc"));
+        Assertions.assertFalse(set.matchesAny("xyz"));
+        Assertions.assertTrue(new TextMatcherSet().matches("abc").isEmpty());
+    }
+}
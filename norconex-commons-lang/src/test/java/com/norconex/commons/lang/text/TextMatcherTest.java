@@ -15,6 +15,7 @@
 package com.norconex.commons.lang.text;
 
 import java.io.IOException;
+import java.util.regex.Matcher;
 import java.util.regex.PatternSyntaxException;
 
 import org.junit.jupiter.api.Assertions;
@@ -77,5 +78,64 @@ public class TextMatcherTest {
         );
     }
 
+    @Test
+    public void testCompiledPatternReuse() {
+        TextMatcher tm1 = TextMatcher.wildcard("a*b?").partial();
+        TextMatcher tm2 = TextMatcher.wildcard("a*b?");
+        Assertions.assertSame(tm1.toRegexPattern(), tm2.toRegexPattern());
+        Assertions.assertTrue(tm1.matches("xxaxxbcxx"));
+
+        // modifying an instance must not reuse its previous pattern
+        tm1.setIgnoreCase(true);
+        Assertions.assertNotSame(tm1.toRegexPattern(), tm2.toRegexPattern());
+        Assertions.assertTrue(tm1.matches("xxAxxBcxx"));
+        tm1.setPattern("c");
+        Assertions.assertEquals("c", tm1.toRegexPattern().pattern());
+        Assertions.assertTrue(tm1.matches("xxAxxBcxx"));
+        tm1.setMethod(Method.REGEX).setPattern("b.");
+        Assertions.assertTrue(tm1.matches("xxAxxBcxx"));
+        Assertions.assertFalse(tm2.matches("xxAxxBcxx"));
+    }
+
+    @Test
+    public void testNonRegexSameAsRegex() {
+        String[] texts = {
+                "", "a", "abc", "ABC", "aXbXc", "Élève modèle", "eleve",
+                "a*b?c", "a.b", "**", "mississippi", "Straße",
+                "a\uD83D\uDE00b", "\uD83D\uDE00"};
+        String[] patterns = {
+                "", "a", "abc", "b", "*", "?", "a*", "*c", "a?c", "a*b*c",
+                "*X*", "É*", "ELEVE", "*ss*pp?", "a.b", "?*?", "straSSe",
+                "a?b", "??", "*?b"};
+        for (Method method : new Method[] {Method.BASIC, Method.WILDCARD}) {
+            for (String pattern : patterns) {
+                for (int flags = 0; flags < 8; flags++) {
+                    TextMatcher tm = new TextMatcher(pattern, method)
+                            .setIgnoreCase((flags & 1) != 0)
+                            .setIgnoreDiacritic((flags & 2) != 0)
+                            .setPartial((flags & 4) != 0);
+                    for (String text : texts) {
+                        Matcher m = tm.toRegexMatcher(text);
+                        Assertions.assertEquals(
+                                tm.isPartial() ? m.find() : m.matches(),
+                                tm.matches(text),
+                                () -> tm + " -> " + text);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWildcardSupplementaryChar() {
+        // "?" matches a code point, not a UTF-16 char
+        Assertions.assertTrue(
+                TextMatcher.wildcard("a?b").matches("a\uD83D\uDE00b"));
+        Assertions.assertFalse(
+                TextMatcher.wildcard("a??b").matches("a\uD83D\uDE00b"));
+        Assertions.assertTrue(
+                TextMatcher.wildcard("*?b").matches("\uD83D\uDE00b"));
+    }
+
     //TODO testReplace
 }
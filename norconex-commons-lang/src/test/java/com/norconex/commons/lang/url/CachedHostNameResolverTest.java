@@ -0,0 +1,210 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.norconex.commons.lang.url.URLNormalization.Step;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class CachedHostNameResolverTest {
+
+    private final Map<String, String> dns = new HashMap<>();
+    private final Map<String, AtomicInteger> lookups =
+            new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private ExecutorService executor;
+
+    // in-memory stand-in for DNS
+    private final IHostNameResolver fakeDns = ip -> {
+        lookups.computeIfAbsent(ip, k -> new AtomicInteger()).incrementAndGet();
+        String host = dns.get(ip);
+        if (host == null) {
+            throw new UnknownHostException(ip);
+        }
+        return host;
+    };
+
+    @BeforeEach
+    public void setup() {
+        dns.put("1.1.1.1", "one.example.com");
+        dns.put("2.2.2.2", "two.example.com");
+        executor = Executors.newFixedThreadPool(4);
+    }
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTtl() throws UnknownHostException {
+        CachedHostNameResolver r = resolver(10);
+        assertEquals("one.example.com", r.resolveHostName("1.1.1.1"));
+        assertEquals("one.example.com", r.resolveHostName("1.1.1.1"));
+        assertEquals(1, lookups("1.1.1.1"));
+
+        dns.put("1.1.1.1", "uno.example.com");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals("one.example.com", r.resolveHostName("1.1.1.1"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals("uno.example.com", r.resolveHostName("1.1.1.1"));
+        assertEquals(2, lookups("1.1.1.1"));
+    }
+
+    @Test
+    public void testNegativeCaching() throws UnknownHostException {
+        CachedHostNameResolver r = resolver(10);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertThrows(UnknownHostException.class,
+                    () -> r.resolveHostName("9.9.9.9"));
+        }
+        assertEquals(1, lookups("9.9.9.9"));
+
+        dns.put("9.9.9.9", "nine.example.com");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals("nine.example.com", r.resolveHostName("9.9.9.9"));
+        assertEquals(2, lookups("9.9.9.9"));
+    }
+
+    @Test
+    public void testMaxEntries() throws UnknownHostException {
+        CachedHostNameResolver r = resolver(1);
+        r.resolveHostName("1.1.1.1");
+        r.resolveHostName("2.2.2.2");
+        r.resolveHostName("1.1.1.1");
+        assertEquals(1, r.getCacheSize());
+        assertEquals(2, lookups("1.1.1.1"));
+    }
+
+    @Test
+    public void testConcurrentResolveHostName() throws Exception {
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch latch = new CountDownLatch(1);
+        IHostNameResolver slowDns = ip -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fakeDns.resolveHostName(ip);
+        };
+        CachedHostNameResolver r = new CachedHostNameResolver(slowDns, 10,
+                Duration.ofMinutes(1), Duration.ofSeconds(5), null);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                return r.resolveHostName("1.1.1.1");
+            }));
+        }
+        started.await(10, TimeUnit.SECONDS);
+        latch.countDown();
+        for (Future<String> f : futures) {
+            assertEquals("one.example.com", f.get(10, TimeUnit.SECONDS));
+        }
+        // blocking callers share the same lookup
+        assertEquals(1, lookups("1.1.1.1"));
+    }
+
+    @Test
+    public void testResolveAllAsync() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        IHostNameResolver slowDns = ip -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fakeDns.resolveHostName(ip);
+        };
+        CachedHostNameResolver r = new CachedHostNameResolver(slowDns, 10,
+                Duration.ofMinutes(1), Duration.ofSeconds(5), executor);
+
+        CompletableFuture<Map<String, String>> future = r.resolveAllAsync(
+                Arrays.asList("1.1.1.1", "2.2.2.2", "9.9.9.9", "1.1.1.1"));
+        // same IP looked up only once, even when requested again
+        CompletableFuture<String> single = r.resolveAsync("2.2.2.2");
+        Assertions.assertFalse(future.isDone());
+        latch.countDown();
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("1.1.1.1", "one.example.com");
+        expected.put("2.2.2.2", "two.example.com");
+        assertEquals(expected, future.get(10, TimeUnit.SECONDS));
+        assertEquals("two.example.com", single.get(10, TimeUnit.SECONDS));
+        assertEquals(1, lookups("1.1.1.1"));
+        assertEquals(1, lookups("2.2.2.2"));
+
+        // now cached
+        Assertions.assertTrue(r.resolveAsync("1.1.1.1").isDone());
+        Assertions.assertNull(r.resolveAsync("9.9.9.9").get());
+        assertEquals(1, lookups("9.9.9.9"));
+    }
+
+    @Test
+    public void testNormalizer() {
+        CachedHostNameResolver r = resolver(10);
+        assertEquals("http://one.example.com/a", new URLNormalizer(
+                "http://1.1.1.1/a").replaceIPWithDomainName(r).toString());
+        assertEquals("http://9.9.9.9/a", new URLNormalizer(
+                "http://9.9.9.9/a").replaceIPWithDomainName(r).toString());
+        URLNormalization n = new URLNormalization(
+                Arrays.asList(Step.replaceIPWithDomainName), r);
+        assertEquals(Arrays.asList(
+                "http://one.example.com/a", "http://two.example.com/b"),
+                n.normalizeAll(Arrays.asList(
+                        "http://1.1.1.1/a", "http://2.2.2.2/b")));
+        assertEquals(1, lookups("1.1.1.1"));
+        assertEquals(Arrays.asList(
+                "http://one.example.com/a", "http://9.9.9.9/c"),
+                n.normalizeAll(Arrays.asList(
+                        "http://1.1.1.1/a", "http://9.9.9.9/c"), executor));
+        assertEquals(1, lookups("1.1.1.1"));
+    }
+
+    private CachedHostNameResolver resolver(int maxEntries) {
+        return new CachedHostNameResolver(fakeDns, maxEntries,
+                Duration.ofMinutes(1), Duration.ofSeconds(5),
+                executor, clock::get);
+    }
+    private int lookups(String ip) {
+        AtomicInteger count = lookups.get(ip);
+        return count == null ? 0 : count.get();
+    }
+}
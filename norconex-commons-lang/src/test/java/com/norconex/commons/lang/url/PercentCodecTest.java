@@ -0,0 +1,85 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.norconex.commons.lang.url.PercentCodec.Encoding;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class PercentCodecTest {
+
+    private static final String[] SAMPLES = {
+        "", "abc", "a b+c", "50%", "été à l'œil", "a&b=c/d?e#f",
+        "~.-_*!$'()", "日本", "emoji 😀", "tab\tnew\nline"
+    };
+
+    @Test
+    public void testFormSameAsURLEncoder() throws Exception {
+        for (String s : SAMPLES) {
+            assertEquals(URLEncoder.encode(s, "UTF-8"),
+                    PercentCodec.encode(s, Encoding.FORM, UTF_8), s);
+            assertEquals(URLEncoder.encode(s, "ISO-8859-1"),
+                    PercentCodec.encode(s, Encoding.FORM, ISO_8859_1), s);
+            String encoded = URLEncoder.encode(s, "UTF-8");
+            assertEquals(URLDecoder.decode(encoded, "UTF-8"),
+                    PercentCodec.decode(encoded, UTF_8), s);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PercentCodec.decode("a%zzb", UTF_8));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> PercentCodec.decode("a%2", UTF_8));
+    }
+
+    @Test
+    public void testUnchangedInstance() {
+        String s = "/path/to-some_file.html";
+        assertSame(s, PercentCodec.encode(s, Encoding.PATH, UTF_8));
+        assertSame(s, PercentCodec.decode(s, UTF_8));
+        assertSame(s, PercentCodec.decodeUnreserved(s));
+        s = "/a%2Fb";
+        assertSame(s, PercentCodec.upperCaseEscapes(s));
+        assertSame(s, PercentCodec.decodeUnreserved(s));
+    }
+
+    @Test
+    public void testPath() {
+        assertEquals("/a%20b/%C3%A9t%C3%A9/%F0%9F%98%80;x=1%25",
+                PercentCodec.encode(
+                        "/a b/été/😀;x=1%25", Encoding.PATH, UTF_8));
+        StringBuilder b = new StringBuilder("http://example.com");
+        PercentCodec.encode("/a b", Encoding.PATH, UTF_8, b);
+        assertEquals("http://example.com/a%20b", b.toString());
+    }
+
+    @Test
+    public void testEscapeSequences() {
+        assertEquals("/a%2fb~%7C%zz",
+                PercentCodec.decodeUnreserved("/%61%2fb%7E%7C%zz"));
+        assertEquals("/%2F%C3%A9%zz%",
+                PercentCodec.upperCaseEscapes("/%2f%c3%a9%zz%"));
+    }
+}
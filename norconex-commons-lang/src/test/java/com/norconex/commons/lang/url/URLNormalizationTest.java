@@ -0,0 +1,120 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.norconex.commons.lang.url.URLNormalization.Step;
+import com.norconex.commons.lang.xml.XML;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class URLNormalizationTest {
+
+    @Test
+    public void testNormalize() {
+        URLNormalization n = new URLNormalization(
+                Step.removeFragment,
+                Step.lowerCaseSchemeHost,
+                Step.lowerCaseQueryParameterNames,
+                Step.lowerCaseQueryParameterValues,
+                Step.removeDefaultPort,
+                Step.sortQueryParameters);
+        assertEquals("http://example.com/Path?a=x&b=y",
+                n.normalize("HTTP://Example.com:80/Path?B=Y&A=X#frag"));
+        // same as chaining the methods
+        String url = "HTTPS://www.Example.com/A/./b/?Z=1&&y=2#";
+        for (Step[] steps : new Step[][] {
+                { Step.lowerCase, Step.lowerCasePath },
+                { Step.lowerCase, Step.lowerCaseQueryParameterNames },
+                { Step.lowerCaseQueryParameterValues, Step.lowerCase },
+                { Step.lowerCaseQuery, Step.lowerCaseQueryParameterNames },
+                { Step.lowerCasePath, Step.lowerCaseQueryParameterValues },
+                { Step.removeTrailingSlash, Step.removeTrailingSlash } }) {
+            URLNormalizer expected = new URLNormalizer(url);
+            for (Step step : steps) {
+                expected = chain(expected, step);
+            }
+            assertEquals(expected.toString(),
+                    new URLNormalization(steps).normalize(url));
+        }
+    }
+
+    @Test
+    public void testNormalizeAll() {
+        URLNormalization n = new URLNormalization(
+                Step.lowerCaseSchemeHost, Step.removeWWW);
+        List<String> urls = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            urls.add("http://WWW.Example" + i + ".com/Page");
+            expected.add("http://example" + i + ".com/Page");
+        }
+        assertEquals(expected, n.normalizeAll(urls));
+        Assertions.assertTrue(n.normalizeAll(null).isEmpty());
+        Assertions.assertThrows(URLException.class,
+                () -> n.normalizeAll(Arrays.asList("http://a.com", "bad")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, n.normalizeAll(urls, executor));
+            Assertions.assertTrue(n.normalizeAll(null, executor).isEmpty());
+            Assertions.assertThrows(URLException.class, () -> n.normalizeAll(
+                    Arrays.asList("http://a.com", "bad"), executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWriteRead() {
+        URLNormalization n = new URLNormalization(
+                Step.removeFragment, Step.addWWW, Step.removeFragment);
+        XML xml = new XML("<normalizations/>");
+        URLNormalization.saveToXML(xml, n);
+        assertEquals(n, URLNormalization.loadFromXML(
+                new XML(xml.toString())));
+
+        xml = new XML("<normalizations>\n  LOWERCASEPATH,\n"
+                + "  removeTrailingSlash\n</normalizations>");
+        assertEquals(Arrays.asList(
+                Step.lowerCasePath, Step.removeTrailingSlash),
+                URLNormalization.loadFromXML(xml).getSteps());
+    }
+
+    private URLNormalizer chain(URLNormalizer n, Step step) {
+        switch (step) {
+        case lowerCase: return n.lowerCase();
+        case lowerCasePath: return n.lowerCasePath();
+        case lowerCaseQuery: return n.lowerCaseQuery();
+        case lowerCaseQueryParameterNames:
+            return n.lowerCaseQueryParameterNames();
+        case lowerCaseQueryParameterValues:
+            return n.lowerCaseQueryParameterValues();
+        case removeTrailingSlash: return n.removeTrailingSlash();
+        default: throw new IllegalArgumentException(step.name());
+        }
+    }
+}
@@ -194,6 +194,12 @@ public class URLNormalizerTest {
         s = "http://www.example.com/a%c2%b1b";
         t = "http://www.example.com/a%C2%B1b";
         assertEquals(t, n(s).upperCaseEscapeSequence().toString());
+        // empty query parameters are kept
+        s = "http://www.example.com/?x=%7e&&y";
+        t = "http://www.example.com/?x=%7E&&y";
+        assertEquals(t, n(s).upperCaseEscapeSequence().toString());
+        s = "http://www.example.com/?x=1&&y";
+        assertEquals(s, n(s).upperCaseEscapeSequence().toString());
     }
 
     @Test
@@ -206,6 +212,12 @@ public class URLNormalizerTest {
         t = "http://www.example.com/ABYZalphaabyz/digit0189"
                 + "/-hyphen/period./underscore_/~tilde/reserved%2F%3A%5B%26";
         assertEquals(t, n(s).decodeUnreservedCharacters().toString());
+        // empty query parameters are kept
+        s = "http://www.example.com/?x=%7e&&y";
+        t = "http://www.example.com/?x=~&&y";
+        assertEquals(t, n(s).decodeUnreservedCharacters().toString());
+        s = "http://www.example.com/?x=1&&y";
+        assertEquals(s, n(s).decodeUnreservedCharacters().toString());
     }
 
     @Test
@@ -542,6 +554,9 @@ public class URLNormalizerTest {
         s = "http://5.eg.com/app?PHPSESSID=f9f2770d591366bc";
         t = "http://5.eg.com/app";
         assertEquals(t, n(s).removeSessionIds().toString());
+        // no session id: query kept as is
+        s = "http://5.eg.com/app?a=1&&b=2&";
+        assertEquals(s, n(s).removeSessionIds().toString());
 
         //Java EE
         s = "http://6.eg.com/app;jsessionid=1E6FEC03D29ED?a=b&c=d";
@@ -600,6 +615,24 @@ public class URLNormalizerTest {
         assertEquals(t, n(s).encodeNonURICharacters().toString());
     }
 
+    @Test
+    public void testComponentsKeptApart() {
+        // changes to one component do not leak into others
+        s = "http://www.example.com:80/a/index.html?index.html=www.x"
+                + "#index.html";
+        t = "http://example.com/a/?index.html=www.x#index.html";
+        assertEquals(t, n(s).removeDefaultPort().removeDirectoryIndex()
+                .removeWWW().toString());
+
+        s = "http://example.com/Path?B=Z&a=Y#Frag";
+        t = "http://example.com/Path?a=y&b=z#Frag";
+        assertEquals(t, n(s).lowerCaseQuery().sortQueryParameters().toString());
+
+        // untouched URL comes back as is
+        s = "HTTP://user@Example.com:8080/a%7e/b?c=d&&e#f";
+        assertEquals(s, n(s).toString());
+    }
+
     private URLNormalizer n(String url) {
         return new URLNormalizer(url);
     }
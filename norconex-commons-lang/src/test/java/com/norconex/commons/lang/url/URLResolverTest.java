@@ -0,0 +1,153 @@
+/* Copyright 2020 Norconex Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.norconex.commons.lang.url;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Pascal Essiembre
+ */
+public class URLResolverTest {
+
+    // Examples from RFC 3986, section 5.4
+    private static final String[][] RFC_EXAMPLES = {
+        // normal
+        {"g:h", "g:h"},
+        {"g", "http://a/b/c/g"},
+        {"./g", "http://a/b/c/g"},
+        {"g/", "http://a/b/c/g/"},
+        {"/g", "http://a/g"},
+        {"//g", "http://g"},
+        {"?y", "http://a/b/c/d;p?y"},
+        {"g?y", "http://a/b/c/g?y"},
+        {"#s", "http://a/b/c/d;p?q#s"},
+        {"g#s", "http://a/b/c/g#s"},
+        {"g?y#s", "http://a/b/c/g?y#s"},
+        {";x", "http://a/b/c/;x"},
+        {"g;x", "http://a/b/c/g;x"},
+        {"g;x?y#s", "http://a/b/c/g;x?y#s"},
+        {"", "http://a/b/c/d;p?q"},
+        {".", "http://a/b/c/"},
+        {"./", "http://a/b/c/"},
+        {"..", "http://a/b/"},
+        {"../", "http://a/b/"},
+        {"../g", "http://a/b/g"},
+        {"../..", "http://a/"},
+        {"../../", "http://a/"},
+        {"../../g", "http://a/g"},
+        // abnormal
+        {"../../../g", "http://a/g"},
+        {"../../../../g", "http://a/g"},
+        {"/./g", "http://a/g"},
+        {"/../g", "http://a/g"},
+        {"g.", "http://a/b/c/g."},
+        {".g", "http://a/b/c/.g"},
+        {"g..", "http://a/b/c/g.."},
+        {"..g", "http://a/b/c/..g"},
+        {"./../g", "http://a/b/g"},
+        {"./g/.", "http://a/b/c/g/"},
+        {"g/./h", "http://a/b/c/g/h"},
+        {"g/../h", "http://a/b/c/h"},
+        {"g;x=1/./y", "http://a/b/c/g;x=1/y"},
+        {"g;x=1/../y", "http://a/b/c/y"},
+        {"g?y/./x", "http://a/b/c/g?y/./x"},
+        {"g?y/../x", "http://a/b/c/g?y/../x"},
+        {"g#s/./x", "http://a/b/c/g#s/./x"},
+        {"g#s/../x", "http://a/b/c/g#s/../x"},
+        {"http:g", "http:g"},
+    };
+
+    @Test
+    public void testRFCExamples() {
+        URLResolver resolver = HttpURL.resolver("http://a/b/c/d;p?q");
+        for (String[] example : RFC_EXAMPLES) {
+            assertEquals(example[1], resolver.resolve(example[0]),
+                    "Resolving: " + example[0]);
+        }
+    }
+
+    @Test
+    public void testPageLinks() {
+        String[] bases = {
+            "https://www.example.com/a/b/c.html?x=1#top",
+            "https://www.example.com",
+            "https://www.example.com/",
+            "http://user@example.com:8080/dir/",
+            "https://www.example.com/a/./b/../c/page.html",
+            "https://www.example.com/a/b/..",
+            "https://www.example.com/a/b/.",
+        };
+        String[] links = {
+            "page.html", "sub/page.html?p=2&q=3", "/root.html",
+            "//cdn.example.com/img.png", "#section", "?sort=asc",
+            "../up.html", "./same.html", "https://other.com/x/../y",
+            "mailto:someone@example.com", "javascript:void(0)",
+            "dir/", "", "/", "a%20b.html", "/a/b/../../c",
+        };
+        for (String base : bases) {
+            URLResolver resolver = HttpURL.resolver(base);
+            URI baseURI = URI.create(base);
+            for (String link : links) {
+                assertEquals(expected(baseURI, link), resolver.resolve(link),
+                        "Resolving '" + link + "' against: " + base);
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsToAbsolute() {
+        // when there are no dot-segments
+        String base = "https://www.example.com/a/b/c.html";
+        URLResolver resolver = HttpURL.resolver(base);
+        for (String link : new String[] {
+                "//www.relative.com/e/f.html", "/e/f.html", "?name=john",
+                "g.html", "http://www.sample.com/xyz.html" }) {
+            assertEquals(HttpURL.toAbsolute(base, link),
+                    resolver.resolve(link));
+        }
+        assertEquals("http://www.sample.com/xyz.html",
+                HttpURL.resolver("http://www.sample.com").resolve("xyz.html"));
+    }
+
+    // java.net.URI does not follow RFC 3986 in a few edge cases:
+    // empty references, paths on an authority with no path, and
+    // ".." segments going above the root.
+    private String expected(URI base, String link) {
+        if (link.isEmpty()) {
+            String b = base.toString();
+            return b.contains("#") ? b.substring(0, b.indexOf('#')) : b;
+        }
+        URI u = base;
+        if (base.getRawPath().isEmpty()) {
+            u = URI.create(base.toString() + "/");
+        }
+        if (link.startsWith("#") || link.startsWith("?")) {
+            String b = base.toString();
+            if (b.contains("#")) {
+                b = b.substring(0, b.indexOf('#'));
+            }
+            if (link.startsWith("?") && b.contains("?")) {
+                b = b.substring(0, b.indexOf('?'));
+            }
+            return b + link;
+        }
+        return u.resolve(link).normalize().toString().replaceFirst(
+                "^([^/]*//[^/]+)(/\\.\\.)+/", "$1/");
+    }
+}